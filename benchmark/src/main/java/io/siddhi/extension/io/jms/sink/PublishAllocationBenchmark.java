@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.transport.jms.contract.JMSClientConnector;
+import org.wso2.transport.jms.utils.JMSConstants;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocation of the sink publish path per event, excluding the broker round trip.
+ * <p>
+ * The {@code before} benchmarks run the previous publish path: a new {@link BaselineJMSPublisher}, the publisher as
+ * it was before pooling, per event, and the per event request objects the publish queue held. The {@code after}
+ * benchmarks run the current {@link JMSPublisher} and {@link JMSPublishQueue}. Run with {@code -prof gc} and compare
+ * {@code gc.alloc.rate.norm}: the {@code after} benchmarks only allocate the text message.
+ * <p>
+ * The client connector is a stub which creates ActiveMQ messages and discards sent ones. The argument arrays of its
+ * proxied calls are allocated equally by both variants.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublishAllocationBenchmark {
+    private static final String DESTINATION = "DAS_JMS_TEST";
+    private static final String PAYLOAD = "{\"event\":{\"name\":\"John\",\"age\":22,\"country\":\"US\"}}";
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private JMSClientConnector connector;
+    private Map<String, String> staticProperties;
+    private BlockingQueue<JMSPublisher> idlePublishers;
+    private BlockingQueue<PublishRequest> requestQueue;
+    private JMSPublishQueue queue;
+    private JMSPublishQueue.Entry entry;
+
+    @Setup
+    public void setup() {
+        connector = (JMSClientConnector) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{JMSClientConnector.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("createMessage")) {
+                        if (JMSConstants.MAP_MESSAGE_TYPE.equals(args[0])) {
+                            return new ActiveMQMapMessage();
+                        } else if (JMSConstants.BYTES_MESSAGE_TYPE.equals(args[0])) {
+                            return new ActiveMQBytesMessage();
+                        }
+                        return new ActiveMQTextMessage();
+                    }
+                    return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+                });
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JMSConstants.PARAM_NAMING_FACTORY_INITIAL,
+                "org.apache.activemq.jndi.ActiveMQInitialContextFactory");
+        properties.put(JMSConstants.PARAM_PROVIDER_URL, "vm://localhost");
+        properties.put(JMSConstants.PARAM_CONNECTION_FACTORY_TYPE, "queue");
+        properties.put(JMSConstants.PARAM_CONNECTION_FACTORY_JNDI_NAME, "QueueConnectionFactory");
+        staticProperties = Collections.unmodifiableMap(properties);
+        idlePublishers = new ArrayBlockingQueue<>(16);
+        requestQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        queue = new JMSPublishQueue(QUEUE_CAPACITY, false);
+        entry = new JMSPublishQueue.Entry();
+    }
+
+    @Benchmark
+    public Object publisherBefore() throws Exception {
+        BaselineJMSPublisher publisher = new BaselineJMSPublisher(DESTINATION, staticProperties, connector, PAYLOAD);
+        publisher.run();
+        return publisher;
+    }
+
+    @Benchmark
+    public Object publisherAfter() {
+        JMSPublisher publisher = JMSPublisher.acquire(idlePublishers)
+                .prepare(connector, JMSCompressionCodec.NONE, DESTINATION, PAYLOAD, null, null, null, null);
+        publisher.run();
+        return publisher;
+    }
+
+    @Benchmark
+    public Object queueBefore() {
+        requestQueue.offer(new PublishRequest(DESTINATION, PAYLOAD));
+        PublishRequest request = requestQueue.poll();
+        new BaselineJMSPublisher(request.destination, staticProperties, connector, request.payload).run();
+        return request;
+    }
+
+    @Benchmark
+    public Object queueAfter() throws InterruptedException {
+        queue.offer(DESTINATION, PAYLOAD, null);
+        queue.poll(entry, 0, TimeUnit.NANOSECONDS);
+        JMSPublisher.publish(connector, JMSCompressionCodec.NONE, entry.destination, entry.payload, null);
+        entry.clear();
+        return entry;
+    }
+
+    /**
+     * The request the publish queue held per event before {@link JMSPublishQueue}.
+     */
+    private static class PublishRequest {
+        private final String destination;
+        private final Object payload;
+
+        private PublishRequest(String destination, Object payload) {
+            this.destination = destination;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the publish throughput of platform and virtual publisher threads against a slow broker.
+ * <p>
+ * Every publish blocks for {@code sendLatencyMillis}, as a synchronous send to a broker with that round trip would,
+ * and at most {@code maxInFlight} publishes run at once. Run on Java 21 or later, where {@code VIRTUAL} runs on
+ * virtual threads; on older versions both variants run on platform threads. Run with {@code -prof gc} to also compare
+ * the allocation per publish, and watch the thread count of the JVM while running.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublisherThreadBenchmark {
+    private static final int PUBLISHES = 10000;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private JMSPublisherExecutor.ThreadType threadType;
+
+    @Param({"256", "4096"})
+    private int maxInFlight;
+
+    @Param({"5"})
+    private long sendLatencyMillis;
+
+    private JMSPublisherExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = new JMSPublisherExecutor("benchmark", threadType, maxInFlight);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.stop(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PUBLISHES)
+    public void publish() throws InterruptedException {
+        CountDownLatch completed = new CountDownLatch(PUBLISHES);
+        Runnable publisher = () -> {
+            try {
+                Thread.sleep(sendLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                completed.countDown();
+            }
+        };
+        for (int i = 0; i < PUBLISHES; i++) {
+            executor.execute(publisher);
+        }
+        completed.await();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.source;
+
+import org.apache.activemq.command.ActiveMQQueue;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.transport.jms.utils.JMSConstants;
+
+import java.util.concurrent.TimeUnit;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.Topic;
+
+/**
+ * Measures the cost of reading the transport properties requested by the source mapper from a message.
+ * <p>
+ * The {@code before} benchmark reproduces the previous per message {@code switch} over the requested names, and the
+ * {@code after} benchmark runs the {@link JMSTransportHeaderExtractor} compiled from the same names. Run with
+ * {@code -prof gc} to also compare {@code gc.alloc.rate.norm}; with no requested names the extractor allocates
+ * nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportHeaderBenchmark {
+
+    @Param({"NONE", "IDS", "ALL"})
+    private String headers;
+
+    private String[] requestedNames;
+    private Message message;
+    private JMSTransportHeaderExtractor extractor;
+
+    @Setup
+    public void setup() throws JMSException {
+        switch (headers) {
+            case "NONE":
+                requestedNames = new String[0];
+                break;
+            case "IDS":
+                requestedNames = new String[]{JMSConstants.JMS_MESSAGE_ID, JMSConstants.JMS_CORRELATION_ID};
+                break;
+            default:
+                requestedNames = new String[]{JMSConstants.JMS_DESTINATION, JMSConstants.JMS_MESSAGE_ID,
+                        JMSConstants.JMS_CORRELATION_ID, JMSConstants.JMS_TIMESTAMP, JMSConstants.JMS_PRIORITY,
+                        JMSConstants.JMS_REDELIVERED, JMSConstants.JMS_DELIVERY_MODE, JMSConstants.JMS_TYPE};
+        }
+        ActiveMQTextMessage textMessage = new ActiveMQTextMessage();
+        textMessage.setText("{\"event\":{\"name\":\"John\",\"age\":22,\"country\":\"US\"}}");
+        textMessage.setJMSDestination(new ActiveMQQueue("DAS_JMS_TEST"));
+        textMessage.setJMSMessageID("ID:benchmark-1:1:1:1:1");
+        textMessage.setJMSCorrelationID("benchmark-correlation");
+        textMessage.setJMSTimestamp(System.currentTimeMillis());
+        textMessage.setJMSType("benchmark");
+        message = textMessage;
+        extractor = new JMSTransportHeaderExtractor(requestedNames);
+    }
+
+    @Benchmark
+    public String[] before() throws JMSException {
+        return legacyHeaders(message, requestedNames);
+    }
+
+    @Benchmark
+    public String[] after() throws JMSException {
+        return extractor.extract(message);
+    }
+
+    private static String[] legacyHeaders(Message message, String[] requestedNames) throws JMSException {
+        if (requestedNames.length > 0) {
+            String[] properties = new String[requestedNames.length];
+            int i = 0;
+            for (String property : requestedNames) {
+                switch (property) {
+                    case JMSConstants.JMS_REPLY_TO: {
+                        if (message.getJMSReplyTo() != null) {
+                            properties[i] = legacyDestinationName(message.getJMSReplyTo());
+                            i++;
+                        }
+                        break;
+                    }
+                    case JMSConstants.JMS_DESTINATION: {
+                        if (message.getJMSDestination() != null) {
+                            properties[i] = legacyDestinationName(message.getJMSDestination());
+                            i++;
+                        }
+                        break;
+                    }
+                    case JMSConstants.JMS_DELIVERY_MODE: {
+                        properties[i] = String.valueOf(message.getJMSDeliveryMode());
+                        i++;
+                        break;
+                    }
+                    case JMSConstants.JMS_CORRELATION_ID: {
+                        properties[i] = message.getJMSCorrelationID();
+                        i++;
+                        break;
+                    }
+                    case JMSConstants.JMS_EXPIRATION: {
+                        properties[i] = String.valueOf(message.getJMSExpiration());
+                        i++;
+                        break;
+                    }
+                    case JMSConstants.JMS_MESSAGE_ID: {
+                        properties[i] = message.getJMSMessageID();
+                        i++;
+                        break;
+                    }
+                    case JMSConstants.JMS_PRIORITY: {
+                        properties[i] = String.valueOf(message.getJMSPriority());
+                        i++;
+                        break;
+                    }
+                    case JMSConstants.JMS_REDELIVERED: {
+                        properties[i] = String.valueOf(message.getJMSRedelivered());
+                        i++;
+                        break;
+                    }
+                    case JMSConstants.JMS_TIMESTAMP: {
+                        properties[i] = String.valueOf(message.getJMSTimestamp());
+                        i++;
+                        break;
+                    }
+                    case JMSConstants.JMS_TYPE: {
+                        properties[i] = message.getJMSType();
+                        i++;
+                        break;
+                    }
+                    default: {
+                        message.getStringProperty(property);
+                    }
+                }
+            }
+            return properties;
+        } else {
+            return new String[0];
+        }
+    }
+
+    private static String legacyDestinationName(Destination destination) throws JMSException {
+        if (destination instanceof Queue) {
+            return ((Queue) destination).getQueueName();
+        } else if (destination instanceof Topic) {
+            return ((Topic) destination).getTopicName();
+        }
+        throw new JMSException("Unknown JMS destination type. [ " + destination + " ]");
+    }
+}
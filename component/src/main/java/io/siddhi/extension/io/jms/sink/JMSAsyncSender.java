@@ -0,0 +1,211 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.transport.DynamicOptions;
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+
+/**
+ * Sends messages with the JMS 2.0 asynchronous send, {@code MessageProducer.send(Message, CompletionListener)},
+ * keeping at most a fixed window of messages in flight.
+ * <p>
+ * The extension is compiled against the JMS 1.1 API, so the completion listener is created as a dynamic proxy and
+ * the send is invoked reflectively. When the JMS API or the provider's producer does not support it, {@link #send}
+ * returns false and the caller falls back to the blocking send.
+ * <p>
+ * JMS 2.0 invokes the completion listeners of a session in the order of the sends, so the destinations, payloads
+ * and options of the in-flight messages are kept in a FIFO queue, which blocks the sender while the window is full.
+ * An instance must therefore be used with a single session.
+ */
+class JMSAsyncSender {
+    private static final Logger log = Logger.getLogger(JMSAsyncSender.class);
+    private static final String COMPLETION_LISTENER_CLASS = "javax.jms.CompletionListener";
+    private static final Class<?> COMPLETION_LISTENER = loadCompletionListener();
+    private final Class<?> completionListenerType;
+    private final Map<Class<?>, Optional<Method>> asyncSendMethods = new ConcurrentHashMap<>();
+    private final JMSPublishQueue inFlight;
+    private final JMSPublishQueue.Entry completed = new JMSPublishQueue.Entry();
+    private final Object completionListener;
+    private final JMSSinkMetrics metrics;
+    private final JMSPublishPipeline.ErrorHandler errorHandler;
+    private boolean fallbackLogged;
+
+    JMSAsyncSender(int window, JMSSinkMetrics metrics, JMSPublishPipeline.ErrorHandler errorHandler) {
+        this(window, metrics, errorHandler, COMPLETION_LISTENER);
+    }
+
+    /**
+     * @param completionListenerType the {@code javax.jms.CompletionListener} interface, or a stand-in with the same
+     *                               methods, as the JMS API the extension is tested with has no asynchronous send.
+     */
+    JMSAsyncSender(int window, JMSSinkMetrics metrics, JMSPublishPipeline.ErrorHandler errorHandler,
+                   Class<?> completionListenerType) {
+        this.inFlight = new JMSPublishQueue(window, false);
+        this.metrics = metrics;
+        this.errorHandler = errorHandler;
+        this.completionListenerType = completionListenerType;
+        this.completionListener = completionListenerType == null ? null : Proxy.newProxyInstance(
+                completionListenerType.getClassLoader(), new Class[]{completionListenerType},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "onCompletion":
+                            onCompletion(null);
+                            return null;
+                        case "onException":
+                            onCompletion((Exception) args[1]);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return "JMSAsyncSender.CompletionListener";
+                    }
+                });
+    }
+
+    /**
+     * Checks whether the JMS API on the class path has the JMS 2.0 asynchronous send.
+     *
+     * @return whether asynchronous sends may be supported.
+     */
+    static boolean isAvailable() {
+        return COMPLETION_LISTENER != null;
+    }
+
+    /**
+     * Sends the message asynchronously, waiting first for a slot in the in-flight window.
+     *
+     * @return false if the producer does not support asynchronous sends, in which case nothing was sent.
+     * @throws JMSException if the send fails or the thread is interrupted while waiting for the window.
+     */
+    boolean send(MessageProducer producer, Message message, String destination, Object payload,
+                 DynamicOptions options) throws JMSException {
+        Method asyncSend = asyncSendOf(producer);
+        if (asyncSend == null) {
+            if (!fallbackLogged) {
+                fallbackLogged = true;
+                log.warn("JMS producer " + producer.getClass().getName() + " does not support the JMS 2.0 "
+                        + "asynchronous send, messages to destination: " + destination + " are sent synchronously.");
+            }
+            return false;
+        }
+        try {
+            inFlight.put(destination, payload, options);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            JMSException jmsException = new JMSException("Interrupted while waiting for the asynchronous send "
+                    + "window of destination: " + destination);
+            jmsException.setLinkedException(e);
+            throw jmsException;
+        }
+        metrics.asyncSendStarted();
+        try {
+            asyncSend.invoke(producer, message, completionListener);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JMSException) {
+                throw (JMSException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw linked("Error sending JMS message to destination: " + destination, cause);
+        } catch (IllegalAccessException e) {
+            throw linked("Error sending JMS message to destination: " + destination, e);
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the messages still in flight. Called once the session has been closed, at which point the provider
+     * has completed every asynchronous send, and only sends which failed synchronously remain.
+     */
+    void reset() {
+        JMSPublishQueue.Entry entry = new JMSPublishQueue.Entry();
+        try {
+            while (inFlight.poll(entry, 0, TimeUnit.NANOSECONDS)) {
+                metrics.asyncSendAbandoned();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void onCompletion(Exception exception) throws InterruptedException {
+        // listeners of a session are never invoked concurrently, so the holder is not shared between threads
+        if (!inFlight.poll(completed, 0, TimeUnit.NANOSECONDS)) {
+            log.warn("Received a JMS send completion without a message in flight.", exception);
+            return;
+        }
+        try {
+            if (exception == null) {
+                metrics.asyncSendCompleted();
+            } else {
+                metrics.asyncSendFailed();
+                log.error("Error sending JMS message to destination: " + completed.destination, exception);
+                errorHandler.onError(completed.payload, completed.options, exception);
+            }
+        } finally {
+            completed.clear();
+        }
+    }
+
+    private Method asyncSendOf(MessageProducer producer) {
+        if (completionListenerType == null) {
+            return null;
+        }
+        return asyncSendMethods.computeIfAbsent(producer.getClass(), producerClass -> {
+            try {
+                Method asyncSend = producerClass.getMethod("send", Message.class, completionListenerType);
+                // a JMS 1.1 provider running against the JMS 2.0 API only inherits the abstract method
+                return Modifier.isAbstract(asyncSend.getModifiers()) ? Optional.empty() : Optional.of(asyncSend);
+            } catch (NoSuchMethodException e) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    private static Class<?> loadCompletionListener() {
+        try {
+            return Class.forName(COMPLETION_LISTENER_CLASS, false, MessageProducer.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static JMSException linked(String message, Throwable cause) {
+        JMSException jmsException = new JMSException(message);
+        if (cause instanceof Exception) {
+            jmsException.setLinkedException((Exception) cause);
+        }
+        return jmsException;
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.transport.DynamicOptions;
+import io.siddhi.extension.io.jms.util.JMSSessionFactory;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import javax.management.ObjectName;
+import javax.naming.NamingException;
+
+/**
+ * Spreads the published messages over several brokers, each with its own connection and session publisher.
+ * <p>
+ * The broker of a message is chosen by the {@link Strategy}. A broker whose send fails is ejected and the message is
+ * sent to the next available broker, so that a message is only failed when no broker can take it. A payload which
+ * cannot be written into a message is failed right away, without ejecting the broker. The uncommitted batch of an
+ * ejected broker is rolled back and re-sent to the available brokers before the message, and is only retained by the
+ * ejected broker when no broker can take it. Ejected brokers are probed with a new session on every {@link #probe()},
+ * and take messages again once the probe succeeds.
+ */
+public class JMSBrokerBalancer implements JMSPublishPipeline.Sender {
+    private static final Logger log = Logger.getLogger(JMSBrokerBalancer.class);
+    private final Broker[] brokers;
+    private final Strategy strategy;
+    private final AtomicInteger nextBroker = new AtomicInteger();
+
+    /**
+     * @param sessionFactories  session factory of each broker.
+     * @param strategy          strategy choosing the broker of a message.
+     * @param publisherFactory  creates the session publisher of a broker from its session factory.
+     * @param metricsRegistrar  registers the metrics of a broker, and returns the name to unregister it with.
+     */
+    public JMSBrokerBalancer(List<JMSSessionFactory> sessionFactories, Strategy strategy,
+                             Function<JMSSessionFactory, JMSSessionPublisher> publisherFactory,
+                             Function<JMSBrokerMetrics, ObjectName> metricsRegistrar) {
+        this.strategy = strategy;
+        this.brokers = new Broker[sessionFactories.size()];
+        for (int i = 0; i < brokers.length; i++) {
+            JMSSessionFactory sessionFactory = sessionFactories.get(i);
+            JMSBrokerMetrics metrics = new JMSBrokerMetrics(sessionFactory.getProviderUrl());
+            brokers[i] = new Broker(sessionFactory, publisherFactory.apply(sessionFactory), metrics,
+                    metricsRegistrar.apply(metrics));
+        }
+    }
+
+    /**
+     * Connects to every broker, ejecting those which cannot be connected to.
+     *
+     * @throws JMSException    if no broker can be connected to, carrying the failure of the last broker.
+     * @throws NamingException if no broker can be connected to, because of a connection factory lookup failure.
+     */
+    public void connect() throws JMSException, NamingException {
+        Exception failure = null;
+        for (Broker broker : brokers) {
+            try {
+                broker.sessionFactory.connect();
+                broker.restore();
+            } catch (JMSException | NamingException e) {
+                log.warn("Unable to connect to the JMS broker at " + broker.metrics.getProviderUrl() + ", it is "
+                        + "ejected until it can be reached again.", e);
+                broker.eject();
+                failure = e;
+            }
+        }
+        if (failure != null && !hasAvailableBroker()) {
+            if (failure instanceof JMSException) {
+                throw (JMSException) failure;
+            }
+            throw (NamingException) failure;
+        }
+    }
+
+    /**
+     * Sends the payload to the broker chosen by the strategy, failing over to the other available brokers.
+     *
+     * @throws JMSException if no broker could send the payload, or the payload cannot be written into a message.
+     */
+    @Override
+    public void send(String destination, Object payload, DynamicOptions options) throws JMSException {
+        int first = select(destination);
+        Exception failure = null;
+        for (int i = 0; i < brokers.length; i++) {
+            Broker broker = brokers[(first + i) % brokers.length];
+            if (!broker.available) {
+                continue;
+            }
+            long start = System.nanoTime();
+            broker.outstanding.incrementAndGet();
+            try {
+                broker.publisher.send(destination, payload, options);
+                broker.metrics.sent(System.nanoTime() - start);
+                return;
+            } catch (JMSException | RuntimeException e) {
+                if (JMSMessageUtils.isPayloadFailure(e)) {
+                    // no broker can take a payload which cannot be written into a message
+                    throw e;
+                }
+                broker.metrics.failed();
+                log.warn("Error sending JMS message to destination: " + destination + " on the JMS broker at "
+                        + broker.metrics.getProviderUrl() + ", the broker is ejected.", e);
+                broker.eject();
+                failure = e;
+            } finally {
+                broker.outstanding.decrementAndGet();
+            }
+            reroutePending(broker);
+        }
+        JMSException exception = new JMSException("No JMS broker is available to send the message to destination: "
+                + destination);
+        exception.setLinkedException(failure);
+        if (failure != null) {
+            exception.initCause(failure);
+        }
+        throw exception;
+    }
+
+    /**
+     * Re-sends the uncommitted batch of an ejected broker to the available brokers, in order. The payloads which no
+     * broker can take are retained by the ejected broker, and are re-sent once it is restored.
+     */
+    private void reroutePending(Broker ejected) {
+        List<String> destinations = new ArrayList<>();
+        List<Object> payloads = new ArrayList<>();
+        List<DynamicOptions> options = new ArrayList<>();
+        if (ejected.publisher.takePending(destinations, payloads, options) == 0) {
+            return;
+        }
+        for (int i = 0; i < payloads.size(); i++) {
+            try {
+                send(destinations.get(i), payloads.get(i), options.get(i));
+            } catch (JMSException e) {
+                ejected.publisher.resetPending(destinations.subList(i, payloads.size()),
+                        payloads.subList(i, payloads.size()), options.subList(i, payloads.size()));
+                log.warn((payloads.size() - i) + " uncommitted JMS messages of the ejected JMS broker at "
+                        + ejected.metrics.getProviderUrl() + " are retained until it is reachable again, as no "
+                        + "other JMS broker could take them.", e);
+                return;
+            }
+        }
+        log.info("Re-sent " + payloads.size() + " uncommitted JMS messages of the ejected JMS broker at "
+                + ejected.metrics.getProviderUrl() + " to the available JMS brokers.");
+    }
+
+    /**
+     * Commits the expired batches of the available brokers.
+     */
+    @Override
+    public void flushIfExpired() {
+        for (Broker broker : brokers) {
+            if (broker.available) {
+                broker.publisher.flushIfExpired();
+            }
+        }
+    }
+
+    /**
+     * Closes the session publishers and connections of every broker.
+     *
+     * @return the number of payloads that could not be committed.
+     */
+    @Override
+    public int close() {
+        int unsent = 0;
+        for (Broker broker : brokers) {
+            unsent += broker.publisher.close();
+            broker.sessionFactory.close();
+        }
+        return unsent;
+    }
+
+    /**
+     * Restores the ejected brokers on which a session can be created again.
+     */
+    public void probe() {
+        for (Broker broker : brokers) {
+            if (broker.available) {
+                continue;
+            }
+            try {
+                Session session = broker.sessionFactory.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                session.close();
+                broker.restore();
+                log.info("JMS broker at " + broker.metrics.getProviderUrl() + " is reachable again.");
+            } catch (JMSException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("JMS broker at " + broker.metrics.getProviderUrl() + " is still unreachable.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the names the broker metrics were registered with.
+     */
+    public ObjectName[] getMetricsNames() {
+        ObjectName[] names = new ObjectName[brokers.length];
+        for (int i = 0; i < brokers.length; i++) {
+            names[i] = brokers[i].metricsName;
+        }
+        return names;
+    }
+
+    private boolean hasAvailableBroker() {
+        for (Broker broker : brokers) {
+            if (broker.available) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int select(String key) {
+        switch (strategy) {
+            case LEAST_OUTSTANDING:
+                int selected = 0;
+                int least = Integer.MAX_VALUE;
+                int offset = nextBroker.getAndIncrement();
+                for (int i = 0; i < brokers.length; i++) {
+                    // ties are broken in round robin order
+                    int index = Math.floorMod(offset + i, brokers.length);
+                    Broker broker = brokers[index];
+                    int outstanding = broker.outstanding.get();
+                    if (broker.available && outstanding < least) {
+                        least = outstanding;
+                        selected = index;
+                    }
+                }
+                return selected;
+            case STICKY:
+                int hash = key.hashCode();
+                return Math.floorMod(hash ^ (hash >>> 16), brokers.length);
+            default:
+                return Math.floorMod(nextBroker.getAndIncrement(), brokers.length);
+        }
+    }
+
+    /**
+     * Strategy choosing the broker of a message.
+     */
+    public enum Strategy {
+        /**
+         * Brokers take messages in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * The broker with the fewest sends in progress takes the message.
+         */
+        LEAST_OUTSTANDING,
+        /**
+         * All messages with the same key go to the same broker, while it is available.
+         */
+        STICKY;
+
+        public static Strategy fromString(String strategy) {
+            return valueOf(strategy.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    /**
+     * A broker along with its connection, session publisher and health.
+     */
+    private static class Broker {
+        private final JMSSessionFactory sessionFactory;
+        private final JMSSessionPublisher publisher;
+        private final JMSBrokerMetrics metrics;
+        private final ObjectName metricsName;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean available = true;
+
+        private Broker(JMSSessionFactory sessionFactory, JMSSessionPublisher publisher, JMSBrokerMetrics metrics,
+                       ObjectName metricsName) {
+            this.sessionFactory = sessionFactory;
+            this.publisher = publisher;
+            this.metrics = metrics;
+            this.metricsName = metricsName;
+        }
+
+        private void eject() {
+            if (available) {
+                available = false;
+                metrics.ejected();
+            }
+            metrics.setAvailable(false);
+        }
+
+        private void restore() {
+            available = true;
+            metrics.setAvailable(true);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.extension.io.jms.util.JMSProviderUrlUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the sends to one broker of a {@link JMSBrokerBalancer}.
+ */
+public class JMSBrokerMetrics implements JMSBrokerMetricsMBean {
+    private final String providerUrl;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder ejected = new LongAdder();
+    private final LongAdder sendLatency = new LongAdder();
+    private final AtomicLong maxSendLatency = new AtomicLong();
+    private volatile boolean available = true;
+
+    /**
+     * @param providerUrl provider URL of the broker, which is masked as it is exposed over JMX and logged.
+     */
+    JMSBrokerMetrics(String providerUrl) {
+        this.providerUrl = JMSProviderUrlUtil.mask(providerUrl);
+    }
+
+    void sent(long latencyNanos) {
+        sent.increment();
+        sendLatency.add(latencyNanos);
+        long max = maxSendLatency.get();
+        while (latencyNanos > max && !maxSendLatency.compareAndSet(max, latencyNanos)) {
+            max = maxSendLatency.get();
+        }
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    void ejected() {
+        ejected.increment();
+    }
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    @Override
+    public String getProviderUrl() {
+        return providerUrl;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Override
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getEjectedCount() {
+        return ejected.sum();
+    }
+
+    @Override
+    public long getMeanSendLatencyMicros() {
+        long count = sent.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(sendLatency.sum() / count);
+    }
+
+    @Override
+    public long getMaxSendLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxSendLatency.get());
+    }
+}
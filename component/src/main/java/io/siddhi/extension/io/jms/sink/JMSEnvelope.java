@@ -0,0 +1,73 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.extension.io.jms.util.JMSEnvelopeUtil;
+
+import java.nio.ByteBuffer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Payload packing multiple events, sent as a single JMS message.
+ */
+class JMSEnvelope {
+    private final Object payload;
+    private final int eventCount;
+    private final String delimiter;
+
+    JMSEnvelope(Object payload, int eventCount, String delimiter) {
+        this.payload = payload;
+        this.eventCount = eventCount;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @return the packed events, a String for text envelopes and a ByteBuffer for binary envelopes.
+     */
+    Object getPayload() {
+        return payload;
+    }
+
+    int getEventCount() {
+        return eventCount;
+    }
+
+    String getDelimiter() {
+        return delimiter;
+    }
+
+    /**
+     * @return the packed events, as the Strings or ByteBuffers they were published as.
+     */
+    Object[] unpack() {
+        if (payload instanceof String) {
+            return JMSEnvelopeUtil.unpackText((String) payload,
+                    delimiter == null ? JMSEnvelopeUtil.DEFAULT_DELIMITER : delimiter, eventCount);
+        }
+        return JMSEnvelopeUtil.unpackBytes((ByteBuffer) payload, eventCount);
+    }
+
+    void writeProperties(Message message) throws JMSException {
+        message.setIntProperty(JMSEnvelopeUtil.EVENT_COUNT_PROPERTY, eventCount);
+        if (delimiter != null) {
+            message.setStringProperty(JMSEnvelopeUtil.DELIMITER_PROPERTY, delimiter);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.util.transport.DynamicOptions;
+import io.siddhi.extension.io.jms.util.JMSEnvelopeUtil;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Packs the events published to each destination into envelopes of up to a fixed number of events, and dispatches
+ * an envelope once it is full or its oldest event is older than the envelope timeout.
+ * <p>
+ * Text events are joined with the delimiter, and binary events are written with a length prefix, as described in
+ * {@link JMSEnvelopeUtil}. Map events cannot be packed and are dispatched on their own, after the open envelope of
+ * their destination. An envelope holding a single event is dispatched as a plain event.
+ * <p>
+ * An envelope is dispatched with the dynamic options of its last event. When an options key is given, the open
+ * envelope is dispatched before an event whose options have a different key, so that the options an envelope is
+ * dispatched with hold for all of its events. When an envelope fails to be dispatched, its events are passed to the
+ * error handler one at a time, along with those options. If the envelope was flushed by an event being added, the
+ * failure is also rethrown, so that Siddhi handles that event through 'on.error' and retries the connection.
+ * Envelopes of destinations which have not been published to for a whole envelope timeout are discarded, so that
+ * short lived destinations do not accumulate.
+ */
+public class JMSEnvelopePacker {
+    private static final Logger log = Logger.getLogger(JMSEnvelopePacker.class);
+    private final int envelopeSize;
+    private final long envelopeTimeout;
+    private final String delimiter;
+    private final Function<DynamicOptions, ?> optionsKey;
+    private final Dispatcher dispatcher;
+    private final JMSPublishPipeline.ErrorHandler errorHandler;
+    private final Map<String, Envelope> envelopes = new ConcurrentHashMap<>();
+
+    /**
+     * @param envelopeSize    maximum number of events per envelope.
+     * @param envelopeTimeout maximum time in milliseconds an event waits in an open envelope.
+     * @param delimiter       delimiter joining the events of text envelopes.
+     * @param optionsKey      function returning the values of the dynamic options which must be the same for all the
+     *                        events of an envelope, or null if any events of a destination may be packed together.
+     * @param dispatcher      dispatcher of the envelopes.
+     * @param errorHandler    handler receiving the envelopes which fail to be dispatched.
+     */
+    public JMSEnvelopePacker(int envelopeSize, long envelopeTimeout, String delimiter,
+                             Function<DynamicOptions, ?> optionsKey, Dispatcher dispatcher,
+                             JMSPublishPipeline.ErrorHandler errorHandler) {
+        this.envelopeSize = envelopeSize;
+        this.envelopeTimeout = envelopeTimeout;
+        this.delimiter = delimiter;
+        this.optionsKey = optionsKey;
+        this.dispatcher = dispatcher;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Adds the event to the open envelope of its destination, dispatching the envelope if it is full.
+     *
+     * @param destination name of the destination.
+     * @param payload     String, Map or ByteBuffer payload.
+     * @param options     dynamic options of the event.
+     * @throws ConnectionUnavailableException if the payload is not packed and cannot be dispatched, or if the open
+     *                                        envelope it flushes cannot be dispatched.
+     */
+    public void add(String destination, Object payload, DynamicOptions options)
+            throws ConnectionUnavailableException {
+        // retried when the envelope was discarded as idle after it was looked up
+        while (!envelopes.computeIfAbsent(destination, Envelope::new).add(payload, options)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Dispatches the envelopes whose oldest event has waited for the envelope timeout, and discards the envelopes
+     * which have stayed empty for as long. Failed envelopes are passed to the error handler.
+     */
+    public void flushExpired() {
+        long now = System.currentTimeMillis();
+        for (Envelope envelope : envelopes.values()) {
+            envelope.flushIfOlderThan(now - envelopeTimeout);
+            if (envelope.discardIfIdleSince(now - envelopeTimeout)) {
+                envelopes.remove(envelope.destination, envelope);
+            }
+        }
+    }
+
+    /**
+     * Dispatches every open envelope. Failed envelopes are passed to the error handler.
+     *
+     * @return the number of events which could not be dispatched.
+     */
+    public int flushAll() {
+        int undispatched = 0;
+        for (Envelope envelope : envelopes.values()) {
+            undispatched += envelope.flushIfOlderThan(Long.MAX_VALUE);
+        }
+        return undispatched;
+    }
+
+    /**
+     * @return the number of destinations with an envelope, which are discarded once idle.
+     */
+    int destinationCount() {
+        return envelopes.size();
+    }
+
+    /**
+     * Receives the packed envelopes, and the events which are not packed.
+     */
+    public interface Dispatcher {
+
+        void dispatch(String destination, Object payload, DynamicOptions options)
+                throws ConnectionUnavailableException;
+    }
+
+    /**
+     * Open envelope of a single destination.
+     */
+    private class Envelope {
+        private final String destination;
+        private final StringBuilder text = new StringBuilder();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final byte[] lengthPrefix = new byte[JMSEnvelopeUtil.LENGTH_PREFIX_SIZE];
+        // only used for its type, and as the payload of a text envelope holding a single event
+        private Object firstPayload;
+        private Object key;
+        private DynamicOptions lastOptions;
+        private int eventCount;
+        private long startTime;
+        private long lastUsedTime = System.currentTimeMillis();
+        private boolean discarded;
+
+        private Envelope(String destination) {
+            this.destination = destination;
+        }
+
+        /**
+         * @return false if the envelope has been discarded, in which case the event was not added.
+         */
+        private synchronized boolean add(Object payload, DynamicOptions options)
+                throws ConnectionUnavailableException {
+            if (discarded) {
+                return false;
+            }
+            lastUsedTime = System.currentTimeMillis();
+            if (!(payload instanceof String || payload instanceof ByteBuffer)) {
+                flush(true, false);
+                dispatcher.dispatch(destination, payload, options);
+                return true;
+            }
+            Object eventKey = optionsKey == null ? null : optionsKey.apply(options);
+            if (eventCount > 0 && ((payload instanceof String) != (firstPayload instanceof String)
+                    || !Objects.equals(eventKey, key))) {
+                flush(true, false);
+            }
+            if (eventCount == 0) {
+                startTime = lastUsedTime;
+                firstPayload = payload;
+                key = eventKey;
+            }
+            // binary payloads are copied right away, as mappers may reuse their buffers
+            append(payload);
+            lastOptions = options;
+            eventCount++;
+            if (eventCount >= envelopeSize) {
+                flush(true, true);
+            }
+            return true;
+        }
+
+        private synchronized int flushIfOlderThan(long time) {
+            if (eventCount == 0 || startTime > time) {
+                return 0;
+            }
+            try {
+                return flush(false, false);
+            } catch (ConnectionUnavailableException e) {
+                // only thrown when the failure is rethrown
+                return 0;
+            }
+        }
+
+        private synchronized boolean discardIfIdleSince(long time) {
+            if (eventCount == 0 && lastUsedTime <= time) {
+                discarded = true;
+            }
+            return discarded;
+        }
+
+        private void append(Object payload) {
+            if (payload instanceof String) {
+                if (text.length() > 0) {
+                    text.append(delimiter);
+                }
+                text.append((String) payload);
+            } else {
+                ByteBuffer buffer = (ByteBuffer) payload;
+                int offset = JMSMessageUtils.payloadOffset(buffer);
+                int length = JMSMessageUtils.payloadLength(buffer);
+                lengthPrefix[0] = (byte) (length >>> 24);
+                lengthPrefix[1] = (byte) (length >>> 16);
+                lengthPrefix[2] = (byte) (length >>> 8);
+                lengthPrefix[3] = (byte) length;
+                bytes.write(lengthPrefix, 0, lengthPrefix.length);
+                if (buffer.hasArray()) {
+                    bytes.write(buffer.array(), buffer.arrayOffset() + offset, length);
+                } else {
+                    byte[] copy = new byte[length];
+                    ByteBuffer content = buffer.duplicate();
+                    ((Buffer) content).position(offset);
+                    content.get(copy);
+                    bytes.write(copy, 0, length);
+                }
+            }
+        }
+
+        /**
+         * Dispatches the open envelope. If the dispatch fails, the events of the envelope are passed to the error
+         * handler one at a time, as the Strings or ByteBuffers they were published as.
+         *
+         * @param rethrow  whether to rethrow the failure, when an event being published flushes the envelope, so
+         *                 that Siddhi passes that event to 'on.error' and retries the connection.
+         * @param holdsAdd whether the last event of the envelope is the event being published, which is then left
+         *                 to Siddhi instead of being passed to the error handler.
+         * @return the number of events which could not be dispatched.
+         * @throws ConnectionUnavailableException if the dispatch fails and the failure is rethrown.
+         */
+        private int flush(boolean rethrow, boolean holdsAdd) throws ConnectionUnavailableException {
+            if (eventCount == 0) {
+                return 0;
+            }
+            Object payload;
+            if (firstPayload instanceof String) {
+                payload = eventCount == 1 ? firstPayload
+                        : new JMSEnvelope(text.toString(), eventCount, delimiter);
+            } else {
+                ByteBuffer packed = ByteBuffer.wrap(bytes.toByteArray());
+                if (eventCount == 1) {
+                    // a single event is sent as it is, without its length prefix
+                    ((Buffer) packed).position(JMSEnvelopeUtil.LENGTH_PREFIX_SIZE);
+                    payload = packed;
+                } else {
+                    payload = new JMSEnvelope(packed, eventCount, null);
+                }
+            }
+            DynamicOptions options = lastOptions;
+            int events = eventCount;
+            // the payload holds a copy of the packed events, which the failure path hands on
+            text.setLength(0);
+            bytes.reset();
+            firstPayload = null;
+            key = null;
+            lastOptions = null;
+            eventCount = 0;
+            try {
+                dispatcher.dispatch(destination, payload, options);
+                return 0;
+            } catch (ConnectionUnavailableException e) {
+                log.error("Error while dispatching an envelope of " + events + " events to destination: "
+                        + destination, e);
+                // the events of an envelope share its destination and options key, so they share its options
+                Object[] failed = payload instanceof JMSEnvelope ? ((JMSEnvelope) payload).unpack()
+                        : new Object[]{payload};
+                int handedOn = rethrow && holdsAdd ? failed.length - 1 : failed.length;
+                for (int i = 0; i < handedOn; i++) {
+                    errorHandler.onError(failed[i], options, e);
+                }
+                if (rethrow) {
+                    throw e;
+                }
+                return events;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.StreamDefinition;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+
+/**
+ * Writes the events of a stream into a MapMessage with the typed setter of each attribute, compiled once from the
+ * stream definition.
+ * <p>
+ * Map payloads produced by the keyvalue mapper are written by looking up the attributes in order. Maps whose keys
+ * are not the attribute names, for example because of a custom mapping, are written entry by entry instead. The
+ * attribute values of events passed through by the passThrough mapper are written directly, without an intermediate
+ * map. Values which do not match the type of their attribute are written with {@link MapMessage#setObject}.
+ */
+public final class JMSMapMessageWriter {
+    private final String[] names;
+    private final Attribute.Type[] types;
+
+    private JMSMapMessageWriter(String[] names, Attribute.Type[] types) {
+        this.names = names;
+        this.types = types;
+    }
+
+    /**
+     * Compiles the writer of the given stream.
+     *
+     * @param streamDefinition definition of the stream published by the sink.
+     * @return the writer.
+     */
+    public static JMSMapMessageWriter compile(StreamDefinition streamDefinition) {
+        List<Attribute> attributes = streamDefinition.getAttributeList();
+        String[] names = new String[attributes.size()];
+        Attribute.Type[] types = new Attribute.Type[attributes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = attributes.get(i).getName();
+            types[i] = attributes.get(i).getType();
+        }
+        return new JMSMapMessageWriter(names, types);
+    }
+
+    /**
+     * Writes the attribute values of an event, in attribute order.
+     *
+     * @param message message to write to.
+     * @param data    attribute values of the event.
+     * @throws JMSException if a value cannot be written.
+     */
+    public void write(MapMessage message, Object[] data) throws JMSException {
+        for (int i = 0; i < names.length; i++) {
+            write(message, i, data[i]);
+        }
+    }
+
+    /**
+     * Writes a map payload, by attribute when its keys are the attribute names and entry by entry otherwise.
+     *
+     * @param message message to write to.
+     * @param payload map produced by the sink mapper.
+     * @throws JMSException if a value cannot be written.
+     */
+    public void write(MapMessage message, Map<?, ?> payload) throws JMSException {
+        if (!hasAttributeKeys(payload)) {
+            for (Map.Entry<?, ?> entry : payload.entrySet()) {
+                message.setObject((String) entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        for (int i = 0; i < names.length; i++) {
+            write(message, i, payload.get(names[i]));
+        }
+    }
+
+    /**
+     * @return the attribute values of an event as a map keyed by attribute name.
+     */
+    Map<String, Object> toMap(Object[] data) {
+        Map<String, Object> map = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            map.put(names[i], data[i]);
+        }
+        return map;
+    }
+
+    private boolean hasAttributeKeys(Map<?, ?> payload) {
+        if (payload.size() != names.length) {
+            return false;
+        }
+        for (String name : names) {
+            if (!payload.containsKey(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(MapMessage message, int index, Object value) throws JMSException {
+        String name = names[index];
+        switch (types[index]) {
+            case STRING:
+                if (value instanceof String) {
+                    message.setString(name, (String) value);
+                    return;
+                }
+                break;
+            case INT:
+                if (value instanceof Integer) {
+                    message.setInt(name, (Integer) value);
+                    return;
+                }
+                break;
+            case LONG:
+                if (value instanceof Long) {
+                    message.setLong(name, (Long) value);
+                    return;
+                }
+                break;
+            case FLOAT:
+                if (value instanceof Float) {
+                    message.setFloat(name, (Float) value);
+                    return;
+                }
+                break;
+            case DOUBLE:
+                if (value instanceof Double) {
+                    message.setDouble(name, (Double) value);
+                    return;
+                }
+                break;
+            case BOOL:
+                if (value instanceof Boolean) {
+                    message.setBoolean(name, (Boolean) value);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        message.setObject(name, value);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import java.util.Map;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+
+/**
+ * Map message payload bound to the {@link JMSMapMessageWriter} of its stream, holding either the map produced by
+ * the sink mapper or the attribute values of an event.
+ */
+class JMSMapPayload {
+    private final JMSMapMessageWriter writer;
+    private final Map<?, ?> map;
+    private final Object[] data;
+
+    JMSMapPayload(JMSMapMessageWriter writer, Map<?, ?> map) {
+        this.writer = writer;
+        this.map = map;
+        this.data = null;
+    }
+
+    JMSMapPayload(JMSMapMessageWriter writer, Object[] data) {
+        this.writer = writer;
+        this.map = null;
+        this.data = data;
+    }
+
+    void write(MapMessage message) throws JMSException {
+        if (data != null) {
+            writer.write(message, data);
+        } else {
+            writer.write(message, map);
+        }
+    }
+
+    /**
+     * @return the payload as a map keyed by attribute name, or by the keys of the mapped map.
+     */
+    Map<?, ?> toMap() {
+        return data != null ? writer.toMap(data) : map;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.extension.io.jms.sink.exception.JMSSinkAdaptorRuntimeException;
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.Session;
+
+/**
+ * Helpers to convert the payloads produced by the sink mappers into JMS messages.
+ */
+public final class JMSMessageUtils {
+    private static final int COPY_BUFFER_SIZE = 8192;
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[COPY_BUFFER_SIZE]);
+
+    private JMSMessageUtils() {
+    }
+
+    /**
+     * Creates a message of the matching type for the given payload on the given session.
+     *
+     * @param session session to create the message on.
+     * @param payload String, Map or ByteBuffer payload.
+     * @return the populated message.
+     * @throws JMSException if the message cannot be created or populated.
+     */
+    public static Message createMessage(Session session, Object payload) throws JMSException {
+        if (payload instanceof String) {
+            return session.createTextMessage((String) payload);
+        } else if (payload instanceof JMSMapPayload) {
+            MapMessage message = session.createMapMessage();
+            ((JMSMapPayload) payload).write(message);
+            return message;
+        } else if (payload instanceof Map) {
+            MapMessage message = session.createMapMessage();
+            populateMapMessage(message, (Map<?, ?>) payload);
+            return message;
+        } else if (payload instanceof ByteBuffer) {
+            BytesMessage message = session.createBytesMessage();
+            writeBytes(message, (ByteBuffer) payload);
+            return message;
+        } else {
+            throw new JMSSinkAdaptorRuntimeException("The message type of the JMS message " + payload.getClass()
+                    + " is not supported!");
+        }
+    }
+
+    /**
+     * Tells whether the given send failure is caused by the payload, which cannot be written into a message of any
+     * session or broker, rather than by the session or the connection.
+     *
+     * @param e failure of a send.
+     * @return true if the payload is unsupported, or cannot be compressed or written into its message.
+     */
+    static boolean isPayloadFailure(Exception e) {
+        return e instanceof MessageFormatException || e instanceof JMSSinkAdaptorRuntimeException;
+    }
+
+    /**
+     * Creates a message for the given payload on the given session, compressing String and ByteBuffer payloads into
+     * a BytesMessage when a codec is given. Map payloads are never compressed. Envelopes are created as a message of
+     * their packed payload, carrying the envelope properties.
+     *
+     * @param session session to create the message on.
+     * @param payload String, Map, ByteBuffer or envelope payload.
+     * @param codec   compression codec.
+     * @return the populated message.
+     * @throws JMSException if the message cannot be created or populated.
+     */
+    public static Message createMessage(Session session, Object payload, JMSCompressionCodec codec)
+            throws JMSException {
+        if (payload instanceof JMSEnvelope) {
+            JMSEnvelope envelope = (JMSEnvelope) payload;
+            Message message = createMessage(session, envelope.getPayload(), codec);
+            envelope.writeProperties(message);
+            return message;
+        }
+        if (!isCompressed(payload, codec)) {
+            return createMessage(session, payload);
+        }
+        BytesMessage message = session.createBytesMessage();
+        writeCompressed(message, payload, codec);
+        return message;
+    }
+
+    /**
+     * Returns the size a payload counts for in rate limits and metrics.
+     *
+     * @param payload String, Map, ByteBuffer or envelope payload.
+     * @return the length of text and binary payloads, and 0 for map payloads.
+     */
+    public static int sizeOf(Object payload) {
+        if (payload instanceof String) {
+            return ((String) payload).length();
+        } else if (payload instanceof ByteBuffer) {
+            return payloadLength((ByteBuffer) payload);
+        } else if (payload instanceof JMSEnvelope) {
+            return sizeOf(((JMSEnvelope) payload).getPayload());
+        }
+        return 0;
+    }
+
+    static boolean isCompressed(Object payload, JMSCompressionCodec codec) {
+        return codec != JMSCompressionCodec.NONE && (payload instanceof String || payload instanceof ByteBuffer);
+    }
+
+    /**
+     * Writes the compressed String or ByteBuffer payload into the message, along with the properties the source
+     * needs to restore it.
+     */
+    static void writeCompressed(BytesMessage message, Object payload, JMSCompressionCodec codec)
+            throws JMSException {
+        byte[] compressed;
+        String payloadType;
+        try {
+            if (payload instanceof String) {
+                byte[] bytes = ((String) payload).getBytes(StandardCharsets.UTF_8);
+                compressed = codec.compress(bytes, 0, bytes.length);
+                payloadType = JMSCompressionCodec.PAYLOAD_TYPE_TEXT;
+            } else {
+                ByteBuffer buffer = (ByteBuffer) payload;
+                if (buffer.hasArray()) {
+                    compressed = codec.compress(buffer.array(), buffer.arrayOffset() + payloadOffset(buffer),
+                            payloadLength(buffer));
+                } else {
+                    byte[] bytes = new byte[payloadLength(buffer)];
+                    ByteBuffer content = buffer.duplicate();
+                    ((Buffer) content).position(payloadOffset(buffer));
+                    content.get(bytes);
+                    compressed = codec.compress(bytes, 0, bytes.length);
+                }
+                payloadType = JMSCompressionCodec.PAYLOAD_TYPE_BYTES;
+            }
+        } catch (IOException e) {
+            throw new JMSSinkAdaptorRuntimeException("Error while compressing the JMS message with codec "
+                    + codec.getName(), e);
+        }
+        message.setStringProperty(JMSCompressionCodec.CODEC_PROPERTY, codec.getName());
+        message.setStringProperty(JMSCompressionCodec.PAYLOAD_TYPE_PROPERTY, payloadType);
+        message.writeBytes(compressed);
+    }
+
+    static void populateMapMessage(MapMessage message, Map<?, ?> payload) {
+        for (Map.Entry<?, ?> entry : payload.entrySet()) {
+            try {
+                message.setObject((String) entry.getKey(), entry.getValue());
+            } catch (JMSException e) {
+                throw new JMSSinkAdaptorRuntimeException("Error while adding property " + entry.getKey()
+                        + " and value " + entry.getValue() + " into message properties.", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the bytes of the binary payload into the message, leaving the position of the buffer unchanged.
+     * <p>
+     * Buffers backed by an accessible array, including sliced buffers, are written straight from that array.
+     * Direct and read-only buffers do not expose an array, so they are written through a reusable per thread
+     * chunk, which is the one copy required by the byte array based JMS API.
+     *
+     * @param message message to write to.
+     * @param payload buffer holding the bytes of the payload, as described by {@link #payloadOffset(ByteBuffer)}.
+     * @throws JMSException if the bytes cannot be written.
+     */
+    static void writeBytes(BytesMessage message, ByteBuffer payload) throws JMSException {
+        int offset = payloadOffset(payload);
+        int length = payloadLength(payload);
+        if (payload.hasArray()) {
+            message.writeBytes(payload.array(), payload.arrayOffset() + offset, length);
+            return;
+        }
+        byte[] chunk = COPY_BUFFER.get();
+        int position = payload.position();
+        try {
+            // cast keeps the byte code compatible with Java 8, where ByteBuffer does not override position(int)
+            ((Buffer) payload).position(offset);
+            while (length > 0) {
+                int chunkLength = Math.min(chunk.length, length);
+                payload.get(chunk, 0, chunkLength);
+                message.writeBytes(chunk, 0, chunkLength);
+                length -= chunkLength;
+            }
+        } finally {
+            ((Buffer) payload).position(position);
+        }
+    }
+
+    /**
+     * Returns the position of the first byte of a binary payload in its buffer.
+     * <p>
+     * The bytes of a binary payload are those between the position and the limit of its buffer, so buffers are
+     * expected to be flipped. The one exception is siddhi-map-binary, which allocates a buffer of the exact size of
+     * the payload and hands it over without flipping it, leaving its position, limit and capacity equal. Such a
+     * buffer holds its payload from the start, which is how binary payloads were always read. Any other buffer with
+     * no bytes remaining, such as a flipped buffer which is already consumed, is an empty payload.
+     *
+     * @param payload buffer produced by the sink mapper.
+     * @return the position the payload starts at.
+     */
+    static int payloadOffset(ByteBuffer payload) {
+        return isUnflipped(payload) ? 0 : payload.position();
+    }
+
+    /**
+     * Returns the number of bytes of a binary payload, as described by {@link #payloadOffset(ByteBuffer)}.
+     *
+     * @param payload buffer produced by the sink mapper.
+     * @return the length of the payload.
+     */
+    static int payloadLength(ByteBuffer payload) {
+        return isUnflipped(payload) ? payload.limit() : payload.remaining();
+    }
+
+    private static boolean isUnflipped(ByteBuffer payload) {
+        return payload.position() == payload.capacity() && payload.limit() == payload.capacity()
+                && payload.capacity() > 0;
+    }
+}
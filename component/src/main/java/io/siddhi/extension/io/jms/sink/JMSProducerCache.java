@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.apache.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+
+/**
+ * Bounded cache of the producers of a session, keyed by the resolved destination name.
+ * <p>
+ * Once the cache is full the least recently used producer is closed and evicted. When a time to live is set,
+ * producers which have not been used for that long are evicted as well, so that destinations which are no longer
+ * published to do not hold broker resources. Not thread safe, as it is confined to the session owning the producers.
+ */
+public class JMSProducerCache {
+    private static final Logger log = Logger.getLogger(JMSProducerCache.class);
+    private final int maxSize;
+    private final long timeToLive;
+    private final JMSSinkMetrics metrics;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * @param maxSize    maximum number of cached producers.
+     * @param timeToLive idle time in milliseconds after which a producer is evicted, or 0 to never expire producers.
+     * @param metrics    metrics to record hits, misses and evictions on.
+     */
+    public JMSProducerCache(int maxSize, long timeToLive, JMSSinkMetrics metrics) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.metrics = metrics;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached producer of the destination.
+     *
+     * @param destination name of the destination.
+     * @return the producer, or null if it is not cached.
+     */
+    public MessageProducer get(String destination) {
+        long now = timeToLive > 0 ? System.currentTimeMillis() : 0;
+        if (timeToLive > 0) {
+            expire(now);
+        }
+        Entry entry = entries.get(destination);
+        if (entry == null) {
+            metrics.destinationCacheMiss();
+            return null;
+        }
+        metrics.destinationCacheHit();
+        entry.lastAccessTime = now;
+        return entry.producer;
+    }
+
+    /**
+     * Caches the producer of the destination, evicting the least recently used producer if the cache is full.
+     *
+     * @param destination name of the destination.
+     * @param producer    producer sending to the destination.
+     */
+    public void put(String destination, MessageProducer producer) {
+        long now = timeToLive > 0 ? System.currentTimeMillis() : 0;
+        entries.put(destination, new Entry(producer, now));
+        metrics.destinationCached(1);
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            evict(iterator, iterator.next());
+        }
+    }
+
+    /**
+     * Forgets all producers without closing them, used once the owning session is closed.
+     */
+    public void clear() {
+        metrics.destinationCached(-entries.size());
+        entries.clear();
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (now - eldest.getValue().lastAccessTime < timeToLive) {
+                return;
+            }
+            evict(iterator, eldest);
+        }
+    }
+
+    private void evict(Iterator<Map.Entry<String, Entry>> iterator, Map.Entry<String, Entry> entry) {
+        iterator.remove();
+        metrics.destinationCacheEviction();
+        metrics.destinationCached(-1);
+        try {
+            entry.getValue().producer.close();
+        } catch (JMSException e) {
+            log.debug("Error while closing the evicted JMS producer of destination: " + entry.getKey(), e);
+        }
+    }
+
+    private static class Entry {
+        private final MessageProducer producer;
+        private long lastAccessTime;
+
+        private Entry(MessageProducer producer, long lastAccessTime) {
+            this.producer = producer;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+}
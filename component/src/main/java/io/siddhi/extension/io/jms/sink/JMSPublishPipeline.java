@@ -0,0 +1,333 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.util.transport.DynamicOptions;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded queue drained by a dedicated set of sender threads, decoupling the Siddhi threads from the broker.
+ * <p>
+ * When the queue is full the configured {@link QueueFullPolicy} decides whether the publishing Siddhi thread is
+ * blocked until space is available, the event is dropped, or a {@link ConnectionUnavailableException} is thrown so
+ * that the sink's 'on.error' action applies.
+ * <p>
+ * In ordered mode the queue is split into one lane per sender thread, and every destination is mapped to a lane by
+ * its hash. As each lane has a single writer, events to the same destination are sent in the order they were
+ * published, while different destinations are still sent in parallel. Otherwise all sender threads share a single
+ * lane and events may be reordered.
+ * <p>
+ * Every sender thread obtains its own {@link Sender} when it starts and closes it when it stops, which lets senders
+ * keep thread-confined resources such as JMS sessions.
+ * <p>
+ * Events which cannot be sent are appended to the {@link JMSSpool}, when one is given, and otherwise passed to the
+ * {@link ErrorHandler}, so that the sink's 'on.error' action applies to them.
+ * <p>
+ * When {@link JMSPublishTimings} are given, the time every event waited in its queue is recorded.
+ */
+public class JMSPublishPipeline {
+    private static final Logger log = Logger.getLogger(JMSPublishPipeline.class);
+    private static final long POLL_TIMEOUT_MS = 100;
+    private final String name;
+    private final Lane[] lanes;
+    private final QueueFullPolicy queueFullPolicy;
+    private final Supplier<Sender> senderFactory;
+    private final JMSSinkMetrics metrics;
+    private final JMSSpool spool;
+    private final JMSPublishTimings timings;
+    private final ErrorHandler errorHandler;
+    private volatile boolean running;
+
+    public JMSPublishPipeline(String name, int queueSize, int threadCount, boolean ordered,
+                              QueueFullPolicy queueFullPolicy, Supplier<Sender> senderFactory,
+                              JMSSinkMetrics metrics, JMSSpool spool, JMSPublishTimings timings,
+                              ErrorHandler errorHandler) {
+        this.name = name;
+        this.queueFullPolicy = queueFullPolicy;
+        this.senderFactory = senderFactory;
+        this.metrics = metrics;
+        this.spool = spool;
+        this.timings = timings;
+        this.errorHandler = errorHandler;
+        if (ordered) {
+            int laneCapacity = Math.max(1, (queueSize + threadCount - 1) / threadCount);
+            this.lanes = new Lane[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                lanes[i] = new Lane(name + "-lane-" + i, laneCapacity, 1);
+            }
+            metrics.setQueue(this::getQueueDepth, laneCapacity * threadCount);
+        } else {
+            this.lanes = new Lane[]{new Lane(name, queueSize, threadCount)};
+            metrics.setQueue(this::getQueueDepth, queueSize);
+        }
+    }
+
+    /**
+     * Queues the payload to be sent by one of the sender threads.
+     *
+     * @param destination name of the destination.
+     * @param payload     payload produced by the sink mapper.
+     * @param options     dynamic options of the event.
+     * @throws ConnectionUnavailableException if the queue is full and the policy is {@link QueueFullPolicy#FAIL},
+     *                                        or the thread is interrupted while blocked on a full queue.
+     */
+    public void submit(String destination, Object payload, DynamicOptions options)
+            throws ConnectionUnavailableException {
+        JMSPublishQueue queue = laneOf(destination).queue;
+        int depth = queue.offer(destination, payload, options);
+        if (depth < 0) {
+            switch (queueFullPolicy) {
+                case DROP:
+                    metrics.dropped();
+                    if (log.isDebugEnabled()) {
+                        log.debug("Publish queue of " + name + " is full, dropping event to destination: "
+                                + destination);
+                    }
+                    return;
+                case FAIL:
+                    metrics.rejected();
+                    throw new ConnectionUnavailableException("Publish queue of " + name + " is full, unable to "
+                            + "publish event to destination: " + destination);
+                default:
+                    metrics.blocked();
+                    try {
+                        depth = queue.put(destination, payload, options);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ConnectionUnavailableException("Interrupted while waiting for space in the "
+                                + "publish queue of " + name, e);
+                    }
+            }
+        }
+        metrics.enqueued(depth);
+    }
+
+    /**
+     * Starts the sender threads, if they are not already running.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Lane lane : lanes) {
+            lane.start();
+        }
+    }
+
+    /**
+     * Stops the sender threads once the queued events are sent, waiting up to the given timeout for them. Sender
+     * threads still running after the timeout are interrupted, and the events left in the queue are appended to the
+     * spool, if any.
+     *
+     * @param timeout maximum time in milliseconds to wait for the queued events to be sent.
+     * @return the number of events which could neither be sent nor spooled.
+     */
+    public int stop(long timeout) {
+        synchronized (this) {
+            running = false;
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        int unsent = 0;
+        for (Lane lane : lanes) {
+            unsent += lane.stop(deadline);
+        }
+        return unsent;
+    }
+
+    private int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    private Lane laneOf(String destination) {
+        if (lanes.length == 1) {
+            return lanes[0];
+        }
+        int hash = destination.hashCode();
+        return lanes[Math.floorMod(hash ^ (hash >>> 16), lanes.length)];
+    }
+
+    /**
+     * A queue along with the sender threads draining it.
+     */
+    private class Lane {
+        private final String name;
+        private final JMSPublishQueue queue;
+        private final int threadCount;
+        private final List<Thread> senderThreads;
+        private final AtomicInteger uncommitted = new AtomicInteger();
+
+        private Lane(String name, int capacity, int threadCount) {
+            this.name = name;
+            this.queue = new JMSPublishQueue(capacity, timings != null);
+            this.threadCount = threadCount;
+            this.senderThreads = new ArrayList<>(threadCount);
+        }
+
+        private void start() {
+            // threads of a previous run which are still draining the queue carry on as sender threads
+            senderThreads.removeIf(senderThread -> !senderThread.isAlive());
+            for (int i = senderThreads.size(); i < threadCount; i++) {
+                Thread senderThread = new Thread(this::drain, name + "-sender-" + i);
+                senderThread.setDaemon(true);
+                senderThread.start();
+                senderThreads.add(senderThread);
+            }
+        }
+
+        private int stop(long deadline) {
+            List<Thread> threads;
+            synchronized (JMSPublishPipeline.this) {
+                threads = new ArrayList<>(senderThreads);
+            }
+            try {
+                for (Thread senderThread : threads) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining > 0) {
+                        senderThread.join(remaining);
+                    }
+                }
+                for (Thread senderThread : threads) {
+                    if (senderThread.isAlive()) {
+                        senderThread.interrupt();
+                        senderThread.join(POLL_TIMEOUT_MS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int unsent = uncommitted.getAndSet(0);
+            JMSPublishQueue.Entry entry = new JMSPublishQueue.Entry();
+            try {
+                while (queue.poll(entry, 0, TimeUnit.MILLISECONDS)) {
+                    if (spool == null || !spool.append(entry.destination, entry.payload, entry.options)) {
+                        unsent++;
+                    }
+                    entry.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unsent += queue.size();
+            }
+            return unsent;
+        }
+
+        private void drain() {
+            Sender sender = senderFactory.get();
+            JMSPublishQueue.Entry entry = new JMSPublishQueue.Entry();
+            try {
+                while (running || !queue.isEmpty()) {
+                    boolean taken;
+                    try {
+                        taken = queue.poll(entry, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (taken) {
+                        if (timings != null) {
+                            timings.queued(System.nanoTime() - entry.enqueueTime);
+                        }
+                        try {
+                            sender.send(entry.destination, entry.payload, entry.options);
+                            metrics.published();
+                        } catch (Exception e) {
+                            // a payload which cannot be written into a message would fail again once re-sent
+                            if (spool != null && !JMSMessageUtils.isPayloadFailure(e)
+                                    && spool.append(entry.destination, entry.payload, entry.options)) {
+                                if (log.isDebugEnabled()) {
+                                    log.debug("Spooled the JMS message to destination: " + entry.destination
+                                            + " which could not be sent.", e);
+                                }
+                            } else {
+                                metrics.failed();
+                                log.error("Error sending JMS message to destination: " + entry.destination, e);
+                                errorHandler.onError(entry.payload, entry.options, e);
+                            }
+                        } finally {
+                            entry.clear();
+                        }
+                    }
+                    sender.flushIfExpired();
+                }
+            } finally {
+                int unsent = sender.close();
+                if (unsent > 0) {
+                    uncommitted.addAndGet(unsent);
+                    log.debug(unsent + " events sent by " + Thread.currentThread().getName() + " could not be "
+                            + "committed when it stopped.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends payloads on behalf of a single sender thread.
+     */
+    public interface Sender {
+
+        void send(String destination, Object payload, DynamicOptions options) throws Exception;
+
+        /**
+         * Invoked after every send, and periodically while the queue is empty, to complete time bound work.
+         */
+        default void flushIfExpired() {
+        }
+
+        /**
+         * Releases the resources of the sender when its thread stops.
+         *
+         * @return the number of sent events which could not be completed.
+         */
+        default int close() {
+            return 0;
+        }
+    }
+
+    /**
+     * Receives the events which could neither be sent nor spooled.
+     */
+    public interface ErrorHandler {
+
+        void onError(Object payload, DynamicOptions options, Exception e);
+    }
+
+    /**
+     * Action taken when an event is published while the queue is full.
+     */
+    public enum QueueFullPolicy {
+        BLOCK, DROP, FAIL;
+
+        public static QueueFullPolicy fromString(String policy) {
+            return valueOf(policy.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.transport.DynamicOptions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded blocking queue of events waiting to be sent, kept as parallel arrays of destinations, payloads and the
+ * dynamic options of the events.
+ * <p>
+ * Unlike a queue of request objects, queueing and taking an event does not allocate, as the destination and payload
+ * are copied into preallocated slots on the way in and into a caller owned {@link Entry} on the way out.
+ */
+class JMSPublishQueue {
+    private final String[] destinations;
+    private final Object[] payloads;
+    private final DynamicOptions[] options;
+    private final long[] enqueueTimes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private int head;
+    private int tail;
+    private int count;
+
+    /**
+     * @param capacity maximum number of queued events.
+     * @param timed    whether the time each event is queued at is kept in its {@link Entry}.
+     */
+    JMSPublishQueue(int capacity, boolean timed) {
+        this.destinations = new String[capacity];
+        this.payloads = new Object[capacity];
+        this.options = new DynamicOptions[capacity];
+        this.enqueueTimes = timed ? new long[capacity] : null;
+    }
+
+    /**
+     * Queues the event if there is space.
+     *
+     * @return the number of queued events including this one, or -1 if the queue is full.
+     */
+    int offer(String destination, Object payload, DynamicOptions dynamicOptions) {
+        lock.lock();
+        try {
+            if (count == payloads.length) {
+                return -1;
+            }
+            return enqueue(destination, payload, dynamicOptions);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the event, waiting for space if the queue is full.
+     *
+     * @return the number of queued events including this one.
+     */
+    int put(String destination, Object payload, DynamicOptions dynamicOptions) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == payloads.length) {
+                notFull.await();
+            }
+            return enqueue(destination, payload, dynamicOptions);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the oldest event into the given entry, waiting up to the timeout for one to be queued.
+     *
+     * @return whether an event was taken.
+     */
+    boolean poll(Entry entry, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            entry.destination = destinations[head];
+            entry.payload = payloads[head];
+            entry.options = options[head];
+            if (enqueueTimes != null) {
+                entry.enqueueTime = enqueueTimes[head];
+            }
+            destinations[head] = null;
+            payloads[head] = null;
+            options[head] = null;
+            head = (head + 1) % payloads.length;
+            count--;
+            notFull.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private int enqueue(String destination, Object payload, DynamicOptions dynamicOptions) {
+        destinations[tail] = destination;
+        payloads[tail] = payload;
+        options[tail] = dynamicOptions;
+        if (enqueueTimes != null) {
+            enqueueTimes[tail] = System.nanoTime();
+        }
+        tail = (tail + 1) % payloads.length;
+        count++;
+        notEmpty.signal();
+        return count;
+    }
+
+    /**
+     * Holder of a taken event, reused by its sender thread for every event it takes.
+     */
+    static class Entry {
+        String destination;
+        Object payload;
+        DynamicOptions options;
+        long enqueueTime;
+
+        void clear() {
+            destination = null;
+            payload = null;
+            options = null;
+        }
+    }
+}
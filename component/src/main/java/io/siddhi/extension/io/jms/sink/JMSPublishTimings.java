@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.statistics.LatencyTracker;
+import io.siddhi.core.util.statistics.ThroughputTracker;
+import io.siddhi.extension.io.jms.util.JMSLatencyHistogram;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and byte counts of the publish path of a {@link JMSSink}: the time events wait in the publish queue or
+ * the publisher executor, the time taken to create their messages and to send them, and the payload bytes sent to
+ * each destination.
+ * <p>
+ * The sink only creates the timings when its metrics are enabled, and every recording site checks for them, so
+ * disabled metrics cost neither clock reads nor shared writes. Sends are also reported to the Siddhi statistics,
+ * through the given trackers, when the Siddhi app enables them.
+ */
+public class JMSPublishTimings implements JMSPublishTimingsMBean {
+    // destinations beyond this are counted together, so that dynamic destinations cannot grow the map unbounded
+    static final int MAX_DESTINATIONS = 1024;
+    static final String OTHER_DESTINATIONS = "<other>";
+    private final JMSLatencyHistogram queueWait = new JMSLatencyHistogram();
+    private final JMSLatencyHistogram createTime = new JMSLatencyHistogram();
+    private final JMSLatencyHistogram sendTime = new JMSLatencyHistogram();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final Map<String, LongAdder> destinationBytesOut = new ConcurrentHashMap<>();
+    private final LatencyTracker sendLatencyTracker;
+    private final ThroughputTracker sentThroughputTracker;
+
+    /**
+     * @param sendLatencyTracker    Siddhi tracker of the send latency, or null if Siddhi statistics are disabled.
+     * @param sentThroughputTracker Siddhi tracker of the sent messages, or null if Siddhi statistics are disabled.
+     */
+    public JMSPublishTimings(LatencyTracker sendLatencyTracker, ThroughputTracker sentThroughputTracker) {
+        this.sendLatencyTracker = sendLatencyTracker;
+        this.sentThroughputTracker = sentThroughputTracker;
+    }
+
+    void queued(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    void created(long nanos) {
+        createTime.record(nanos);
+    }
+
+    /**
+     * Marks the start of a send on the calling thread, which must report its end with {@link #sendEnded()} in a
+     * finally block, whether the send succeeds or not.
+     */
+    void sending() {
+        if (sendLatencyTracker != null) {
+            sendLatencyTracker.markIn();
+        }
+    }
+
+    void sendEnded() {
+        if (sendLatencyTracker != null) {
+            sendLatencyTracker.markOut();
+        }
+    }
+
+    /**
+     * Records a successful send.
+     */
+    void sent(String destination, Object payload, long nanos) {
+        sendTime.record(nanos);
+        sentCount.increment();
+        int size = JMSMessageUtils.sizeOf(payload);
+        bytesOut.add(size);
+        LongAdder destinationBytes = destinationBytesOut.get(destination);
+        if (destinationBytes == null) {
+            destinationBytes = destinationBytesOut.computeIfAbsent(
+                    destinationBytesOut.size() < MAX_DESTINATIONS ? destination : OTHER_DESTINATIONS,
+                    key -> new LongAdder());
+        }
+        destinationBytes.add(size);
+        if (sentThroughputTracker != null) {
+            sentThroughputTracker.eventIn();
+        }
+    }
+
+    @Override
+    public void resetTimings() {
+        queueWait.reset();
+        createTime.reset();
+        sendTime.reset();
+    }
+
+    @Override
+    public double getQueueWaitMeanMicros() {
+        return queueWait.getMeanMicros();
+    }
+
+    @Override
+    public long getQueueWaitP50Micros() {
+        return queueWait.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getQueueWaitP99Micros() {
+        return queueWait.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getQueueWaitP999Micros() {
+        return queueWait.getPercentileMicros(99.9);
+    }
+
+    @Override
+    public long getQueueWaitMaxMicros() {
+        return queueWait.getMaxMicros();
+    }
+
+    @Override
+    public double getCreateMessageMeanMicros() {
+        return createTime.getMeanMicros();
+    }
+
+    @Override
+    public long getCreateMessageP50Micros() {
+        return createTime.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getCreateMessageP99Micros() {
+        return createTime.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getCreateMessageP999Micros() {
+        return createTime.getPercentileMicros(99.9);
+    }
+
+    @Override
+    public long getCreateMessageMaxMicros() {
+        return createTime.getMaxMicros();
+    }
+
+    @Override
+    public double getSendMeanMicros() {
+        return sendTime.getMeanMicros();
+    }
+
+    @Override
+    public long getSendP50Micros() {
+        return sendTime.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getSendP99Micros() {
+        return sendTime.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getSendP999Micros() {
+        return sendTime.getPercentileMicros(99.9);
+    }
+
+    @Override
+    public long getSendMaxMicros() {
+        return sendTime.getMaxMicros();
+    }
+
+    @Override
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public Map<String, Long> getBytesOutPerDestination() {
+        Map<String, Long> bytes = new HashMap<>();
+        destinationBytesOut.forEach((destination, count) -> bytes.put(destination, count.sum()));
+        return bytes;
+    }
+}
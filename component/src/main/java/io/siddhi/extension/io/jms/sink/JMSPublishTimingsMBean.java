@@ -0,0 +1,69 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link JMSPublishTimings}.
+ */
+public interface JMSPublishTimingsMBean {
+
+    /**
+     * Clears the latency histograms, which are otherwise cumulative since the sink was created, so that the next
+     * readings cover the interval since the reset. The sent and byte counts stay cumulative.
+     */
+    void resetTimings();
+
+    double getQueueWaitMeanMicros();
+
+    long getQueueWaitP50Micros();
+
+    long getQueueWaitP99Micros();
+
+    long getQueueWaitP999Micros();
+
+    long getQueueWaitMaxMicros();
+
+    double getCreateMessageMeanMicros();
+
+    long getCreateMessageP50Micros();
+
+    long getCreateMessageP99Micros();
+
+    long getCreateMessageP999Micros();
+
+    long getCreateMessageMaxMicros();
+
+    double getSendMeanMicros();
+
+    long getSendP50Micros();
+
+    long getSendP99Micros();
+
+    long getSendP999Micros();
+
+    long getSendMaxMicros();
+
+    long getSentCount();
+
+    long getBytesOut();
+
+    Map<String, Long> getBytesOutPerDestination();
+}
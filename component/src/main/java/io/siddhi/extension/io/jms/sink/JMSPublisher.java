@@ -18,15 +18,17 @@
  */
 package io.siddhi.extension.io.jms.sink;
 
+import io.siddhi.core.util.transport.DynamicOptions;
 import io.siddhi.extension.io.jms.sink.exception.JMSSinkAdaptorRuntimeException;
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
 import org.apache.log4j.Logger;
 import org.wso2.transport.jms.contract.JMSClientConnector;
 import org.wso2.transport.jms.exception.JMSConnectorException;
 import org.wso2.transport.jms.utils.JMSConstants;
 
 import java.nio.ByteBuffer;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.MapMessage;
@@ -35,62 +37,209 @@ import javax.jms.TextMessage;
 
 /**
  * JMS publisher which creates the message and sends to JMS.
+ * <p>
+ * Publishers are reusable tasks: a publisher taken from a pool with {@link #acquire(BlockingQueue)} is prepared with
+ * the destination and message of one event, and returns itself to the pool once it has run, so that the steady state
+ * publish path only allocates the JMS message.
  */
 public class JMSPublisher implements Runnable {
     private static final Logger log = Logger.getLogger(JMSPublisher.class);
-    private Map<String, String> jmsProperties;
+    private final BlockingQueue<JMSPublisher> pool;
     private JMSClientConnector jmsClientConnector;
+    private String destination;
+    private Object payload;
+    private DynamicOptions options;
     private Message message;
+    private JMSSpool spool;
+    private JMSPublishTimings timings;
+    private JMSPublishPipeline.ErrorHandler errorHandler;
+    private long preparedTime;
 
-    public JMSPublisher(String destination, Map<String, String> staticJMSProperties,
-                        JMSClientConnector jmsClientConnector, Object payload) {
-        this.jmsProperties = new HashMap<>();
-        this.jmsProperties.putAll(staticJMSProperties);
-        this.jmsProperties.put(JMSConstants.PARAM_DESTINATION_NAME, destination);
+    private JMSPublisher(BlockingQueue<JMSPublisher> pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Takes an idle publisher from the pool, or creates one if all publishers of the pool are running.
+     *
+     * @param pool bounded pool of idle publishers.
+     * @return a publisher, which returns to the pool after it has run.
+     */
+    public static JMSPublisher acquire(BlockingQueue<JMSPublisher> pool) {
+        JMSPublisher publisher = pool.poll();
+        return publisher == null ? new JMSPublisher(pool) : publisher;
+    }
+
+    /**
+     * Creates the message for the payload, to be sent to the destination when the publisher runs.
+     *
+     * @param jmsClientConnector connector to create and send the message with.
+     * @param codec              compression codec of the message body.
+     * @param destination        name of the destination.
+     * @param payload            String, Map or ByteBuffer payload.
+     * @param options            dynamic options of the event.
+     * @param spool              spool receiving the payload if it cannot be sent, or null to fail instead.
+     * @param timings            timings recording the wait, creation and send of the message, or null.
+     * @param errorHandler       handler receiving the payload if it can neither be sent nor spooled, or null to
+     *                           throw from the publisher instead.
+     * @return this publisher.
+     * @throws JMSSinkAdaptorRuntimeException if the message cannot be created, in which case the publisher has
+     *                                        returned to the pool.
+     */
+    public JMSPublisher prepare(JMSClientConnector jmsClientConnector, JMSCompressionCodec codec,
+                                String destination, Object payload, DynamicOptions options, JMSSpool spool,
+                                JMSPublishTimings timings, JMSPublishPipeline.ErrorHandler errorHandler) {
         this.jmsClientConnector = jmsClientConnector;
+        this.destination = destination;
+        this.payload = payload;
+        this.options = options;
+        this.spool = spool;
+        this.timings = timings;
+        this.errorHandler = errorHandler;
+        boolean prepared = false;
         try {
-            this.message = handleMessage(payload);
-        } catch (JMSException | JMSConnectorException e) {
-            throw new JMSSinkAdaptorRuntimeException("Error while processing the JMS message to destination "
-                    + destination, e);
+            if (timings == null) {
+                this.message = createMessage(jmsClientConnector, codec, destination, payload);
+            } else {
+                long start = System.nanoTime();
+                this.message = createMessage(jmsClientConnector, codec, destination, payload);
+                this.preparedTime = System.nanoTime();
+                timings.created(preparedTime - start);
+            }
+            prepared = true;
+        } finally {
+            if (!prepared) {
+                release();
+            }
         }
+        return this;
     }
 
     @Override
     public void run() {
         try {
-            jmsClientConnector.send(message, jmsProperties.get(JMSConstants.PARAM_DESTINATION_NAME));
+            if (timings == null) {
+                send(jmsClientConnector, destination, message);
+            } else {
+                long start = System.nanoTime();
+                timings.queued(start - preparedTime);
+                timings.sending();
+                try {
+                    send(jmsClientConnector, destination, message);
+                } finally {
+                    timings.sendEnded();
+                }
+                timings.sent(destination, payload, System.nanoTime() - start);
+            }
+        } catch (JMSSinkAdaptorRuntimeException e) {
+            if (spool != null && spool.append(destination, payload, options)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Spooled the JMS message to destination: " + destination + " which could not be "
+                            + "sent.", e);
+                }
+                return;
+            }
+            log.error("Error sending JMS message to destination: " + destination, e);
+            if (errorHandler == null) {
+                throw e;
+            }
+            errorHandler.onError(payload, options, e);
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        jmsClientConnector = null;
+        destination = null;
+        payload = null;
+        options = null;
+        message = null;
+        spool = null;
+        timings = null;
+        errorHandler = null;
+        // dropped if the pool is already full, e.g. after a burst of concurrent publishers
+        pool.offer(this);
+    }
+
+    /**
+     * Creates the message for the payload and sends it on the calling thread.
+     *
+     * @param jmsClientConnector connector to create and send the message with.
+     * @param codec              compression codec of the message body.
+     * @param destination        name of the destination.
+     * @param payload            String, Map or ByteBuffer payload.
+     * @param timings            timings recording the creation and send of the message, or null.
+     */
+    public static void publish(JMSClientConnector jmsClientConnector, JMSCompressionCodec codec,
+                               String destination, Object payload, JMSPublishTimings timings) {
+        if (timings == null) {
+            send(jmsClientConnector, destination, createMessage(jmsClientConnector, codec, destination, payload));
+            return;
+        }
+        long start = System.nanoTime();
+        Message message = createMessage(jmsClientConnector, codec, destination, payload);
+        long created = System.nanoTime();
+        timings.created(created - start);
+        timings.sending();
+        try {
+            send(jmsClientConnector, destination, message);
+        } finally {
+            timings.sendEnded();
+        }
+        timings.sent(destination, payload, System.nanoTime() - created);
+    }
+
+    private static void send(JMSClientConnector jmsClientConnector, String destination, Message message) {
+        try {
+            jmsClientConnector.send(message, destination);
         } catch (JMSConnectorException e) {
-            log.error("Error sending JMS message to destination: "
-                    + jmsProperties.get(JMSConstants.PARAM_DESTINATION_NAME), e);
-            throw new JMSSinkAdaptorRuntimeException("Error sending JMS message to destination: "
-                    + jmsProperties.get(JMSConstants.PARAM_DESTINATION_NAME), e);
+            throw new JMSSinkAdaptorRuntimeException("Error sending JMS message to destination: " + destination, e);
+        }
+    }
+
+    private static Message createMessage(JMSClientConnector jmsClientConnector, JMSCompressionCodec codec,
+                                         String destination, Object payload) {
+        try {
+            if (payload instanceof JMSEnvelope) {
+                JMSEnvelope envelope = (JMSEnvelope) payload;
+                Message message = createMessage(jmsClientConnector, codec, destination, envelope.getPayload());
+                envelope.writeProperties(message);
+                return message;
+            }
+            if (JMSMessageUtils.isCompressed(payload, codec)) {
+                BytesMessage message = (BytesMessage) jmsClientConnector.createMessage(
+                        JMSConstants.BYTES_MESSAGE_TYPE);
+                JMSMessageUtils.writeCompressed(message, payload, codec);
+                return message;
+            }
+            return handleMessage(jmsClientConnector, payload);
+        } catch (JMSException | JMSConnectorException e) {
+            throw new JMSSinkAdaptorRuntimeException("Error while processing the JMS message to destination "
+                    + destination, e);
         }
     }
 
-    private Message handleMessage(Object payload) throws JMSException, JMSConnectorException {
+    private static Message handleMessage(JMSClientConnector jmsClientConnector, Object payload)
+            throws JMSException, JMSConnectorException {
         if (payload instanceof String) {
             TextMessage message = (TextMessage) jmsClientConnector.createMessage(JMSConstants.TEXT_MESSAGE_TYPE);
-            message.setText(payload.toString());
+            message.setText((String) payload);
+            return message;
+        } else if (payload instanceof JMSMapPayload) {
+            MapMessage message = (MapMessage) jmsClientConnector.createMessage(JMSConstants.MAP_MESSAGE_TYPE);
+            ((JMSMapPayload) payload).write(message);
             return message;
         } else if (payload instanceof Map) {
             MapMessage message = (MapMessage) jmsClientConnector.createMessage(JMSConstants.MAP_MESSAGE_TYPE);
-            ((Map) payload).forEach((key, value) -> {
-                try {
-                    message.setObject((String) key, value);
-                } catch (JMSException e) {
-                    throw new JMSSinkAdaptorRuntimeException("Error while adding property " + key + " and value "
-                            + value + " into message properties.", e);
-                }
-            });
+            JMSMessageUtils.populateMapMessage(message, (Map<?, ?>) payload);
             return message;
         } else if (payload instanceof ByteBuffer) {
-            byte[] data = ((ByteBuffer) payload).array();
             BytesMessage message = (BytesMessage) jmsClientConnector.createMessage(JMSConstants.BYTES_MESSAGE_TYPE);
-            message.writeBytes(data);
+            JMSMessageUtils.writeBytes(message, (ByteBuffer) payload);
             return message;
         } else {
-            throw new JMSSinkAdaptorRuntimeException("The message type of the JMS message " + message.getClass()
+            throw new JMSSinkAdaptorRuntimeException("The message type of the JMS message " + payload.getClass()
                     + " is not supported!");
         }
     }
@@ -0,0 +1,181 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.apache.log4j.Logger;
+
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor running the publishers of a sink, each publish on its own thread, with at most a given number of
+ * publishes in flight.
+ * <p>
+ * With {@link ThreadType#PLATFORM} threads, publishes run on a cached pool of daemon threads. With
+ * {@link ThreadType#VIRTUAL} threads, every publish runs on a new virtual thread, so that publishes blocked on a slow
+ * broker hold no platform thread. Both run on the same executor, which keeps idle threads alive only for platform
+ * threads. The virtual thread factory is created through reflection, as virtual threads are only available from
+ * JDK 21, and platform threads are used instead on older JDKs. Tests inject their own thread factory, so the
+ * virtual thread factory itself is only exercised when they run on JDK 21 or later.
+ * <p>
+ * Submitting waits while the maximum number of publishes is in flight, which pushes back on the publishing thread
+ * instead of growing the number of threads.
+ */
+public class JMSPublisherExecutor {
+    private static final Logger log = Logger.getLogger(JMSPublisherExecutor.class);
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long INTERRUPT_TIMEOUT_MS = 1000;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final boolean virtual;
+
+    /**
+     * @param name        prefix of the thread names.
+     * @param threadType  type of the threads to run the publishes on.
+     * @param maxInFlight maximum number of publishes running at once.
+     */
+    public JMSPublisherExecutor(String name, ThreadType threadType, int maxInFlight) {
+        this(threadFactoryOf(name + "-publisher-", threadType), threadType == ThreadType.VIRTUAL
+                && isVirtualAvailable(), maxInFlight);
+    }
+
+    /**
+     * @param threadFactory factory of the threads to run the publishes on.
+     * @param virtual       whether the factory creates virtual threads, which are not kept alive once idle.
+     * @param maxInFlight   maximum number of publishes running at once.
+     */
+    JMSPublisherExecutor(ThreadFactory threadFactory, boolean virtual, int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.virtual = virtual;
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, virtual ? 0 : KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory) {
+            @Override
+            protected void afterExecute(Runnable runnable, Throwable throwable) {
+                permits.release();
+            }
+        };
+    }
+
+    /**
+     * Runs the publisher once fewer than the maximum number of publishes are in flight.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void execute(Runnable publisher) throws InterruptedException {
+        permits.acquire();
+        try {
+            // released by afterExecute, which saves wrapping every publisher
+            executor.execute(publisher);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the running publishes, interrupting those which do not complete within the timeout. An interrupted
+     * publish fails, and its publisher spools its event or passes it to 'on.error'.
+     *
+     * @return the number of publishes still running a while after being interrupted, whose events may or may not
+     * be sent.
+     */
+    public int stop(long timeout) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                return 0;
+            }
+            executor.shutdownNow();
+            if (executor.awaitTermination(INTERRUPT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        return getInFlight();
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    private static ThreadFactory threadFactoryOf(String threadNamePrefix, ThreadType threadType) {
+        if (threadType == ThreadType.VIRTUAL) {
+            ThreadFactory virtualThreadFactory = createVirtualThreadFactory(threadNamePrefix);
+            if (virtualThreadFactory != null) {
+                return virtualThreadFactory;
+            }
+            log.warn("Virtual threads are not available on Java " + System.getProperty("java.version")
+                    + ", " + threadNamePrefix + " threads are platform threads instead.");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    static boolean isVirtualAvailable() {
+        return createVirtualThreadFactory("") != null;
+    }
+
+    /**
+     * Creates {@code Thread.ofVirtual().name(prefix, 0).factory()}.
+     *
+     * @return the thread factory, or null if the JDK has no virtual threads.
+     */
+    static ThreadFactory createVirtualThreadFactory(String threadNamePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to create a virtual thread factory.", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Type of the threads publishes run on.
+     */
+    public enum ThreadType {
+        PLATFORM, VIRTUAL;
+
+        public static ThreadType fromString(String threadType) {
+            return valueOf(threadType.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+}
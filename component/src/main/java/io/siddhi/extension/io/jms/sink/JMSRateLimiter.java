@@ -0,0 +1,233 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.transport.DynamicOptions;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limit of the messages, and of the bytes of the text and binary payloads, sent by the sink.
+ * <p>
+ * Each bucket holds up to one second of its rate, which is the largest burst it lets through. A send takes its
+ * tokens up front and waits for the deficit, if any, so that waiting senders are served in the order they arrived.
+ * Buckets are either shared by all destinations, or kept per destination.
+ * <p>
+ * In adaptive mode the rate is scaled by a factor between {@link #MIN_FACTOR} and 1, evaluated once per window of
+ * sends. The factor is halved when the mean send latency or the error rate of the window exceeds its threshold, and
+ * raised by a tenth of the full rate when both are back below.
+ */
+public class JMSRateLimiter {
+    static final double MIN_FACTOR = 0.05;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double INCREASE_STEP = 0.1;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final double messageRate;
+    private final double byteRate;
+    private final boolean perDestination;
+    private final boolean adaptive;
+    private final long latencyThresholdNanos;
+    private final double errorThreshold;
+    private final JMSSinkMetrics metrics;
+    private final LongSupplier clock;
+    private final Buckets globalBuckets;
+    private final Map<String, Buckets> destinationBuckets = new ConcurrentHashMap<>();
+    private final LongAdder windowSends = new LongAdder();
+    private final LongAdder windowErrors = new LongAdder();
+    private final LongAdder windowLatency = new LongAdder();
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private volatile double factor = 1;
+
+    /**
+     * @param messageRate      messages per second, or 0 for no message limit.
+     * @param byteRate         bytes per second, or 0 for no byte limit.
+     * @param perDestination   whether every destination has its own buckets.
+     * @param adaptive         whether the rate adapts to the send latency and error rate.
+     * @param latencyThreshold mean send latency in milliseconds above which the adaptive rate is lowered.
+     * @param errorThreshold   ratio of failed sends above which the adaptive rate is lowered.
+     * @param metrics          metrics of the sink.
+     */
+    public JMSRateLimiter(double messageRate, double byteRate, boolean perDestination, boolean adaptive,
+                          long latencyThreshold, double errorThreshold, JMSSinkMetrics metrics) {
+        this(messageRate, byteRate, perDestination, adaptive, latencyThreshold, errorThreshold, metrics,
+                System::nanoTime);
+    }
+
+    /**
+     * @param clock nanosecond clock the buckets are refilled by.
+     */
+    JMSRateLimiter(double messageRate, double byteRate, boolean perDestination, boolean adaptive,
+                   long latencyThreshold, double errorThreshold, JMSSinkMetrics metrics, LongSupplier clock) {
+        this.clock = clock;
+        this.messageRate = messageRate;
+        this.byteRate = byteRate;
+        this.perDestination = perDestination;
+        this.adaptive = adaptive;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+        this.errorThreshold = errorThreshold;
+        this.metrics = metrics;
+        this.globalBuckets = perDestination ? null : new Buckets();
+        metrics.setRateLimitFactor(factor);
+    }
+
+    /**
+     * Waits until the payload may be sent to the destination.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public void acquire(String destination, Object payload) throws InterruptedException {
+        Buckets buckets = perDestination ? destinationBuckets.computeIfAbsent(destination, key -> new Buckets())
+                : globalBuckets;
+        long waitNanos = 0;
+        if (buckets.messages != null) {
+            waitNanos = buckets.messages.reserve(1, messageRate * factor);
+        }
+        if (buckets.bytes != null) {
+            int size = JMSMessageUtils.sizeOf(payload);
+            if (size > 0) {
+                waitNanos = Math.max(waitNanos, buckets.bytes.reserve(size, byteRate * factor));
+            }
+        }
+        if (waitNanos <= 0) {
+            return;
+        }
+        metrics.throttled(waitNanos);
+        long deadline = System.nanoTime() + waitNanos;
+        long remaining = waitNanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Records the outcome of a send, adapting the rate once per window in adaptive mode.
+     *
+     * @param latencyNanos time the send took.
+     * @param failed       whether the send failed.
+     */
+    public void record(long latencyNanos, boolean failed) {
+        if (!adaptive) {
+            return;
+        }
+        windowSends.increment();
+        windowLatency.add(latencyNanos);
+        if (failed) {
+            windowErrors.increment();
+        }
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start < WINDOW_NANOS || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        long sends = windowSends.sumThenReset();
+        long errors = windowErrors.sumThenReset();
+        long latency = windowLatency.sumThenReset();
+        if (sends == 0) {
+            return;
+        }
+        if (latency / sends > latencyThresholdNanos || (double) errors / sends > errorThreshold) {
+            factor = Math.max(MIN_FACTOR, factor * DECREASE_FACTOR);
+        } else if (factor < 1) {
+            factor = Math.min(1, factor + INCREASE_STEP);
+        }
+        metrics.setRateLimitFactor(factor);
+    }
+
+    /**
+     * Wraps the sender so that its sends are rate limited and recorded.
+     */
+    public JMSPublishPipeline.Sender throttle(JMSPublishPipeline.Sender sender) {
+        return new JMSPublishPipeline.Sender() {
+            @Override
+            public void send(String destination, Object payload, DynamicOptions options) throws Exception {
+                acquire(destination, payload);
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    sender.send(destination, payload, options);
+                    failed = false;
+                } finally {
+                    record(System.nanoTime() - start, failed);
+                }
+            }
+
+            @Override
+            public void flushIfExpired() {
+                sender.flushIfExpired();
+            }
+
+            @Override
+            public int close() {
+                return sender.close();
+            }
+        };
+    }
+
+    /**
+     * The message and byte buckets of a destination, or of all destinations.
+     */
+    private class Buckets {
+        private final TokenBucket messages = messageRate > 0 ? new TokenBucket(clock) : null;
+        private final TokenBucket bytes = byteRate > 0 ? new TokenBucket(clock) : null;
+    }
+
+    /**
+     * Bucket holding up to one second of tokens at its current rate.
+     */
+    static class TokenBucket {
+        private final LongSupplier clock;
+        private boolean started;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(LongSupplier clock) {
+            this.clock = clock;
+        }
+
+        /**
+         * Takes the tokens, leaving the bucket in deficit if it does not hold enough.
+         *
+         * @return the time in nanoseconds to wait until the deficit is refilled.
+         */
+        synchronized long reserve(double amount, double rate) {
+            // read under the lock, so that a thread holding an older reading cannot move the refill time back
+            long now = clock.getAsLong();
+            if (!started) {
+                // a new bucket starts full
+                started = true;
+                tokens = rate;
+            } else {
+                tokens = Math.min(rate, tokens + Math.max(0, now - lastRefill) * rate / WINDOW_NANOS);
+            }
+            lastRefill = now;
+            tokens -= amount;
+            return tokens >= 0 ? 0 : (long) (-tokens * WINDOW_NANOS / rate);
+        }
+    }
+}
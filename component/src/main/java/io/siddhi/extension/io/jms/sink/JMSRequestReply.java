@@ -0,0 +1,227 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.extension.io.jms.util.JMSReplyRegistry;
+import io.siddhi.extension.io.jms.util.JMSSessionFactory;
+import org.apache.log4j.Logger;
+import org.wso2.transport.jms.contract.JMSListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+
+/**
+ * Request-reply exchange of a sink: stamps every request with a correlation id and a reply destination, and passes
+ * the replies to the reply source registered under the same sink id.
+ * <p>
+ * Requests awaiting a reply are kept in insertion order in a correlation map bounded to the maximum number of
+ * outstanding requests. When the map is full the oldest request is evicted, and requests older than the reply timeout
+ * are evicted by {@link #expire()}, so that lost replies cannot grow the map. Replies to evicted or unknown requests
+ * are dropped.
+ * <p>
+ * Replies are consumed from a temporary queue of the connection, or from a fixed reply destination, where a selector
+ * on the correlation id prefix of this exchange keeps the replies of other sinks in place.
+ */
+public class JMSRequestReply implements MessageListener {
+    private static final Logger log = Logger.getLogger(JMSRequestReply.class);
+    private final JMSSessionFactory sessionFactory;
+    private final String replyDestinationName;
+    private final long timeoutNanos;
+    private final int maxOutstanding;
+    private final String registryKey;
+    private final JMSSinkMetrics metrics;
+    private final String correlationIdPrefix = UUID.randomUUID().toString() + "-";
+    private final AtomicLong requestCount = new AtomicLong();
+    private final Map<String, Long> outstanding = new LinkedHashMap<>();
+    private volatile Destination replyDestination;
+    private Session replySession;
+    private volatile MessageConsumer replyConsumer;
+    private volatile int connectionCount;
+
+    /**
+     * @param sessionFactory       session factory of the sink, whose connection the replies are consumed on.
+     * @param replyDestinationName name of the reply destination, or null to reply to a temporary queue.
+     * @param timeout              time in milliseconds after which a request no longer awaits its reply.
+     * @param maxOutstanding       maximum number of requests awaiting their replies.
+     * @param registryKey          key of the reply source in the {@link JMSReplyRegistry}.
+     * @param metrics              metrics of the sink.
+     */
+    public JMSRequestReply(JMSSessionFactory sessionFactory, String replyDestinationName, long timeout,
+                           int maxOutstanding, String registryKey, JMSSinkMetrics metrics) {
+        this.sessionFactory = sessionFactory;
+        this.replyDestinationName = replyDestinationName;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.maxOutstanding = maxOutstanding;
+        this.registryKey = registryKey;
+        this.metrics = metrics;
+        metrics.setOutstandingRequests(this::getOutstanding);
+    }
+
+    /**
+     * Starts consuming replies, or restarts if the connection was re-established since.
+     *
+     * @throws JMSException if the reply consumer cannot be created.
+     */
+    public synchronized void start() throws JMSException {
+        if (replyConsumer != null && connectionCount == sessionFactory.getConnectionCount()) {
+            return;
+        }
+        closeConsumer();
+        Session session = sessionFactory.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        try {
+            Destination destination;
+            MessageConsumer consumer;
+            if (replyDestinationName == null) {
+                destination = session.createTemporaryQueue();
+                consumer = session.createConsumer(destination);
+            } else {
+                destination = sessionFactory.createDestination(session, replyDestinationName);
+                consumer = session.createConsumer(destination,
+                        "JMSCorrelationID LIKE '" + correlationIdPrefix + "%'");
+            }
+            consumer.setMessageListener(this);
+            replySession = session;
+            replyConsumer = consumer;
+            replyDestination = destination;
+            connectionCount = sessionFactory.getConnectionCount();
+        } catch (JMSException | RuntimeException e) {
+            try {
+                session.close();
+            } catch (JMSException closeException) {
+                log.debug("Error while closing the JMS reply session", closeException);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the correlation id and reply destination of the request, and registers it as awaiting its reply.
+     *
+     * @throws JMSException if the request cannot be stamped.
+     */
+    public void stamp(Message request) throws JMSException {
+        if (replyConsumer == null || connectionCount != sessionFactory.getConnectionCount()) {
+            start();
+        }
+        String correlationId = correlationIdPrefix + requestCount.incrementAndGet();
+        request.setJMSCorrelationID(correlationId);
+        request.setJMSReplyTo(replyDestination);
+        long now = System.nanoTime();
+        synchronized (outstanding) {
+            if (outstanding.size() >= maxOutstanding) {
+                Iterator<Long> iterator = outstanding.values().iterator();
+                iterator.next();
+                iterator.remove();
+                metrics.requestEvicted();
+            }
+            outstanding.put(correlationId, now);
+        }
+        metrics.requestSent();
+    }
+
+    @Override
+    public void onMessage(Message reply) {
+        long now = System.nanoTime();
+        Long sentTime;
+        String correlationId;
+        try {
+            correlationId = reply.getJMSCorrelationID();
+        } catch (JMSException e) {
+            log.error("Error while reading the correlation id of a JMS reply, dropping the reply.", e);
+            return;
+        }
+        synchronized (outstanding) {
+            sentTime = correlationId == null ? null : outstanding.remove(correlationId);
+        }
+        if (sentTime == null) {
+            metrics.replyUnmatched();
+            if (log.isDebugEnabled()) {
+                log.debug("Dropping the JMS reply with correlation id " + correlationId + ", which does not match "
+                        + "an outstanding request.");
+            }
+            return;
+        }
+        metrics.replyReceived(now - sentTime);
+        JMSListener replySource = JMSReplyRegistry.get(registryKey);
+        if (replySource == null) {
+            log.warn("Dropping the JMS reply with correlation id " + correlationId + ", as there is no "
+                    + "'jms-reply' source connected for '" + registryKey + "'.");
+            return;
+        }
+        replySource.onMessage(reply, null);
+    }
+
+    /**
+     * Evicts the requests which did not get their replies within the timeout.
+     */
+    public void expire() {
+        long now = System.nanoTime();
+        int expired = 0;
+        synchronized (outstanding) {
+            Iterator<Long> iterator = outstanding.values().iterator();
+            while (iterator.hasNext() && now - iterator.next() > timeoutNanos) {
+                iterator.remove();
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            metrics.requestsTimedOut(expired);
+            if (log.isDebugEnabled()) {
+                log.debug(expired + " JMS requests of '" + registryKey + "' timed out awaiting their replies.");
+            }
+        }
+    }
+
+    public int getOutstanding() {
+        synchronized (outstanding) {
+            return outstanding.size();
+        }
+    }
+
+    /**
+     * Stops consuming replies. Requests awaiting their replies are kept, and time out unless consuming restarts.
+     */
+    public synchronized void close() {
+        closeConsumer();
+    }
+
+    private void closeConsumer() {
+        if (replySession == null) {
+            return;
+        }
+        try {
+            // closing the session closes its consumer, and the temporary queue goes with the connection
+            replySession.close();
+        } catch (JMSException e) {
+            log.debug("Error while closing the JMS reply session", e);
+        }
+        replySession = null;
+        replyConsumer = null;
+    }
+}
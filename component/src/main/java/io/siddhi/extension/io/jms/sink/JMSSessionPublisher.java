@@ -0,0 +1,372 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.transport.DynamicOptions;
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
+import io.siddhi.extension.io.jms.util.JMSSessionFactory;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+/**
+ * Publishes messages through a JMS session owned by this publisher.
+ * <p>
+ * When the batch size is larger than one the session is transacted, and the open transaction is committed once
+ * the batch size is reached or the oldest message of the batch is older than the batch timeout. Payloads of the open
+ * transaction are retained until it commits. If a send or the commit fails, the transaction is rolled back, the
+ * session is discarded, and the retained payloads are re-sent in order on a new session before any new payload. This
+ * gives at-least-once delivery: a batch whose commit succeeded at the broker but failed to be acknowledged to the
+ * client is delivered again. A payload which cannot be written into a message fails its send without discarding
+ * the session or its open transaction.
+ * <p>
+ * Producers are created once per destination and kept in a bounded {@link JMSProducerCache} for the lifetime of the
+ * session. The publisher is safe to share between threads, but it is meant to be owned by a single sender thread so
+ * that sessions and producers are used without contention.
+ * <p>
+ * When a {@link JMSAsyncSender} is given, messages are sent with the JMS 2.0 asynchronous send where the provider
+ * supports it, and completions are reported by the async sender instead of by this publisher.
+ * <p>
+ * When a {@link JMSSpool} is given, the payloads of a final batch which cannot be committed on close are appended
+ * to it instead of being retained for the next session.
+ * <p>
+ * When {@link JMSPublishTimings} are given, the time to create and to send every message is recorded. Asynchronous
+ * sends record the time taken to hand the message to the provider.
+ * <p>
+ * When a {@link JMSRequestReply} is given, every message is sent as a request awaiting its reply.
+ */
+public class JMSSessionPublisher implements JMSPublishPipeline.Sender {
+    private static final Logger log = Logger.getLogger(JMSSessionPublisher.class);
+    // batches committed by snapshots are unbounded, so the pending lists grow on demand beyond this
+    private static final int MAX_INITIAL_PENDING_CAPACITY = 1024;
+    private final JMSSessionFactory sessionFactory;
+    private final int batchSize;
+    private final long batchTimeout;
+    private final boolean transacted;
+    private final List<String> pendingDestinations;
+    private final List<Object> pendingPayloads;
+    private final List<DynamicOptions> pendingOptions;
+    private final JMSProducerCache producerCache;
+    private final JMSAsyncSender asyncSender;
+    private final JMSCompressionCodec codec;
+    private final JMSSpool spool;
+    private final JMSPublishTimings timings;
+    private final JMSRequestReply requestReply;
+    private Session session;
+    private long batchStartTime;
+
+    public JMSSessionPublisher(JMSSessionFactory sessionFactory, int batchSize, long batchTimeout,
+                               JMSProducerCache producerCache, JMSAsyncSender asyncSender,
+                               JMSCompressionCodec codec, JMSSpool spool, JMSPublishTimings timings,
+                               JMSRequestReply requestReply) {
+        this.sessionFactory = sessionFactory;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.transacted = batchSize > 1;
+        int pendingCapacity = transacted ? Math.min(batchSize, MAX_INITIAL_PENDING_CAPACITY) : 0;
+        this.pendingDestinations = new ArrayList<>(pendingCapacity);
+        this.pendingPayloads = new ArrayList<>(pendingCapacity);
+        this.pendingOptions = new ArrayList<>(pendingCapacity);
+        this.producerCache = producerCache;
+        this.asyncSender = asyncSender;
+        this.codec = codec;
+        this.spool = spool;
+        this.timings = timings;
+        this.requestReply = requestReply;
+    }
+
+    /**
+     * Sends the payload to the given destination, committing the open transaction if the batch is full.
+     *
+     * @param destination name of the destination.
+     * @param payload     String, Map or ByteBuffer payload.
+     * @param options     dynamic options of the event.
+     * @throws JMSException if the payload, or the retained payloads of a failed batch, cannot be sent.
+     */
+    @Override
+    public synchronized void send(String destination, Object payload, DynamicOptions options)
+            throws JMSException {
+        ensureSession();
+        try {
+            sendMessage(destination, payload, options);
+        } catch (JMSException | RuntimeException e) {
+            if (!JMSMessageUtils.isPayloadFailure(e)) {
+                discardSession();
+            }
+            throw e;
+        }
+        if (!transacted) {
+            return;
+        }
+        if (pendingPayloads.isEmpty()) {
+            batchStartTime = System.currentTimeMillis();
+        }
+        pendingDestinations.add(destination);
+        pendingPayloads.add(payload);
+        pendingOptions.add(options);
+        if (pendingPayloads.size() >= batchSize) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the open transaction if its oldest message has waited for the batch timeout, re-sending the payloads
+     * of a previously failed batch if needed. Failures are logged and retried on the next call.
+     */
+    @Override
+    public synchronized void flushIfExpired() {
+        if (!transacted || pendingPayloads.isEmpty()
+                || System.currentTimeMillis() - batchStartTime < batchTimeout) {
+            return;
+        }
+        try {
+            ensureSession();
+            commit();
+        } catch (JMSException e) {
+            log.error("Error while committing a batch of " + pendingPayloads.size() + " JMS messages, the batch "
+                    + "will be retried.", e);
+        }
+    }
+
+    /**
+     * Commits the open transaction, if any, and closes the session and its producers.
+     *
+     * @return the number of payloads that could neither be committed nor spooled.
+     */
+    @Override
+    public synchronized int close() {
+        int unsent = 0;
+        if (transacted && !pendingPayloads.isEmpty()) {
+            try {
+                ensureSession();
+                commit();
+            } catch (JMSException e) {
+                log.error("Error while committing the final batch of " + pendingPayloads.size()
+                        + " JMS messages.", e);
+                unsent = spoolPending();
+            }
+        }
+        discardSession();
+        return unsent;
+    }
+
+    /**
+     * Commits the open transaction, if any.
+     *
+     * @return whether all payloads sent so far are committed. Otherwise they are retained and re-sent on a new
+     * session before the next commit.
+     */
+    public synchronized boolean commitPending() {
+        if (!transacted || pendingPayloads.isEmpty()) {
+            return true;
+        }
+        try {
+            ensureSession();
+            commit();
+            return true;
+        } catch (JMSException e) {
+            log.error("Error while committing a batch of " + pendingPayloads.size() + " JMS messages, the batch "
+                    + "will be retried.", e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of messages sent since the open transaction began.
+     */
+    public synchronized int getPendingCount() {
+        return pendingPayloads.size();
+    }
+
+    /**
+     * Passes the destination and payload of every uncommitted message, in the order they were sent.
+     */
+    public synchronized void forEachPending(BiConsumer<String, Object> consumer) {
+        for (int i = 0; i < pendingPayloads.size(); i++) {
+            consumer.accept(pendingDestinations.get(i), pendingPayloads.get(i));
+        }
+    }
+
+    /**
+     * Rolls back the open transaction and replaces its payloads with the given ones, which are re-sent on a new
+     * session before the next payload.
+     *
+     * @return the number of payloads which were rolled back.
+     */
+    public synchronized int resetPending(List<String> destinations, List<Object> payloads) {
+        return resetPending(destinations, payloads, null);
+    }
+
+    /**
+     * Rolls back the open transaction and replaces its payloads with the given ones, which are re-sent on a new
+     * session before the next payload.
+     *
+     * @param options dynamic options of the payloads, or null if they have none.
+     * @return the number of payloads which were rolled back.
+     */
+    public synchronized int resetPending(List<String> destinations, List<Object> payloads,
+                                         List<DynamicOptions> options) {
+        int rolledBack = pendingPayloads.size();
+        discardSession();
+        pendingDestinations.clear();
+        pendingPayloads.clear();
+        pendingOptions.clear();
+        pendingDestinations.addAll(destinations);
+        pendingPayloads.addAll(payloads);
+        for (int i = 0; i < payloads.size(); i++) {
+            pendingOptions.add(options == null ? null : options.get(i));
+        }
+        if (!pendingPayloads.isEmpty()) {
+            batchStartTime = System.currentTimeMillis();
+        }
+        return rolledBack;
+    }
+
+    /**
+     * Rolls back the open transaction and moves its payloads to the given lists, in the order they were sent, so
+     * that they can be sent elsewhere.
+     *
+     * @return the number of payloads which were moved.
+     */
+    public synchronized int takePending(List<String> destinations, List<Object> payloads,
+                                        List<DynamicOptions> options) {
+        int taken = pendingPayloads.size();
+        discardSession();
+        destinations.addAll(pendingDestinations);
+        payloads.addAll(pendingPayloads);
+        options.addAll(pendingOptions);
+        pendingDestinations.clear();
+        pendingPayloads.clear();
+        pendingOptions.clear();
+        return taken;
+    }
+
+    private int spoolPending() {
+        if (spool == null) {
+            return pendingPayloads.size();
+        }
+        int unsent = 0;
+        for (int i = 0; i < pendingPayloads.size(); i++) {
+            if (!spool.append(pendingDestinations.get(i), pendingPayloads.get(i), pendingOptions.get(i))) {
+                unsent++;
+            }
+        }
+        pendingDestinations.clear();
+        pendingPayloads.clear();
+        pendingOptions.clear();
+        return unsent;
+    }
+
+    private void ensureSession() throws JMSException {
+        if (session != null) {
+            return;
+        }
+        session = sessionFactory.createSession(transacted, transacted ? Session.SESSION_TRANSACTED
+                : Session.AUTO_ACKNOWLEDGE);
+        if (!pendingPayloads.isEmpty()) {
+            // replay the batch which failed to commit, in order, within the new transaction
+            try {
+                for (int i = 0; i < pendingPayloads.size(); i++) {
+                    sendMessage(pendingDestinations.get(i), pendingPayloads.get(i), pendingOptions.get(i));
+                }
+            } catch (JMSException | RuntimeException e) {
+                discardSession();
+                throw e;
+            }
+        }
+    }
+
+    private void sendMessage(String destination, Object payload, DynamicOptions options) throws JMSException {
+        long start = timings == null ? 0 : System.nanoTime();
+        Message message = JMSMessageUtils.createMessage(session, payload, codec);
+        if (requestReply != null) {
+            requestReply.stamp(message);
+        }
+        MessageProducer producer = producerOf(destination);
+        if (timings != null) {
+            long created = System.nanoTime();
+            timings.created(created - start);
+            start = created;
+            timings.sending();
+        }
+        try {
+            if (asyncSender == null || !asyncSender.send(producer, message, destination, payload, options)) {
+                producer.send(message);
+            }
+        } finally {
+            if (timings != null) {
+                timings.sendEnded();
+            }
+        }
+        if (timings != null) {
+            timings.sent(destination, payload, System.nanoTime() - start);
+        }
+    }
+
+    private MessageProducer producerOf(String destination) throws JMSException {
+        MessageProducer producer = producerCache.get(destination);
+        if (producer == null) {
+            producer = session.createProducer(sessionFactory.createDestination(session, destination));
+            producerCache.put(destination, producer);
+        }
+        return producer;
+    }
+
+    private void commit() throws JMSException {
+        try {
+            session.commit();
+        } catch (JMSException | RuntimeException e) {
+            discardSession();
+            throw e;
+        }
+        pendingDestinations.clear();
+        pendingPayloads.clear();
+        pendingOptions.clear();
+    }
+
+    private void discardSession() {
+        if (session == null) {
+            return;
+        }
+        try {
+            if (transacted) {
+                session.rollback();
+            }
+        } catch (JMSException e) {
+            log.debug("Error while rolling back the JMS session", e);
+        }
+        try {
+            session.close();
+        } catch (JMSException e) {
+            log.debug("Error while closing the JMS session", e);
+        }
+        // closing the session closes its producers, and completes its asynchronous sends
+        session = null;
+        producerCache.clear();
+        if (asyncSender != null) {
+            asyncSender.reset();
+        }
+    }
+}
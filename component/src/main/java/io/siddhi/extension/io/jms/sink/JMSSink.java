@@ -23,29 +23,95 @@ import io.siddhi.annotation.Extension;
 import io.siddhi.annotation.Parameter;
 import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.event.Event;
 import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.stream.ServiceDeploymentInfo;
 import io.siddhi.core.stream.output.sink.Sink;
+import io.siddhi.core.util.SiddhiConstants;
 import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.parser.helper.QueryParserHelper;
 import io.siddhi.core.util.snapshot.state.State;
 import io.siddhi.core.util.snapshot.state.StateFactory;
 import io.siddhi.core.util.transport.DynamicOptions;
 import io.siddhi.core.util.transport.Option;
 import io.siddhi.core.util.transport.OptionHolder;
+import io.siddhi.extension.io.jms.sink.exception.JMSSinkAdaptorRuntimeException;
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
+import io.siddhi.extension.io.jms.util.JMSEnvelopeUtil;
+import io.siddhi.extension.io.jms.util.JMSMetricsUtil;
 import io.siddhi.extension.io.jms.util.JMSOptionsMapper;
+import io.siddhi.extension.io.jms.util.JMSPartitionUtil;
+import io.siddhi.extension.io.jms.util.JMSProviderUrlUtil;
+import io.siddhi.extension.io.jms.util.JMSReplyRegistry;
+import io.siddhi.extension.io.jms.util.JMSSessionFactory;
 import io.siddhi.query.api.definition.StreamDefinition;
 import org.apache.log4j.Logger;
 import org.wso2.transport.jms.contract.JMSClientConnector;
 import org.wso2.transport.jms.exception.JMSConnectorException;
 import org.wso2.transport.jms.impl.JMSConnectorFactoryImpl;
+import org.wso2.transport.jms.utils.JMSConstants;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.jms.JMSException;
+import javax.management.ObjectName;
+import javax.naming.NamingException;
 
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ASYNC_SEND;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ASYNC_SEND_WINDOW;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.BATCH_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.BATCH_TIMEOUT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.BROKER_PROBE_INTERVAL;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.COMPRESSION;
 import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION_CACHE_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION_CACHE_TTL;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DRAIN_TIMEOUT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ENVELOPE_DELIMITER;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ENVELOPE_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ENVELOPE_TIMEOUT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.EXACTLY_ONCE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.EXACTLY_ONCE_MAX_UNCOMMITTED;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.LOAD_BALANCE_STRATEGY;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.METRICS_ENABLED;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PARTITION_COUNT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PARTITION_KEY;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PROVIDER_URL;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PUBLISHER_ORDERED;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PUBLISHER_QUEUE_FULL_POLICY;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PUBLISHER_QUEUE_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PUBLISHER_SESSION_PER_THREAD;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PUBLISHER_MAX_IN_FLIGHT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PUBLISHER_THREAD_COUNT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PUBLISHER_THREAD_TYPE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.RATE_LIMIT_ADAPTIVE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.RATE_LIMIT_BYTES;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.RATE_LIMIT_ERROR_THRESHOLD;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.RATE_LIMIT_LATENCY_THRESHOLD;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.RATE_LIMIT_MESSAGES;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.RATE_LIMIT_SCOPE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.REPLY_DESTINATION;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.REPLY_MAX_OUTSTANDING;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.REPLY_TIMEOUT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.SINK_ID;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.SPOOL_DIRECTORY;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.SPOOL_DRAIN_INTERVAL;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.SPOOL_MAX_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.SPOOL_SEGMENT_SIZE;
 
 /**
  * JMS output transport class.
@@ -54,7 +120,9 @@ import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION;
 @Extension(
         name = "jms",
         namespace = "sink",
-        description = "JMS Sink allows users to subscribe to a JMS broker and publish JMS messages.",
+        description = "JMS Sink allows users to subscribe to a JMS broker and publish JMS messages. Map payloads "
+                + "of the 'keyvalue' mapper, and events of the 'passThrough' mapper, are written into a MapMessage "
+                + "with the typed setter of each stream attribute.",
         parameters = {
                 @Parameter(name = JMSOptionsMapper.DESTINATION,
                         description = "Queue/Topic name which JMS Source should subscribe to",
@@ -73,7 +141,9 @@ import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION;
                 @Parameter(name = JMSOptionsMapper.PROVIDER_URL,
                         description = "Java naming provider URL. Property for specifying configuration "
                                 + "information for the service provider to use. The value of the property should "
-                                + "contain a URL string (e.g. \"ldap://somehost:389\")",
+                                + "contain a URL string (e.g. \"ldap://somehost:389\"). A comma separated list of "
+                                + "URLs spreads the messages over several brokers, as set by "
+                                + "'load.balance.strategy'.",
                         type = DataType.STRING),
                 @Parameter(name = JMSOptionsMapper.CONNECTION_FACTORY_TYPE,
                         description = "Type of the connection connection factory. This can be either queue or "
@@ -95,7 +165,326 @@ import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION;
                         description = "Connection factory nature for the broker(cached/pooled).",
                         type = DataType.STRING,
                         optional = true,
-                        defaultValue = "default")
+                        defaultValue = "default"),
+                @Parameter(name = JMSOptionsMapper.BATCH_SIZE,
+                        description = "Number of events to publish within a single transacted JMS session before "
+                                + "committing it. When this is larger than 1, events are sent through a transacted "
+                                + "session which is committed when either the batch size or the batch timeout is "
+                                + "reached. A batch which fails to commit is rolled back and re-sent once the "
+                                + "connection is re-established, hence events are delivered at least once.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "1"),
+                @Parameter(name = JMSOptionsMapper.BATCH_TIMEOUT,
+                        description = "Maximum time in milliseconds a partially filled batch is kept open before it "
+                                + "is committed. Only applicable when 'batch.size' is larger than 1.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "1000"),
+                @Parameter(name = JMSOptionsMapper.PUBLISHER_QUEUE_SIZE,
+                        description = "Capacity of the bounded queue between Siddhi and the sink's own sender "
+                                + "threads. When this is 0 every event is published on a thread of its own, "
+                                + "as configured by 'publisher.thread.type' and 'publisher.max.in.flight', "
+                                + "except for partitioned destinations, which are published through a queue of "
+                                + "1024 events so that the order of every shard is kept. In both "
+                                + "cases, events which fail to be sent are passed to the sink's 'on.error' action.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = JMSOptionsMapper.PUBLISHER_THREAD_COUNT,
+                        description = "Number of sender threads draining the publish queue. Only applicable when "
+                                + "'publisher.queue.size' is larger than 0.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "1"),
+                @Parameter(name = JMSOptionsMapper.PUBLISHER_THREAD_TYPE,
+                        description = "Type of the threads publishing the events when there is no publish queue. "
+                                + "'platform' runs the publishes on a cached pool of threads, while 'virtual' runs "
+                                + "every publish on a virtual thread of its own, so that publishes blocked on a "
+                                + "slow broker do not hold platform threads. Virtual threads require Java 21, and "
+                                + "platform threads are used instead on older versions.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "platform"),
+                @Parameter(name = JMSOptionsMapper.PUBLISHER_MAX_IN_FLIGHT,
+                        description = "Maximum number of publishes running at once when there is no publish "
+                                + "queue. Publishing Siddhi threads wait while this many publishes are in flight.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "1024"),
+                @Parameter(name = JMSOptionsMapper.PUBLISHER_QUEUE_FULL_POLICY,
+                        description = "Action taken when an event is published while the publish queue is full. "
+                                + "'block' blocks the publishing Siddhi thread until space is available, 'drop' "
+                                + "discards the event, and 'fail' throws a ConnectionUnavailableException so that "
+                                + "the sink's 'on.error' action applies.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "block"),
+                @Parameter(name = JMSOptionsMapper.PUBLISHER_ORDERED,
+                        description = "Keeps the publishing order of events per destination. The publish queue is "
+                                + "split into one lane per sender thread and each resolved destination is always "
+                                + "sent through the same lane, so different destinations are still published in "
+                                + "parallel. Defaults to true for partitioned destinations. Only applicable when "
+                                + "'publisher.queue.size' is larger than 0 or the destination is partitioned.",
+                        type = DataType.BOOL,
+                        optional = true,
+                        defaultValue = "false"),
+                @Parameter(name = JMSOptionsMapper.PUBLISHER_SESSION_PER_THREAD,
+                        description = "Gives every sender thread its own JMS session, and a producer per "
+                                + "destination, for the lifetime of the thread, instead of sharing the transport's "
+                                + "session pool. When batching is enabled, each sender thread commits its own "
+                                + "batches. Requires 'publisher.queue.size' to be larger than 0.",
+                        type = DataType.BOOL,
+                        optional = true,
+                        defaultValue = "false"),
+                @Parameter(name = JMSOptionsMapper.DESTINATION_CACHE_SIZE,
+                        description = "Maximum number of destinations for which a resolved destination and its "
+                                + "producer are cached per session. The least recently used destination is evicted "
+                                + "when the cache is full. Applicable when the sink publishes through its own "
+                                + "sessions, i.e. when batching, 'publisher.session.per.thread' or 'async.send' is "
+                                + "enabled.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "100"),
+                @Parameter(name = JMSOptionsMapper.DESTINATION_CACHE_TTL,
+                        description = "Time in milliseconds after which a cached destination that has not been "
+                                + "published to is evicted. 0 keeps destinations until they are evicted by size.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = JMSOptionsMapper.ASYNC_SEND,
+                        description = "Sends messages with the JMS 2.0 asynchronous send, so that a sender does not "
+                                + "wait for the broker to acknowledge each message. Completions are counted in the "
+                                + "sink metrics, and failed events are passed to the sink's 'on.error' action. When "
+                                + "the JMS provider only supports JMS 1.1, messages are sent synchronously.",
+                        type = DataType.BOOL,
+                        optional = true,
+                        defaultValue = "false"),
+                @Parameter(name = JMSOptionsMapper.ASYNC_SEND_WINDOW,
+                        description = "Maximum number of asynchronously sent messages per session that the broker "
+                                + "has not yet acknowledged. A sender waits when the window is full. Only applicable "
+                                + "when 'async.send' is enabled.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "1000"),
+                @Parameter(name = JMSOptionsMapper.COMPRESSION,
+                        description = "Compression codec of the message body, one of 'none', 'gzip' or 'deflate'. "
+                                + "Text and binary payloads are compressed into a BytesMessage carrying the codec "
+                                + "in the 'SiddhiCompressionCodec' property, which the JMS source decompresses "
+                                + "transparently. Map payloads are not compressed.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(name = JMSOptionsMapper.ENVELOPE_SIZE,
+                        description = "Maximum number of events packed into a single JMS message per destination. "
+                                + "Text events are joined with the 'envelope.delimiter' into a TextMessage, and "
+                                + "binary events are written with a 4 byte length prefix into a BytesMessage. The "
+                                + "number of events is set in the 'SiddhiEnvelopeEventCount' property, and the JMS "
+                                + "source unpacks envelopes transparently. Map events are not packed. Events with "
+                                + "different 'partition.key' values are not packed together. The events of an "
+                                + "envelope which cannot be sent are passed to 'on.error' one at a time. 1 disables "
+                                + "envelopes, and at most 100000 events are packed.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "1"),
+                @Parameter(name = JMSOptionsMapper.ENVELOPE_TIMEOUT,
+                        description = "Time in milliseconds after which a partially filled envelope is sent. Only "
+                                + "applicable when 'envelope.size' is larger than 1.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "1000"),
+                @Parameter(name = JMSOptionsMapper.ENVELOPE_DELIMITER,
+                        description = "Delimiter joining the text events of an envelope. It must not occur in the "
+                                + "events. Defaults to the ASCII record separator character (0x1E).",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "\\u001E"),
+                @Parameter(name = JMSOptionsMapper.EXACTLY_ONCE,
+                        description = "Sends the events in a JMS transaction which is committed whenever Siddhi "
+                                + "takes a snapshot, instead of per 'batch.size' events. When the Siddhi app is "
+                                + "restored from a snapshot after a failure, the transaction open at the failure "
+                                + "has been rolled back by the broker, and the events since the snapshot are "
+                                + "replayed by a replayable source. Events left uncommitted by a failed commit are "
+                                + "kept in the snapshot and re-sent on restore. This is effectively once rather "
+                                + "than exactly once: the transaction is committed when the snapshot is taken, "
+                                + "before it is persisted, so the events of a snapshot which fails to be "
+                                + "persisted are sent again when the previous snapshot is restored. The open "
+                                + "transaction is rolled back when the sink disconnects. Requires a persistence "
+                                + "store, and cannot be combined with 'batch.size', 'batch.timeout', "
+                                + "'publisher.queue.size', 'async.send', 'spool.directory' or multiple provider "
+                                + "URLs.",
+                        type = DataType.BOOL,
+                        optional = true,
+                        defaultValue = "false"),
+                @Parameter(name = JMSOptionsMapper.EXACTLY_ONCE_MAX_UNCOMMITTED,
+                        description = "Maximum number of events sent since the last snapshot when 'exactly.once' "
+                                + "is enabled. Further events are passed to the sink's 'on.error' action until the "
+                                + "next snapshot commits the open transaction.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "100000"),
+                @Parameter(name = JMSOptionsMapper.PARTITION_KEY,
+                        description = "Key, usually an attribute such as '{{customerId}}', which assigns every "
+                                + "event to one of the 'partition.count' shards of the destination. The shard of "
+                                + "a key is computed with a stable consistent hash, so all events of a key are "
+                                + "sent to the same shard. Events whose key is null are sent to shard 0. Only "
+                                + "applicable when 'partition.count' is larger than 1.",
+                        type = DataType.STRING,
+                        optional = true,
+                        dynamic = true,
+                        defaultValue = "none"),
+                @Parameter(name = JMSOptionsMapper.PARTITION_COUNT,
+                        description = "Number of shards of the destination, named '<destination>.0' to "
+                                + "'<destination>.<partition.count - 1>'. Shards are published in parallel by the "
+                                + "sender threads of the publish queue, which keep the order of every shard unless "
+                                + "'publisher.ordered' is set to false. Without a 'publisher.queue.size', events "
+                                + "are published in order on the Siddhi thread when batching, async send or "
+                                + "exactly once is enabled, and through a queue of 1024 events otherwise. 1 "
+                                + "disables partitioning.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "1"),
+                @Parameter(name = JMSOptionsMapper.LOAD_BALANCE_STRATEGY,
+                        description = "Strategy spreading the messages over the brokers when 'provider.url' lists "
+                                + "several comma separated URLs, each of which gets its own connection and "
+                                + "producers. One of 'round-robin', 'least-outstanding', which picks the broker with "
+                                + "the fewest sends in progress, or 'sticky', which sends all messages of a "
+                                + "destination to the same broker. A broker whose send fails is ejected, and the "
+                                + "message is sent to the next available broker.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "round-robin"),
+                @Parameter(name = JMSOptionsMapper.BROKER_PROBE_INTERVAL,
+                        description = "Time in milliseconds between the probes of the ejected brokers, which take "
+                                + "messages again once a probe succeeds. Only applicable when 'provider.url' lists "
+                                + "several URLs.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "5000"),
+                @Parameter(name = JMSOptionsMapper.RATE_LIMIT_MESSAGES,
+                        description = "Maximum number of messages sent per second, with bursts of up to one "
+                                + "second of messages. Senders wait for the rate limit, which in turn fills the "
+                                + "publish queue when one is configured. 0 disables the message rate limit.",
+                        type = DataType.DOUBLE,
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = JMSOptionsMapper.RATE_LIMIT_BYTES,
+                        description = "Maximum number of payload bytes sent per second, with bursts of up to one "
+                                + "second of bytes. Text payloads count their characters and binary payloads their "
+                                + "bytes before compression, while map payloads are not counted. 0 disables the "
+                                + "byte rate limit.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "0"),
+                @Parameter(name = JMSOptionsMapper.RATE_LIMIT_SCOPE,
+                        description = "Whether the rate limits apply to all messages of the sink, 'global', or "
+                                + "to the messages of each destination separately, 'destination'.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "global"),
+                @Parameter(name = JMSOptionsMapper.RATE_LIMIT_ADAPTIVE,
+                        description = "When set to true, the rate limits are halved, down to a twentieth, "
+                                + "whenever the mean send latency or the error rate over a second goes past its "
+                                + "threshold, and raised again by a tenth per second once both recover. The "
+                                + "current share of the configured rate, and the time spent waiting for the rate "
+                                + "limit, are reported in the sink metrics.",
+                        type = DataType.BOOL,
+                        optional = true,
+                        defaultValue = "false"),
+                @Parameter(name = JMSOptionsMapper.RATE_LIMIT_LATENCY_THRESHOLD,
+                        description = "Mean send latency in milliseconds above which the adaptive rate limit is "
+                                + "lowered.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "100"),
+                @Parameter(name = JMSOptionsMapper.RATE_LIMIT_ERROR_THRESHOLD,
+                        description = "Ratio of failed sends above which the adaptive rate limit is lowered.",
+                        type = DataType.DOUBLE,
+                        optional = true,
+                        defaultValue = "0.01"),
+                @Parameter(name = JMSOptionsMapper.SINK_ID,
+                        description = "Id enabling request-reply, which sends every message as a request with a "
+                                + "unique 'JMSCorrelationID' and a 'JMSReplyTo' destination. Replies are passed to "
+                                + "the 'jms-reply' source with the same 'sink.id', and requests awaiting their "
+                                + "replies are tracked in a bounded correlation map. Request counts, timeouts and "
+                                + "reply latencies are reported in the sink metrics. Cannot be combined with "
+                                + "multiple provider URLs.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(name = JMSOptionsMapper.REPLY_DESTINATION,
+                        description = "Queue or topic the replies are sent to, whose replies are selected by the "
+                                + "correlation ids of this sink. When not given, replies are sent to a temporary "
+                                + "queue of the sink's connection.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "temporary queue"),
+                @Parameter(name = JMSOptionsMapper.REPLY_TIMEOUT,
+                        description = "Time in milliseconds a request awaits its reply, after which a late reply "
+                                + "is dropped.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "30000"),
+                @Parameter(name = JMSOptionsMapper.REPLY_MAX_OUTSTANDING,
+                        description = "Maximum number of requests awaiting their replies. When exceeded, the "
+                                + "oldest request stops awaiting its reply.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "10000"),
+                @Parameter(name = JMSOptionsMapper.METRICS_ENABLED,
+                        description = "When set to true, the time events wait to be sent, the time taken to create "
+                                + "and to send their messages, and the payload bytes sent per destination are "
+                                + "recorded in latency histograms exposed over JMX, and sends are reported to the "
+                                + "Siddhi statistics when the Siddhi app enables them. The histograms accumulate "
+                                + "until they are reset with the 'resetTimings' JMX operation. When set to false, "
+                                + "nothing is recorded on the publish path, and neither the timings nor the sink "
+                                + "and broker counters are registered with JMX.",
+                        type = DataType.BOOL,
+                        optional = true,
+                        defaultValue = "true"),
+                @Parameter(name = JMSOptionsMapper.DRAIN_TIMEOUT,
+                        description = "Maximum time in milliseconds that disconnecting waits for the enveloped, "
+                                + "queued, in-flight and batched events to be sent. Events which are not sent in "
+                                + "time are appended to the spool when 'spool.directory' is given, and are "
+                                + "otherwise reported as unsent. Publishes still in flight on the publisher threads "
+                                + "are interrupted, and their events are spooled or handled by 'on.error'. Publishes "
+                                + "which keep running for a second after being interrupted are reported, as their "
+                                + "events may or may not be sent.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "10000"),
+                @Parameter(name = JMSOptionsMapper.SPOOL_DIRECTORY,
+                        description = "Directory of a local spool keeping the events which could not be sent, in "
+                                + "memory-mapped segment files under '<spool.directory>/<app name>/<stream id>'. A "
+                                + "drainer thread re-sends the spooled events in order once the broker is back, "
+                                + "and new events are spooled behind them meanwhile. The spool survives restarts "
+                                + "of the Siddhi app, along with the dynamic options of the events. Map events and "
+                                + "the attributes of the events may only hold string, int, long, float, double and "
+                                + "bool values to be spooled. When not given, or when an event cannot be spooled, "
+                                + "events which could not be sent are handled by 'on.error'.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "none"),
+                @Parameter(name = JMSOptionsMapper.SPOOL_SEGMENT_SIZE,
+                        description = "Size of a spool segment file in bytes, which also limits the size of a "
+                                + "spooled event. Only applicable when 'spool.directory' is given.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "16777216"),
+                @Parameter(name = JMSOptionsMapper.SPOOL_MAX_SIZE,
+                        description = "Maximum size of the spool in bytes, rounded down to whole segments. Events "
+                                + "which do not fit are handled by 'on.error', with a warning logged at most every "
+                                + "10 seconds. Only applicable when 'spool.directory' is given.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "1073741824"),
+                @Parameter(name = JMSOptionsMapper.SPOOL_DRAIN_INTERVAL,
+                        description = "Time in milliseconds the drainer waits before retrying when the broker is "
+                                + "unavailable or the spool is empty. Only applicable when 'spool.directory' is "
+                                + "given.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "1000")
         },
         examples = {
                 @Example(description = "This example shows how to publish to an ActiveMQ topic.",
@@ -113,48 +502,654 @@ import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION;
                                 + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
                                 + "provider.url='vm://localhost',"
                                 + "destination='DAS_JMS_OUTPUT_TEST')\n" +
+                                "define stream inputStream (name string, age int, country string);"),
+                @Example(description = "This example shows how to publish to an ActiveMQ queue in transacted "
+                        + "batches. The session is committed after every 100 events, or 500 milliseconds after the "
+                        + "first event of a partially filled batch.",
+                        syntax = "@sink(type='jms', @map(type='json'), "
+                                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                                + "provider.url='tcp://localhost:61616',"
+                                + "destination='DAS_JMS_OUTPUT_TEST', "
+                                + "batch.size='100', "
+                                + "batch.timeout='500')\n" +
+                                "define stream inputStream (name string, age int, country string);"),
+                @Example(description = "This example shows how to publish through a bounded queue of 10000 events "
+                        + "drained by 4 sender threads. When the broker cannot keep up and the queue fills, the "
+                        + "Siddhi thread is blocked until the queue has space again.",
+                        syntax = "@sink(type='jms', @map(type='json'), "
+                                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                                + "provider.url='tcp://localhost:61616',"
+                                + "destination='DAS_JMS_OUTPUT_TEST', "
+                                + "publisher.queue.size='10000', "
+                                + "publisher.thread.count='4', "
+                                + "publisher.queue.full.policy='block')\n" +
+                                "define stream inputStream (name string, age int, country string);"),
+                @Example(description = "This example shows how to publish each event to the queue of its "
+                        + "country, keeping the order of events per queue while up to 4 queues are published to "
+                        + "in parallel.",
+                        syntax = "@sink(type='jms', @map(type='json'), "
+                                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                                + "provider.url='tcp://localhost:61616',"
+                                + "destination='{{country}}.events', "
+                                + "publisher.queue.size='10000', "
+                                + "publisher.thread.count='4', "
+                                + "publisher.ordered='true')\n" +
+                                "define stream inputStream (name string, age int, country string);"),
+                @Example(description = "This example shows how to publish with 8 sender threads, each owning its "
+                        + "JMS session and producers.",
+                        syntax = "@sink(type='jms', @map(type='json'), "
+                                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                                + "provider.url='tcp://localhost:61616',"
+                                + "destination='DAS_JMS_OUTPUT_TEST', "
+                                + "publisher.queue.size='10000', "
+                                + "publisher.thread.count='8', "
+                                + "publisher.session.per.thread='true')\n" +
                                 "define stream inputStream (name string, age int, country string);")
         }
 )
 public class JMSSink extends Sink {
     private static final Logger log = Logger.getLogger(JMSSink.class);
+    private static final long REPLY_EXPIRY_INTERVAL_MS = 1000;
+    private static final int PUBLISHER_POOL_SIZE = 256;
+    private static final int PARTITIONED_QUEUE_SIZE = 1024;
+    private static final String PENDING_STATE_KEY = "pending";
     private OptionHolder optionHolder;
     private JMSClientConnector clientConnector;
     private Option destination;
+    private Option partitionKey;
+    private int partitionCount;
+    private String[] shardNames;
     private Map<String, String> jmsStaticProperties;
-    private ExecutorService executorService;
+    private JMSPublisherExecutor publisherExecutor;
+    private JMSPublisherExecutor.ThreadType publisherThreadType;
+    private int publisherMaxInFlight;
+    private final BlockingQueue<JMSPublisher> idlePublishers = new ArrayBlockingQueue<>(PUBLISHER_POOL_SIZE);
+    private final JMSPublishPipeline.ErrorHandler errorHandler = this::onPublishError;
+    private ScheduledExecutorService scheduledExecutorService;
+    private JMSSessionFactory sessionFactory;
+    private JMSSessionPublisher sessionPublisher;
+    private JMSBrokerBalancer brokerBalancer;
+    private long brokerProbeInterval;
+    private ScheduledFuture<?> brokerProbeTask;
+    private ScheduledFuture<?> batchFlushTask;
+    private long batchTimeout;
+    private JMSPublishPipeline publishPipeline;
+    private JMSSinkMetrics metrics;
+    private JMSCompressionCodec codec;
+    private JMSEnvelopePacker envelopePacker;
+    private ScheduledFuture<?> envelopeFlushTask;
+    private long envelopeTimeout;
+    private JMSSpool spool;
+    private long spoolDrainInterval;
+    private Supplier<JMSPublishPipeline.Sender> spoolSenderFactory;
+    private String name;
+    private long drainTimeout;
+    private JMSRateLimiter rateLimiter;
+    private JMSMapMessageWriter mapWriter;
+    private boolean exactlyOnce;
+    private int exactlyOnceMaxUncommitted;
+    private ObjectName metricsName;
+    private JMSPublishTimings timings;
+    private JMSRequestReply requestReply;
+    private ScheduledFuture<?> replyExpiryTask;
+    private long replyTimeout;
+    private ObjectName timingsName;
 
     @Override
     protected StateFactory init(StreamDefinition outputStreamDefinition, OptionHolder optionHolder,
                                 ConfigReader sinkConfigReader, SiddhiAppContext executionPlanContext) {
         this.optionHolder = optionHolder;
         this.destination = optionHolder.getOrCreateOption(DESTINATION, null);
-        this.jmsStaticProperties = initJMSProperties();
-        this.executorService = executionPlanContext.getExecutorService();
-        return null;
+        this.partitionCount = Integer.parseInt(optionHolder.validateAndGetStaticValue(PARTITION_COUNT, "1"));
+        if (partitionCount < 1) {
+            throw new SiddhiAppCreationException("'" + PARTITION_COUNT + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should be positive, but found " + partitionCount + ".");
+        }
+        if (partitionCount > 1) {
+            if (!optionHolder.isOptionExists(PARTITION_KEY)) {
+                throw new SiddhiAppCreationException("'" + PARTITION_COUNT + "' of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' requires '" + PARTITION_KEY + "'.");
+            }
+            this.partitionKey = optionHolder.validateAndGetOption(PARTITION_KEY);
+            if (destination.isStatic()) {
+                // the shard names of a static destination are resolved once instead of per event
+                this.shardNames = new String[partitionCount];
+                for (int i = 0; i < partitionCount; i++) {
+                    shardNames[i] = JMSPartitionUtil.shardName(destination.getValue(), i);
+                }
+            }
+        }
+        this.jmsStaticProperties = Collections.unmodifiableMap(initJMSProperties());
+        this.scheduledExecutorService = executionPlanContext.getScheduledExecutorService();
+        int batchSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(BATCH_SIZE, "1"));
+        this.batchTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(BATCH_TIMEOUT, "1000"));
+        if (batchSize < 1 || batchTimeout < 1) {
+            throw new SiddhiAppCreationException("'" + BATCH_SIZE + "' and '" + BATCH_TIMEOUT + "' of the JMS sink "
+                    + "on stream '" + outputStreamDefinition.getId() + "' should be positive, but found "
+                    + batchSize + " and " + batchTimeout + ".");
+        }
+        int queueSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(PUBLISHER_QUEUE_SIZE, "0"));
+        String threadType = optionHolder.validateAndGetStaticValue(PUBLISHER_THREAD_TYPE, "platform");
+        try {
+            this.publisherThreadType = JMSPublisherExecutor.ThreadType.fromString(threadType);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppCreationException("'" + PUBLISHER_THREAD_TYPE + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should be one of 'platform' or 'virtual', but found '"
+                    + threadType + "'.", e);
+        }
+        this.publisherMaxInFlight = Integer.parseInt(optionHolder.validateAndGetStaticValue(PUBLISHER_MAX_IN_FLIGHT,
+                "1024"));
+        if (publisherMaxInFlight < 1) {
+            throw new SiddhiAppCreationException("'" + PUBLISHER_MAX_IN_FLIGHT + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should be positive, but found " + publisherMaxInFlight
+                    + ".");
+        }
+        boolean sessionPerThread = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(
+                PUBLISHER_SESSION_PER_THREAD, "false"));
+        if (sessionPerThread && queueSize < 1) {
+            throw new SiddhiAppCreationException("'" + PUBLISHER_SESSION_PER_THREAD + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' requires '" + PUBLISHER_QUEUE_SIZE + "' to be positive.");
+        }
+        int cacheSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(DESTINATION_CACHE_SIZE, "100"));
+        long cacheTimeToLive = Long.parseLong(optionHolder.validateAndGetStaticValue(DESTINATION_CACHE_TTL, "0"));
+        if (cacheSize < 1 || cacheTimeToLive < 0) {
+            throw new SiddhiAppCreationException("'" + DESTINATION_CACHE_SIZE + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should be positive and '" + DESTINATION_CACHE_TTL
+                    + "' should not be negative, but found " + cacheSize + " and " + cacheTimeToLive + ".");
+        }
+        boolean asyncSendEnabled = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(ASYNC_SEND,
+                "false"));
+        int asyncSendWindow = Integer.parseInt(optionHolder.validateAndGetStaticValue(ASYNC_SEND_WINDOW, "1000"));
+        if (asyncSendWindow < 1) {
+            throw new SiddhiAppCreationException("'" + ASYNC_SEND_WINDOW + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should be positive, but found " + asyncSendWindow + ".");
+        }
+        if (asyncSendEnabled && !JMSAsyncSender.isAvailable()) {
+            log.warn("The JMS API available to the JMS sink on stream '" + outputStreamDefinition.getId() + "' "
+                    + "does not support asynchronous sends, '" + ASYNC_SEND + "' is ignored.");
+        }
+        boolean asyncSend = asyncSendEnabled && JMSAsyncSender.isAvailable();
+        String compression = optionHolder.validateAndGetStaticValue(COMPRESSION, "none");
+        try {
+            this.codec = JMSCompressionCodec.fromString(compression);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppCreationException("'" + COMPRESSION + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should be one of 'none', 'gzip' or 'deflate', but found '"
+                    + compression + "'.", e);
+        }
+        int envelopeSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(ENVELOPE_SIZE, "1"));
+        this.envelopeTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(ENVELOPE_TIMEOUT, "1000"));
+        String envelopeDelimiter = optionHolder.validateAndGetStaticValue(ENVELOPE_DELIMITER,
+                JMSEnvelopeUtil.DEFAULT_DELIMITER);
+        if (envelopeSize < 1 || envelopeSize > JMSEnvelopeUtil.MAX_EVENT_COUNT || envelopeTimeout < 1
+                || envelopeDelimiter.isEmpty()) {
+            throw new SiddhiAppCreationException("'" + ENVELOPE_SIZE + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should be between 1 and " + JMSEnvelopeUtil.MAX_EVENT_COUNT
+                    + ", '" + ENVELOPE_TIMEOUT + "' should be positive and '" + ENVELOPE_DELIMITER
+                    + "' should not be empty, but found " + envelopeSize + ", " + envelopeTimeout + " and '"
+                    + envelopeDelimiter + "'.");
+        }
+        if (envelopeSize > 1) {
+            // the destination already separates the envelopes, so only the partition key has to match
+            this.envelopePacker = new JMSEnvelopePacker(envelopeSize, envelopeTimeout, envelopeDelimiter,
+                    partitionKey == null ? null : partitionKey::getValue, this::dispatch, errorHandler);
+        }
+        this.name = "JMSSink-" + executionPlanContext.getName() + "-" + outputStreamDefinition.getId();
+        this.mapWriter = JMSMapMessageWriter.compile(outputStreamDefinition);
+        boolean metricsEnabled = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(METRICS_ENABLED,
+                "true"));
+        if (metricsEnabled) {
+            this.metrics = new JMSSinkMetrics();
+            this.metricsName = JMSMetricsUtil.register("Sink", executionPlanContext.getName(),
+                    outputStreamDefinition.getId(), Integer.toHexString(System.identityHashCode(this)), metrics);
+            String streamId = outputStreamDefinition.getId();
+            this.timings = new JMSPublishTimings(
+                    QueryParserHelper.createLatencyTracker(executionPlanContext, streamId,
+                            SiddhiConstants.METRIC_INFIX_SINKS, "jms.send"),
+                    QueryParserHelper.createThroughputTracker(executionPlanContext, streamId,
+                            SiddhiConstants.METRIC_INFIX_SINKS, "jms.sent"));
+            this.timingsName = JMSMetricsUtil.register("SinkTimings", executionPlanContext.getName(), streamId,
+                    Integer.toHexString(System.identityHashCode(this)), timings);
+        } else {
+            this.metrics = JMSSinkMetrics.DISABLED;
+        }
+        this.drainTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(DRAIN_TIMEOUT, "10000"));
+        if (drainTimeout < 0) {
+            throw new SiddhiAppCreationException("'" + DRAIN_TIMEOUT + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' should not be negative, but found " + drainTimeout + ".");
+        }
+        double messageRate = Double.parseDouble(optionHolder.validateAndGetStaticValue(RATE_LIMIT_MESSAGES, "0"));
+        long byteRate = Long.parseLong(optionHolder.validateAndGetStaticValue(RATE_LIMIT_BYTES, "0"));
+        if (messageRate < 0 || byteRate < 0) {
+            throw new SiddhiAppCreationException("'" + RATE_LIMIT_MESSAGES + "' and '" + RATE_LIMIT_BYTES + "' of "
+                    + "the JMS sink on stream '" + outputStreamDefinition.getId() + "' should not be negative, but "
+                    + "found " + messageRate + " and " + byteRate + ".");
+        }
+        if (messageRate > 0 || byteRate > 0) {
+            String scope = optionHolder.validateAndGetStaticValue(RATE_LIMIT_SCOPE, "global");
+            if (!"global".equalsIgnoreCase(scope) && !"destination".equalsIgnoreCase(scope)) {
+                throw new SiddhiAppCreationException("'" + RATE_LIMIT_SCOPE + "' of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' should be one of 'global' or 'destination', but "
+                        + "found '" + scope + "'.");
+            }
+            boolean adaptive = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(RATE_LIMIT_ADAPTIVE,
+                    "false"));
+            long latencyThreshold = Long.parseLong(optionHolder.validateAndGetStaticValue(
+                    RATE_LIMIT_LATENCY_THRESHOLD, "100"));
+            double errorThreshold = Double.parseDouble(optionHolder.validateAndGetStaticValue(
+                    RATE_LIMIT_ERROR_THRESHOLD, "0.01"));
+            if (latencyThreshold < 1 || errorThreshold < 0 || errorThreshold > 1) {
+                throw new SiddhiAppCreationException("'" + RATE_LIMIT_LATENCY_THRESHOLD + "' of the JMS sink on "
+                        + "stream '" + outputStreamDefinition.getId() + "' should be positive and '"
+                        + RATE_LIMIT_ERROR_THRESHOLD + "' should be between 0 and 1, but found " + latencyThreshold
+                        + " and " + errorThreshold + ".");
+            }
+            this.rateLimiter = new JMSRateLimiter(messageRate, byteRate, "destination".equalsIgnoreCase(scope),
+                    adaptive, latencyThreshold, errorThreshold, metrics);
+        }
+        String spoolDirectory = optionHolder.validateAndGetStaticValue(SPOOL_DIRECTORY, "");
+        if (!spoolDirectory.isEmpty()) {
+            int segmentSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(SPOOL_SEGMENT_SIZE,
+                    "16777216"));
+            long maxSize = Long.parseLong(optionHolder.validateAndGetStaticValue(SPOOL_MAX_SIZE, "1073741824"));
+            this.spoolDrainInterval = Long.parseLong(optionHolder.validateAndGetStaticValue(SPOOL_DRAIN_INTERVAL,
+                    "1000"));
+            if (segmentSize < 1 || maxSize < segmentSize || spoolDrainInterval < 1) {
+                throw new SiddhiAppCreationException("'" + SPOOL_SEGMENT_SIZE + "' and '" + SPOOL_DRAIN_INTERVAL
+                        + "' of the JMS sink on stream '" + outputStreamDefinition.getId() + "' should be positive "
+                        + "and '" + SPOOL_MAX_SIZE + "' should not be less than '" + SPOOL_SEGMENT_SIZE + "', but "
+                        + "found " + segmentSize + ", " + spoolDrainInterval + " and " + maxSize + ".");
+            }
+            File directory = new File(new File(spoolDirectory, executionPlanContext.getName()),
+                    outputStreamDefinition.getId());
+            try {
+                this.spool = new JMSSpool(directory, segmentSize, maxSize, metrics);
+            } catch (IOException e) {
+                throw new SiddhiAppCreationException("Unable to open the spool of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' in " + directory + ".", e);
+            }
+        }
+        List<String> providerUrls = JMSProviderUrlUtil.split(optionHolder.validateAndGetStaticValue(PROVIDER_URL));
+        this.exactlyOnce = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(EXACTLY_ONCE, "false"));
+        if (exactlyOnce && (queueSize > 0 || asyncSend || spool != null || providerUrls.size() > 1)) {
+            throw new SiddhiAppCreationException("'" + EXACTLY_ONCE + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' sends every event in order on a single transacted "
+                    + "session, and cannot be combined with '" + PUBLISHER_QUEUE_SIZE + "', '" + ASYNC_SEND + "', '"
+                    + SPOOL_DIRECTORY + "' or multiple provider URLs.");
+        }
+        if (exactlyOnce) {
+            if (optionHolder.isOptionExists(BATCH_SIZE) || optionHolder.isOptionExists(BATCH_TIMEOUT)) {
+                throw new SiddhiAppCreationException("'" + EXACTLY_ONCE + "' of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' commits its transactions when Siddhi takes a "
+                        + "snapshot, and cannot be combined with '" + BATCH_SIZE + "' or '" + BATCH_TIMEOUT + "'.");
+            }
+            if (executionPlanContext.getSiddhiContext().getPersistenceStore() == null
+                    && executionPlanContext.getSiddhiContext().getIncrementalPersistenceStore() == null) {
+                throw new SiddhiAppCreationException("'" + EXACTLY_ONCE + "' of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' requires a persistence store to be configured, as "
+                        + "its transactions are only committed when Siddhi takes a snapshot.");
+            }
+            this.exactlyOnceMaxUncommitted = Integer.parseInt(optionHolder.validateAndGetStaticValue(
+                    EXACTLY_ONCE_MAX_UNCOMMITTED, "100000"));
+            if (exactlyOnceMaxUncommitted < 1) {
+                throw new SiddhiAppCreationException("'" + EXACTLY_ONCE_MAX_UNCOMMITTED + "' of the JMS sink on "
+                        + "stream '" + outputStreamDefinition.getId() + "' should be positive, but found "
+                        + exactlyOnceMaxUncommitted + ".");
+            }
+        }
+        String sinkId = optionHolder.validateAndGetStaticValue(SINK_ID, "");
+        if (!sinkId.isEmpty() && providerUrls.size() > 1) {
+            throw new SiddhiAppCreationException("'" + SINK_ID + "' of the JMS sink on stream '"
+                    + outputStreamDefinition.getId() + "' consumes the replies on the connection of a single "
+                    + "broker, and cannot be combined with multiple provider URLs.");
+        }
+        // in exactly once mode, transactions are only committed by snapshots
+        int transactionSize = exactlyOnce ? Integer.MAX_VALUE : batchSize;
+        long transactionTimeout = exactlyOnce ? Long.MAX_VALUE : batchTimeout;
+        Function<JMSSessionFactory, JMSSessionPublisher> brokerPublisherFactory = brokerSessionFactory ->
+                new JMSSessionPublisher(brokerSessionFactory, transactionSize, transactionTimeout,
+                        new JMSProducerCache(cacheSize, cacheTimeToLive, metrics),
+                        asyncSend ? new JMSAsyncSender(asyncSendWindow, metrics, errorHandler) : null, codec, spool,
+                        timings, requestReply);
+        if (providerUrls.size() > 1) {
+            String strategy = optionHolder.validateAndGetStaticValue(LOAD_BALANCE_STRATEGY, "round-robin");
+            JMSBrokerBalancer.Strategy loadBalanceStrategy;
+            try {
+                loadBalanceStrategy = JMSBrokerBalancer.Strategy.fromString(strategy);
+            } catch (IllegalArgumentException e) {
+                throw new SiddhiAppCreationException("'" + LOAD_BALANCE_STRATEGY + "' of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' should be one of 'round-robin', 'least-outstanding' "
+                        + "or 'sticky', but found '" + strategy + "'.", e);
+            }
+            this.brokerProbeInterval = Long.parseLong(optionHolder.validateAndGetStaticValue(BROKER_PROBE_INTERVAL,
+                    "5000"));
+            if (brokerProbeInterval < 1) {
+                throw new SiddhiAppCreationException("'" + BROKER_PROBE_INTERVAL + "' of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' should be positive, but found " + brokerProbeInterval
+                        + ".");
+            }
+            List<JMSSessionFactory> brokerSessionFactories = new ArrayList<>(providerUrls.size());
+            for (String providerUrl : providerUrls) {
+                Map<String, String> brokerProperties = new HashMap<>(jmsStaticProperties);
+                brokerProperties.put(JMSConstants.PARAM_PROVIDER_URL, providerUrl);
+                brokerSessionFactories.add(new JMSSessionFactory(brokerProperties));
+            }
+            String metricsId = Integer.toHexString(System.identityHashCode(this));
+            this.brokerBalancer = new JMSBrokerBalancer(brokerSessionFactories, loadBalanceStrategy,
+                    brokerPublisherFactory, brokerMetrics -> metricsEnabled ? JMSMetricsUtil.register("SinkBroker",
+                    executionPlanContext.getName(), outputStreamDefinition.getId(),
+                    metricsId + "-" + brokerMetrics.getProviderUrl(), brokerMetrics) : null);
+        } else if (batchSize > 1 || sessionPerThread || asyncSend || exactlyOnce || !sinkId.isEmpty()) {
+            this.sessionFactory = new JMSSessionFactory(jmsStaticProperties);
+        }
+        if (!sinkId.isEmpty()) {
+            String replyDestination = optionHolder.validateAndGetStaticValue(REPLY_DESTINATION, "");
+            this.replyTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(REPLY_TIMEOUT, "30000"));
+            int maxOutstanding = Integer.parseInt(optionHolder.validateAndGetStaticValue(REPLY_MAX_OUTSTANDING,
+                    "10000"));
+            if (replyTimeout < 1 || maxOutstanding < 1) {
+                throw new SiddhiAppCreationException("'" + REPLY_TIMEOUT + "' and '" + REPLY_MAX_OUTSTANDING
+                        + "' of the JMS sink on stream '" + outputStreamDefinition.getId() + "' should be "
+                        + "positive, but found " + replyTimeout + " and " + maxOutstanding + ".");
+            }
+            this.requestReply = new JMSRequestReply(sessionFactory, replyDestination.isEmpty() ? null
+                    : replyDestination, replyTimeout, maxOutstanding,
+                    JMSReplyRegistry.keyOf(executionPlanContext.getName(), sinkId), metrics);
+        }
+        Supplier<JMSSessionPublisher> sessionPublisherFactory = () -> brokerPublisherFactory.apply(sessionFactory);
+        if (sessionFactory != null && !sessionPerThread) {
+            this.sessionPublisher = sessionPublisherFactory.get();
+        }
+        if (spool != null) {
+            // the drainer sends one event at a time, so that an event leaves the spool only once the broker has it
+            if (brokerBalancer != null) {
+                this.spoolSenderFactory = () -> brokerBalancer::send;
+            } else if (sessionFactory != null) {
+                this.spoolSenderFactory = () -> new JMSSessionPublisher(sessionFactory, 1, batchTimeout,
+                        new JMSProducerCache(cacheSize, cacheTimeToLive, metrics), null, codec, null, timings,
+                        requestReply);
+            } else {
+                this.spoolSenderFactory = () -> (topicQueueName, payload, transportOptions) ->
+                        JMSPublisher.publish(clientConnector, codec, topicQueueName, payload, timings);
+            }
+            if (rateLimiter != null) {
+                Supplier<JMSPublishPipeline.Sender> spoolSenders = spoolSenderFactory;
+                this.spoolSenderFactory = () -> rateLimiter.throttle(spoolSenders.get());
+            }
+        }
+        if (queueSize < 1 && partitionKey != null && sessionFactory == null && brokerBalancer == null) {
+            // publishes on threads of their own would reorder the events of a shard
+            queueSize = PARTITIONED_QUEUE_SIZE;
+        }
+        if (queueSize > 0) {
+            int threadCount = Integer.parseInt(optionHolder.validateAndGetStaticValue(PUBLISHER_THREAD_COUNT, "1"));
+            if (threadCount < 1) {
+                throw new SiddhiAppCreationException("'" + PUBLISHER_THREAD_COUNT + "' of the JMS sink on stream '"
+                        + outputStreamDefinition.getId() + "' should be positive, but found " + threadCount + ".");
+            }
+            String policy = optionHolder.validateAndGetStaticValue(PUBLISHER_QUEUE_FULL_POLICY, "block");
+            JMSPublishPipeline.QueueFullPolicy queueFullPolicy;
+            try {
+                queueFullPolicy = JMSPublishPipeline.QueueFullPolicy.fromString(policy);
+            } catch (IllegalArgumentException e) {
+                throw new SiddhiAppCreationException("'" + PUBLISHER_QUEUE_FULL_POLICY + "' of the JMS sink on "
+                        + "stream '" + outputStreamDefinition.getId() + "' should be one of 'block', 'drop' or "
+                        + "'fail', but found '" + policy + "'.", e);
+            }
+            // shards keep their order by default, which is the point of partitioning
+            boolean ordered = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(PUBLISHER_ORDERED,
+                    Boolean.toString(partitionKey != null)));
+            Supplier<JMSPublishPipeline.Sender> senderFactory;
+            if (sessionPerThread && brokerBalancer == null) {
+                senderFactory = sessionPublisherFactory::get;
+            } else {
+                senderFactory = () -> this::send;
+            }
+            if (rateLimiter != null) {
+                // rate limited on the sender threads, so that waiting fills the queue instead of blocking Siddhi
+                Supplier<JMSPublishPipeline.Sender> senders = senderFactory;
+                senderFactory = () -> rateLimiter.throttle(senders.get());
+            }
+            this.publishPipeline = new JMSPublishPipeline(name, queueSize, threadCount, ordered, queueFullPolicy,
+                    senderFactory, metrics, spool, timings, errorHandler);
+        }
+        return exactlyOnce ? JMSSinkState::new : null;
     }
 
     @Override
     public void connect() throws ConnectionUnavailableException {
-        try {
-            this.clientConnector = new JMSConnectorFactoryImpl().createClientConnector(jmsStaticProperties);
-        } catch (JMSConnectorException e) {
-            log.error("Error while connecting to JMS provider at destination: " + destination);
-            throw new ConnectionUnavailableException("Error while connecting to JMS provider at destination: "
-                    + destination, e);
+        if (brokerBalancer != null) {
+            try {
+                brokerBalancer.connect();
+            } catch (JMSException | NamingException e) {
+                log.error("Error while connecting to any of the JMS providers at destination: " + destination);
+                throw new ConnectionUnavailableException("Error while connecting to any of the JMS providers at "
+                        + "destination: " + destination, e);
+            }
+            if (batchFlushTask == null) {
+                batchFlushTask = scheduledExecutorService.scheduleWithFixedDelay(brokerBalancer::flushIfExpired,
+                        batchTimeout, batchTimeout, TimeUnit.MILLISECONDS);
+            }
+            if (brokerProbeTask == null) {
+                brokerProbeTask = scheduledExecutorService.scheduleWithFixedDelay(brokerBalancer::probe,
+                        brokerProbeInterval, brokerProbeInterval, TimeUnit.MILLISECONDS);
+            }
+        } else if (sessionFactory != null) {
+            try {
+                sessionFactory.connect();
+                if (requestReply != null) {
+                    requestReply.start();
+                }
+            } catch (JMSException | NamingException e) {
+                log.error("Error while connecting to JMS provider at destination: " + destination);
+                throw new ConnectionUnavailableException("Error while connecting to JMS provider at destination: "
+                        + destination, e);
+            }
+            if (sessionPublisher != null && batchFlushTask == null && !exactlyOnce) {
+                batchFlushTask = scheduledExecutorService.scheduleWithFixedDelay(sessionPublisher::flushIfExpired,
+                        batchTimeout, batchTimeout, TimeUnit.MILLISECONDS);
+            }
+            if (requestReply != null && replyExpiryTask == null) {
+                long expiryInterval = Math.max(1, Math.min(REPLY_EXPIRY_INTERVAL_MS, replyTimeout / 2));
+                replyExpiryTask = scheduledExecutorService.scheduleWithFixedDelay(requestReply::expire,
+                        expiryInterval, expiryInterval, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            try {
+                this.clientConnector = new JMSConnectorFactoryImpl().createClientConnector(jmsStaticProperties);
+            } catch (JMSConnectorException e) {
+                log.error("Error while connecting to JMS provider at destination: " + destination);
+                throw new ConnectionUnavailableException("Error while connecting to JMS provider at destination: "
+                        + destination, e);
+            }
+            if (publishPipeline == null && publisherExecutor == null) {
+                publisherExecutor = new JMSPublisherExecutor(name, publisherThreadType, publisherMaxInFlight);
+            }
+        }
+        if (publishPipeline != null) {
+            publishPipeline.start();
+        }
+        if (envelopePacker != null && envelopeFlushTask == null) {
+            long flushInterval = Math.max(1, envelopeTimeout / 2);
+            envelopeFlushTask = scheduledExecutorService.scheduleWithFixedDelay(envelopePacker::flushExpired,
+                    flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+        if (spool != null) {
+            spool.startDrainer(name + "-spool-drainer", spoolSenderFactory.get(), spoolDrainInterval);
         }
     }
 
     @Override
-    public void publish(Object payload, DynamicOptions transportOptions, State state) {
-        String topicQueueName = destination.getValue(transportOptions);
-        executorService.execute(new JMSPublisher(topicQueueName, jmsStaticProperties,
-                clientConnector, payload));
+    public void publish(Object payload, DynamicOptions transportOptions, State state)
+            throws ConnectionUnavailableException {
+        String topicQueueName = destinationOf(transportOptions);
+        if (payload instanceof Event[]) {
+            for (Event event : (Event[]) payload) {
+                dispatch(topicQueueName, new JMSMapPayload(mapWriter, event.getData()), transportOptions);
+            }
+        } else if (payload instanceof Event) {
+            dispatch(topicQueueName, new JMSMapPayload(mapWriter, ((Event) payload).getData()), transportOptions);
+        } else if (payload instanceof Map) {
+            dispatch(topicQueueName, new JMSMapPayload(mapWriter, (Map<?, ?>) payload), transportOptions);
+        } else if (envelopePacker != null) {
+            envelopePacker.add(topicQueueName, payload, transportOptions);
+        } else {
+            dispatch(topicQueueName, payload, transportOptions);
+        }
+    }
+
+    /**
+     * Resolves the destination of the event, which is the shard of its partition key when partitioning is enabled.
+     */
+    private String destinationOf(DynamicOptions transportOptions) {
+        if (partitionKey == null) {
+            return destination.getValue(transportOptions);
+        }
+        int partition = JMSPartitionUtil.partitionOf(partitionKey.getValue(transportOptions), partitionCount);
+        if (shardNames != null) {
+            return shardNames[partition];
+        }
+        return JMSPartitionUtil.shardName(destination.getValue(transportOptions), partition);
+    }
+
+    /**
+     * Hands the payload, which may be an envelope of events, to the configured publish path. While the spool holds
+     * events, new events are appended behind them so that they are sent in order once the broker is back.
+     */
+    private void dispatch(String topicQueueName, Object payload, DynamicOptions transportOptions)
+            throws ConnectionUnavailableException {
+        if (spool != null && !spool.isEmpty()) {
+            // sending the event right away would overtake the spooled events
+            if (!spool.append(topicQueueName, payload, transportOptions)) {
+                errorHandler.onError(payload, transportOptions, new JMSSinkAdaptorRuntimeException("The event to "
+                        + "destination: " + topicQueueName + " could not be appended to the spool of " + name
+                        + " behind the events waiting to be re-sent."));
+            }
+            return;
+        }
+        if (publishPipeline != null) {
+            publishPipeline.submit(topicQueueName, payload, transportOptions);
+        } else if (sessionPublisher != null || brokerBalancer != null) {
+            if (exactlyOnce && sessionPublisher.getPendingCount() >= exactlyOnceMaxUncommitted) {
+                // the open transaction is held in memory until the next snapshot commits it
+                errorHandler.onError(payload, transportOptions, new JMSSinkAdaptorRuntimeException("The event to "
+                        + "destination: " + topicQueueName + " is not sent, as " + exactlyOnceMaxUncommitted
+                        + " events of " + name + " are waiting for the next snapshot to be committed."));
+                return;
+            }
+            acquirePermit(topicQueueName, payload);
+            long start = rateLimiter == null ? 0 : System.nanoTime();
+            try {
+                sendOnSession(topicQueueName, payload, transportOptions);
+                if (rateLimiter != null) {
+                    rateLimiter.record(System.nanoTime() - start, false);
+                }
+            } catch (JMSException | JMSSinkAdaptorRuntimeException e) {
+                if (JMSMessageUtils.isPayloadFailure(e)) {
+                    // re-sending or reconnecting does not help a payload which cannot be written into a message
+                    errorHandler.onError(payload, transportOptions, e);
+                    return;
+                }
+                if (rateLimiter != null) {
+                    rateLimiter.record(System.nanoTime() - start, true);
+                }
+                if (spool != null && spool.append(topicQueueName, payload, transportOptions)) {
+                    log.debug("Spooled the JMS message to destination: " + topicQueueName + " which could not be "
+                            + "sent.", e);
+                    return;
+                }
+                throw new ConnectionUnavailableException("Error sending JMS message to destination: "
+                        + topicQueueName, e);
+            }
+        } else if (rateLimiter == null) {
+            execute(topicQueueName, JMSPublisher.acquire(idlePublishers)
+                    .prepare(clientConnector, codec, topicQueueName, payload, transportOptions, spool, timings,
+                            errorHandler));
+        } else {
+            acquirePermit(topicQueueName, payload);
+            // failures are passed to 'on.error' here, so that the rate limiter sees them
+            Runnable publisher = JMSPublisher.acquire(idlePublishers)
+                    .prepare(clientConnector, codec, topicQueueName, payload, transportOptions, spool, timings, null);
+            execute(topicQueueName, () -> {
+                long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    publisher.run();
+                    failed = false;
+                } catch (JMSSinkAdaptorRuntimeException e) {
+                    onPublishError(payload, transportOptions, e);
+                } finally {
+                    rateLimiter.record(System.nanoTime() - start, failed);
+                }
+            });
+        }
+    }
+
+    /**
+     * Passes a payload which failed to be published to 'on.error', as the events the sink mapper produced: envelopes
+     * are passed one event at a time, and map payloads as their maps.
+     */
+    private void onPublishError(Object payload, DynamicOptions transportOptions, Exception e) {
+        if (payload instanceof JMSEnvelope) {
+            for (Object event : ((JMSEnvelope) payload).unpack()) {
+                onError(event, transportOptions, e);
+            }
+        } else if (payload instanceof JMSMapPayload) {
+            onError(((JMSMapPayload) payload).toMap(), transportOptions, e);
+        } else {
+            onError(payload, transportOptions, e);
+        }
+    }
+
+    private void execute(String topicQueueName, Runnable publisher) throws ConnectionUnavailableException {
+        try {
+            publisherExecutor.execute(publisher);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionUnavailableException("Interrupted while waiting for a publisher of " + name
+                    + " to send to destination: " + topicQueueName, e);
+        }
+    }
+
+    /**
+     * Waits for the rate limit, if any, to let the payload be sent on the publishing thread.
+     */
+    private void acquirePermit(String topicQueueName, Object payload) throws ConnectionUnavailableException {
+        if (rateLimiter == null) {
+            return;
+        }
+        try {
+            rateLimiter.acquire(topicQueueName, payload);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionUnavailableException("Interrupted while waiting for the rate limit of " + name
+                    + " to send to destination: " + topicQueueName, e);
+        }
+    }
+
+    /**
+     * Sends the payload from a sender thread of the publish pipeline.
+     */
+    private void send(String topicQueueName, Object payload, DynamicOptions transportOptions) throws JMSException {
+        if (sessionPublisher != null || brokerBalancer != null) {
+            sendOnSession(topicQueueName, payload, transportOptions);
+        } else {
+            JMSPublisher.publish(clientConnector, codec, topicQueueName, payload, timings);
+        }
+    }
+
+    private void sendOnSession(String topicQueueName, Object payload, DynamicOptions transportOptions)
+            throws JMSException {
+        if (brokerBalancer != null) {
+            brokerBalancer.send(topicQueueName, payload, transportOptions);
+        } else {
+            sessionPublisher.send(topicQueueName, payload, transportOptions);
+        }
     }
 
     @Override
     public Class[] getSupportedInputEventClasses() {
-        return new Class[]{String.class, Map.class, ByteBuffer.class};
+        return new Class[]{String.class, Map.class, ByteBuffer.class, Event.class, Event[].class};
     }
 
     @Override
@@ -164,19 +1159,155 @@ public class JMSSink extends Sink {
 
     @Override
     public String[] getSupportedDynamicOptions() {
-        return new String[]{DESTINATION};
+        return new String[]{DESTINATION, PARTITION_KEY};
     }
 
+    /**
+     * Sends the events which are enveloped, queued, being sent or batched, waiting up to the drain timeout for them,
+     * and then closes the producers, sessions and connections owned by the sink. Events which could not be sent in
+     * time are appended to the spool when there is one, and are otherwise reported as unsent, except for the
+     * interrupted publishes of the publisher executor, which spool their events or pass them to 'on.error'.
+     */
     @Override
     public void disconnect() {
-        if (executorService != null) {
-            executorService.shutdown();
+        long deadline = System.currentTimeMillis() + drainTimeout;
+        int unsent = 0;
+        if (envelopeFlushTask != null) {
+            envelopeFlushTask.cancel(false);
+            envelopeFlushTask = null;
+        }
+        if (envelopePacker != null) {
+            unsent += envelopePacker.flushAll();
+        }
+        if (publishPipeline != null) {
+            unsent += publishPipeline.stop(remaining(deadline));
+        }
+        if (publisherExecutor != null) {
+            // interrupted publishes spool their events or pass them to 'on.error' themselves
+            int running = publisherExecutor.stop(remaining(deadline));
+            publisherExecutor = null;
+            if (running > 0) {
+                log.warn(running + " publishes of the JMS sink at destination: " + destination + " were still "
+                        + "running after being interrupted at the drain timeout of " + drainTimeout + " ms, and "
+                        + "their events may not have been sent.");
+            }
+        }
+        if (batchFlushTask != null) {
+            batchFlushTask.cancel(false);
+            batchFlushTask = null;
+        }
+        if (brokerProbeTask != null) {
+            brokerProbeTask.cancel(false);
+            brokerProbeTask = null;
+        }
+        if (sessionPublisher != null) {
+            if (exactlyOnce) {
+                // events since the last snapshot are replayed from it, so committing them now would duplicate them
+                int rolledBack = sessionPublisher.resetPending(Collections.emptyList(), Collections.emptyList());
+                if (rolledBack > 0) {
+                    log.info(rolledBack + " events of the JMS sink at destination: " + destination + " sent since "
+                            + "the last snapshot are rolled back.");
+                }
+            }
+            unsent += sessionPublisher.close();
+        }
+        if (brokerBalancer != null) {
+            unsent += brokerBalancer.close();
+        }
+        if (spool != null) {
+            spool.stopDrainer();
+        }
+        if (replyExpiryTask != null) {
+            replyExpiryTask.cancel(false);
+            replyExpiryTask = null;
+        }
+        if (requestReply != null) {
+            requestReply.close();
+        }
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        // the client connector of the JMS transport keeps its connections in a pool which it closes itself
+        clientConnector = null;
+        if (unsent > 0) {
+            log.warn(unsent + " events of the JMS sink at destination: " + destination + " could not be sent "
+                    + "within the drain timeout of " + drainTimeout + " ms before disconnecting.");
+        }
+    }
+
+    /**
+     * Commits the events sent since the previous snapshot. If the commit fails, the uncommitted events are kept in
+     * the snapshot so that they are re-sent when it is restored. Siddhi persists the snapshot only after this
+     * returns, so events committed here are sent again if persisting fails and the previous snapshot is restored.
+     */
+    private Map<String, Object> snapshotTransaction() {
+        if (envelopePacker != null) {
+            int undispatched = envelopePacker.flushAll();
+            if (undispatched > 0) {
+                log.warn(undispatched + " enveloped events of the JMS sink at destination: " + destination
+                        + " could not be sent before the snapshot.");
+            }
         }
+        List<byte[]> pending = new ArrayList<>();
+        if (!sessionPublisher.commitPending()) {
+            sessionPublisher.forEachPending((topicQueueName, payload) -> {
+                try {
+                    pending.add(JMSSpool.encode(topicQueueName, payload));
+                } catch (IOException e) {
+                    throw new JMSSinkAdaptorRuntimeException("Unable to add the uncommitted JMS message to "
+                            + "destination: " + topicQueueName + " to the snapshot.", e);
+                }
+            });
+        }
+        Map<String, Object> state = new HashMap<>();
+        state.put(PENDING_STATE_KEY, pending);
+        return state;
+    }
+
+    /**
+     * Rolls back the events sent since the restored snapshot was taken, and re-sends those it left uncommitted.
+     */
+    @SuppressWarnings("unchecked")
+    private void restoreTransaction(Map<String, Object> state) {
+        List<byte[]> pending = (List<byte[]>) state.get(PENDING_STATE_KEY);
+        List<String> destinations = new ArrayList<>();
+        List<Object> payloads = new ArrayList<>();
+        if (pending != null) {
+            for (byte[] record : pending) {
+                try {
+                    JMSSpool.Record decoded = JMSSpool.decode(record);
+                    destinations.add(decoded.getDestination());
+                    payloads.add(decoded.getPayload());
+                } catch (IOException e) {
+                    throw new JMSSinkAdaptorRuntimeException("Unable to restore an uncommitted JMS message of the "
+                            + "snapshot.", e);
+                }
+            }
+        }
+        int rolledBack = sessionPublisher.resetPending(destinations, payloads);
+        if (rolledBack > 0 || !payloads.isEmpty()) {
+            log.info("Restored the JMS sink at destination: " + destination + ", rolling back " + rolledBack
+                    + " events and re-sending " + payloads.size() + " uncommitted events of the snapshot.");
+        }
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.currentTimeMillis());
     }
 
     @Override
     public void destroy() {
-        // disconnect() gets called before destroy() which does the cleanup destroy() needs
+        // disconnect() gets called before destroy() which does the rest of the cleanup destroy() needs
+        if (spool != null) {
+            spool.close();
+        }
+        if (brokerBalancer != null) {
+            for (ObjectName brokerMetricsName : brokerBalancer.getMetricsNames()) {
+                JMSMetricsUtil.unregister(brokerMetricsName);
+            }
+        }
+        JMSMetricsUtil.unregister(metricsName);
+        JMSMetricsUtil.unregister(timingsName);
     }
 
     /**
@@ -195,10 +1326,34 @@ public class JMSSink extends Sink {
                 transportProperties.put(customPropertyMapping.get(requiredOption),
                         optionHolder.validateAndGetStaticValue(requiredOption)));
         // getting optional values
+        List<String> publisherOptions = JMSOptionsMapper.getSinkPublisherOptions();
         optionHolder.getStaticOptionsKeys().stream()
-                .filter(option -> !requiredOptions.contains(option) && !option.equals("type")).forEach(option ->
-                transportProperties.put(customPropertyMapping.get(option), optionHolder.validateAndGetStaticValue
-                        (option)));
+                .filter(option -> !requiredOptions.contains(option) && !option.equals("type")
+                        && !publisherOptions.contains(option))
+                .forEach(option -> transportProperties.put(
+                        customPropertyMapping.get(option) == null ? option : customPropertyMapping.get(option),
+                        optionHolder.validateAndGetStaticValue(option)));
         return transportProperties;
     }
+
+    /**
+     * State of an exactly once sink, which takes part in Siddhi snapshots by committing its open transaction.
+     */
+    class JMSSinkState extends State {
+
+        @Override
+        public boolean canDestroy() {
+            return false;
+        }
+
+        @Override
+        public Map<String, Object> snapshot() {
+            return snapshotTransaction();
+        }
+
+        @Override
+        public void restore(Map<String, Object> state) {
+            restoreTransaction(state);
+        }
+    }
 }
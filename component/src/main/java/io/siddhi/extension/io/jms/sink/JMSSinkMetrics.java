@@ -0,0 +1,495 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.extension.io.jms.util.JMSLatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters describing the publish path of a {@link JMSSink}.
+ * <p>
+ * Sinks whose metrics are disabled share {@link #DISABLED}, which records nothing and is not registered with JMX.
+ */
+public class JMSSinkMetrics implements JMSSinkMetricsMBean {
+    static final JMSSinkMetrics DISABLED = new Disabled();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder destinationCacheHits = new LongAdder();
+    private final LongAdder destinationCacheMisses = new LongAdder();
+    private final LongAdder destinationCacheEvictions = new LongAdder();
+    private final LongAdder destinationCacheSize = new LongAdder();
+    private final LongAdder asyncSendsStarted = new LongAdder();
+    private final LongAdder asyncSendsCompleted = new LongAdder();
+    private final LongAdder asyncSendsFailed = new LongAdder();
+    private final LongAdder asyncSendsAbandoned = new LongAdder();
+    private final LongAdder spooled = new LongAdder();
+    private final LongAdder spoolDropped = new LongAdder();
+    private final LongAdder spoolFull = new LongAdder();
+    private final LongAdder spoolDrained = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LongAdder requestsSent = new LongAdder();
+    private final LongAdder requestsTimedOut = new LongAdder();
+    private final LongAdder requestsEvicted = new LongAdder();
+    private final LongAdder repliesUnmatched = new LongAdder();
+    private final JMSLatencyHistogram replyLatency = new JMSLatencyHistogram();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile int queueCapacity;
+    private volatile LongSupplier spoolDepth = () -> 0;
+    private volatile LongSupplier spoolSize = () -> 0;
+    private volatile double spoolDrainRate;
+    private volatile double rateLimitFactor = 1;
+    private volatile IntSupplier outstandingRequests = () -> 0;
+
+    void setQueue(IntSupplier queueDepth, int queueCapacity) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+    }
+
+    void setSpool(LongSupplier spoolDepth, LongSupplier spoolSize) {
+        this.spoolDepth = spoolDepth;
+        this.spoolSize = spoolSize;
+    }
+
+    void enqueued(int depth) {
+        enqueued.increment();
+        int peak = peakQueueDepth.get();
+        while (depth > peak && !peakQueueDepth.compareAndSet(peak, depth)) {
+            peak = peakQueueDepth.get();
+        }
+    }
+
+    void blocked() {
+        blocked.increment();
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+
+    void rejected() {
+        rejected.increment();
+    }
+
+    void published() {
+        published.increment();
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    void destinationCacheHit() {
+        destinationCacheHits.increment();
+    }
+
+    void destinationCacheMiss() {
+        destinationCacheMisses.increment();
+    }
+
+    void destinationCacheEviction() {
+        destinationCacheEvictions.increment();
+    }
+
+    void destinationCached(int delta) {
+        destinationCacheSize.add(delta);
+    }
+
+    void asyncSendStarted() {
+        asyncSendsStarted.increment();
+    }
+
+    void asyncSendCompleted() {
+        asyncSendsCompleted.increment();
+    }
+
+    void asyncSendFailed() {
+        asyncSendsFailed.increment();
+    }
+
+    void asyncSendAbandoned() {
+        asyncSendsAbandoned.increment();
+    }
+
+    void spooled() {
+        spooled.increment();
+    }
+
+    void spoolDropped() {
+        spoolDropped.increment();
+    }
+
+    void spoolFull() {
+        spoolFull.increment();
+    }
+
+    void spoolDrained() {
+        spoolDrained.increment();
+    }
+
+    void throttled(long waitNanos) {
+        throttled.increment();
+        throttledNanos.add(waitNanos);
+    }
+
+    void setRateLimitFactor(double rateLimitFactor) {
+        this.rateLimitFactor = rateLimitFactor;
+    }
+
+    void setOutstandingRequests(IntSupplier outstandingRequests) {
+        this.outstandingRequests = outstandingRequests;
+    }
+
+    void requestSent() {
+        requestsSent.increment();
+    }
+
+    void replyReceived(long latencyNanos) {
+        replyLatency.record(latencyNanos);
+    }
+
+    void requestsTimedOut(int count) {
+        requestsTimedOut.add(count);
+    }
+
+    void requestEvicted() {
+        requestsEvicted.increment();
+    }
+
+    void replyUnmatched() {
+        repliesUnmatched.increment();
+    }
+
+    void setSpoolDrainRate(double spoolDrainRate) {
+        this.spoolDrainRate = spoolDrainRate;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    @Override
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getDestinationCacheHitCount() {
+        return destinationCacheHits.sum();
+    }
+
+    @Override
+    public long getDestinationCacheMissCount() {
+        return destinationCacheMisses.sum();
+    }
+
+    @Override
+    public long getDestinationCacheEvictionCount() {
+        return destinationCacheEvictions.sum();
+    }
+
+    @Override
+    public long getDestinationCacheSize() {
+        return destinationCacheSize.sum();
+    }
+
+    @Override
+    public long getAsyncSendInFlight() {
+        return asyncSendsStarted.sum() - asyncSendsCompleted.sum() - asyncSendsFailed.sum()
+                - asyncSendsAbandoned.sum();
+    }
+
+    @Override
+    public long getAsyncSendCompletedCount() {
+        return asyncSendsCompleted.sum();
+    }
+
+    @Override
+    public long getAsyncSendFailedCount() {
+        return asyncSendsFailed.sum();
+    }
+
+    @Override
+    public long getSpoolDepth() {
+        return spoolDepth.getAsLong();
+    }
+
+    @Override
+    public long getSpoolSize() {
+        return spoolSize.getAsLong();
+    }
+
+    @Override
+    public long getSpooledCount() {
+        return spooled.sum();
+    }
+
+    @Override
+    public long getSpoolDroppedCount() {
+        return spoolDropped.sum();
+    }
+
+    @Override
+    public long getSpoolFullCount() {
+        return spoolFull.sum();
+    }
+
+    @Override
+    public long getSpoolDrainedCount() {
+        return spoolDrained.sum();
+    }
+
+    @Override
+    public double getSpoolDrainRate() {
+        return spoolDrainRate;
+    }
+
+    @Override
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    @Override
+    public long getThrottledTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum());
+    }
+
+    @Override
+    public double getRateLimitFactor() {
+        return rateLimitFactor;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestsSent.sum();
+    }
+
+    @Override
+    public long getReplyCount() {
+        return replyLatency.getCount();
+    }
+
+    @Override
+    public int getOutstandingRequests() {
+        return outstandingRequests.getAsInt();
+    }
+
+    @Override
+    public long getRequestTimedOutCount() {
+        return requestsTimedOut.sum();
+    }
+
+    @Override
+    public long getRequestEvictedCount() {
+        return requestsEvicted.sum();
+    }
+
+    @Override
+    public long getReplyUnmatchedCount() {
+        return repliesUnmatched.sum();
+    }
+
+    @Override
+    public void resetReplyLatency() {
+        replyLatency.reset();
+    }
+
+    @Override
+    public double getReplyLatencyMeanMicros() {
+        return replyLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getReplyLatencyP99Micros() {
+        return replyLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getReplyLatencyMaxMicros() {
+        return replyLatency.getMaxMicros();
+    }
+
+    /**
+     * Metrics which ignore every recording, and keep no reference to the components reporting to them.
+     */
+    private static final class Disabled extends JMSSinkMetrics {
+
+        @Override
+        void setQueue(IntSupplier queueDepth, int queueCapacity) {
+        }
+
+        @Override
+        void setSpool(LongSupplier spoolDepth, LongSupplier spoolSize) {
+        }
+
+        @Override
+        void enqueued(int depth) {
+        }
+
+        @Override
+        void blocked() {
+        }
+
+        @Override
+        void dropped() {
+        }
+
+        @Override
+        void rejected() {
+        }
+
+        @Override
+        void published() {
+        }
+
+        @Override
+        void failed() {
+        }
+
+        @Override
+        void destinationCacheHit() {
+        }
+
+        @Override
+        void destinationCacheMiss() {
+        }
+
+        @Override
+        void destinationCacheEviction() {
+        }
+
+        @Override
+        void destinationCached(int delta) {
+        }
+
+        @Override
+        void asyncSendStarted() {
+        }
+
+        @Override
+        void asyncSendCompleted() {
+        }
+
+        @Override
+        void asyncSendFailed() {
+        }
+
+        @Override
+        void asyncSendAbandoned() {
+        }
+
+        @Override
+        void spooled() {
+        }
+
+        @Override
+        void spoolDropped() {
+        }
+
+        @Override
+        void spoolFull() {
+        }
+
+        @Override
+        void spoolDrained() {
+        }
+
+        @Override
+        void throttled(long waitNanos) {
+        }
+
+        @Override
+        void setRateLimitFactor(double rateLimitFactor) {
+        }
+
+        @Override
+        void setOutstandingRequests(IntSupplier outstandingRequests) {
+        }
+
+        @Override
+        void requestSent() {
+        }
+
+        @Override
+        void replyReceived(long latencyNanos) {
+        }
+
+        @Override
+        void requestsTimedOut(int count) {
+        }
+
+        @Override
+        void requestEvicted() {
+        }
+
+        @Override
+        void replyUnmatched() {
+        }
+
+        @Override
+        void setSpoolDrainRate(double spoolDrainRate) {
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+/**
+ * JMX view of the {@link JMSSinkMetrics}.
+ */
+public interface JMSSinkMetricsMBean {
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    int getPeakQueueDepth();
+
+    long getEnqueuedCount();
+
+    long getBlockedCount();
+
+    long getDroppedCount();
+
+    long getRejectedCount();
+
+    long getPublishedCount();
+
+    long getFailedCount();
+
+    long getDestinationCacheHitCount();
+
+    long getDestinationCacheMissCount();
+
+    long getDestinationCacheEvictionCount();
+
+    long getDestinationCacheSize();
+
+    long getAsyncSendInFlight();
+
+    long getAsyncSendCompletedCount();
+
+    long getAsyncSendFailedCount();
+
+    long getSpoolDepth();
+
+    long getSpoolSize();
+
+    long getSpooledCount();
+
+    long getSpoolDroppedCount();
+
+    long getSpoolFullCount();
+
+    long getSpoolDrainedCount();
+
+    double getSpoolDrainRate();
+
+    long getThrottledCount();
+
+    long getThrottledTimeMillis();
+
+    double getRateLimitFactor();
+
+    long getRequestCount();
+
+    long getReplyCount();
+
+    int getOutstandingRequests();
+
+    long getRequestTimedOutCount();
+
+    long getRequestEvictedCount();
+
+    long getReplyUnmatchedCount();
+
+    /**
+     * Clears the reply latency histogram, which is otherwise cumulative since the sink was created.
+     */
+    void resetReplyLatency();
+
+    double getReplyLatencyMeanMicros();
+
+    long getReplyLatencyP99Micros();
+
+    long getReplyLatencyMaxMicros();
+}
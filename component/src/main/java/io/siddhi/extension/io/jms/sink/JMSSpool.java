@@ -0,0 +1,817 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.event.Event;
+import io.siddhi.core.util.transport.DynamicOptions;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store-and-forward spool of the events which could not be sent, kept in memory-mapped segment files.
+ * <p>
+ * Events are appended to the newest segment, and a drainer thread sends them again, in the order they were
+ * appended, once the broker is reachable. Each record is written before its length, and is followed by a zero
+ * length marking the end of the segment, so that a crash never exposes a partially written record. Sent records are
+ * marked as consumed in place, and a segment whose records are all consumed is recycled as a future segment instead
+ * of being created again. The spool survives restarts of the Siddhi app, and the mapped pages survive a crash of the
+ * process, but they are only forced to the disk when a segment is sealed or the spool is closed. Segments are
+ * unmapped as soon as they are closed or recycled, instead of when their buffers are garbage collected, so that
+ * the files of recycled and deleted segments do not stay mapped during a long outage.
+ * <p>
+ * Records keep the destination and the dynamic options of the event along with its payload. Map payloads and the
+ * attributes of the options are written as typed values, so only String, Integer, Long, Float, Double and Boolean
+ * values, and nulls, can be spooled.
+ * <p>
+ * The spool holds at most the configured number of bytes, rounded down to whole segments. Events which do not fit
+ * are rejected and counted, and the callers pass them to 'on.error'.
+ */
+public class JMSSpool {
+    private static final Logger log = Logger.getLogger(JMSSpool.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String LOCK_FILE = "spool.lock";
+    private static final int END_OF_SEGMENT = -1;
+    private static final int END_OF_RECORDS = 0;
+    private static final byte CONSUMED = 0;
+    private static final byte TEXT = 1;
+    private static final byte BYTES = 2;
+    private static final byte MAP = 3;
+    private static final byte NO_OPTIONS = 0;
+    private static final byte EVENT_OPTIONS = 1;
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte INT_VALUE = 2;
+    private static final byte LONG_VALUE = 3;
+    private static final byte FLOAT_VALUE = 4;
+    private static final byte DOUBLE_VALUE = 5;
+    private static final byte BOOLEAN_VALUE = 6;
+    private static final long FULL_WARNING_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final JMSSinkMetrics metrics;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Deque<File> recycledFiles = new ArrayDeque<>();
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    private volatile long pendingRecords;
+    private long nextSequence;
+    private long lastFullWarning = System.nanoTime() - FULL_WARNING_INTERVAL;
+    private long fullSinceWarning;
+    private Thread drainerThread;
+    private volatile boolean draining;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            // sun.misc.Unsafe.invokeCleaner unmaps buffers from JDK 9, where the cleaner of a buffer is not accessible
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Opens the spool in the given directory, recovering the records left by a previous run.
+     *
+     * @param directory   directory of the segment files, created if it does not exist.
+     * @param segmentSize size of a segment file in bytes.
+     * @param maxSize     maximum size of all segment files in bytes.
+     * @param metrics     metrics of the sink.
+     * @throws IOException if the directory cannot be used, or is used by another spool.
+     */
+    public JMSSpool(File directory, int segmentSize, long maxSize, JMSSinkMetrics metrics) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the spool directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / segmentSize));
+        this.metrics = metrics;
+        this.lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        FileLock fileLock = lockFile.getChannel().tryLock();
+        if (fileLock == null) {
+            lockFile.close();
+            throw new IOException("Spool directory " + directory + " is used by another JMS sink.");
+        }
+        this.lock = fileLock;
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        metrics.setSpool(() -> pendingRecords, this::getSize);
+    }
+
+    /**
+     * Appends the event to the spool.
+     *
+     * @param destination name of the destination.
+     * @param payload     String, Map, ByteBuffer or envelope payload.
+     * @param options     dynamic options of the event, or null.
+     * @return whether the event was spooled, false if the spool is full or the event cannot be stored, in which case
+     * the caller passes it to 'on.error'.
+     */
+    public synchronized boolean append(String destination, Object payload, DynamicOptions options) {
+        byte[] record;
+        try {
+            record = encode(destination, payload, options);
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to spool the event to destination: " + destination, e);
+            metrics.spoolDropped();
+            return false;
+        }
+        try {
+            Segment segment = writableSegment(record.length);
+            if (segment == null) {
+                metrics.spoolFull();
+                warnFull();
+                return false;
+            }
+            segment.write(record);
+        } catch (IOException e) {
+            log.error("Unable to spool the event to destination: " + destination + " in " + directory, e);
+            metrics.spoolDropped();
+            return false;
+        }
+        pendingRecords++;
+        metrics.spooled();
+        return true;
+    }
+
+    /**
+     * Warns that the spool is full, at most once per {@link #FULL_WARNING_INTERVAL}.
+     */
+    private void warnFull() {
+        fullSinceWarning++;
+        long now = System.nanoTime();
+        if (now - lastFullWarning >= FULL_WARNING_INTERVAL) {
+            log.warn("Spool " + directory + " is full, " + fullSinceWarning + " events could not be spooled since "
+                    + "the last warning and were passed to 'on.error'.");
+            lastFullWarning = now;
+            fullSinceWarning = 0;
+        }
+    }
+
+    /**
+     * @return whether there are spooled events which have not been sent yet.
+     */
+    public boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    /**
+     * Starts the thread replaying the spooled events through the given sender.
+     *
+     * @param name          name of the drainer thread.
+     * @param sender        sender used by the drainer thread, closed when it stops.
+     * @param drainInterval time in milliseconds to wait before retrying after a failure, or when the spool is empty.
+     */
+    public synchronized void startDrainer(String name, JMSPublishPipeline.Sender sender, long drainInterval) {
+        if (draining) {
+            return;
+        }
+        draining = true;
+        drainerThread = new Thread(() -> drain(sender, drainInterval), name);
+        drainerThread.setDaemon(true);
+        drainerThread.start();
+    }
+
+    /**
+     * Stops the drainer thread, waiting for the event being sent, if any.
+     */
+    public void stopDrainer() {
+        Thread thread;
+        synchronized (this) {
+            draining = false;
+            thread = drainerThread;
+            drainerThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Forces the segments to the disk and releases the spool directory.
+     */
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        try {
+            lock.release();
+            lockFile.close();
+        } catch (IOException e) {
+            log.debug("Error while releasing the spool directory " + directory, e);
+        }
+    }
+
+    private void drain(JMSPublishPipeline.Sender sender, long drainInterval) {
+        long rateWindowStart = System.nanoTime();
+        long drainedInWindow = 0;
+        try {
+            while (draining) {
+                Record record = peek();
+                boolean sent = false;
+                if (record != null) {
+                    try {
+                        sender.send(record.destination, record.payload, record.options);
+                        consume(record);
+                        metrics.spoolDrained();
+                        drainedInWindow++;
+                        sent = true;
+                    } catch (Exception e) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Unable to send the spooled event to destination: " + record.destination
+                                    + ", retrying in " + drainInterval + " ms.", e);
+                        }
+                    }
+                }
+                long now = System.nanoTime();
+                long elapsed = now - rateWindowStart;
+                if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                    metrics.setSpoolDrainRate(drainedInWindow * (double) TimeUnit.SECONDS.toNanos(1) / elapsed);
+                    rateWindowStart = now;
+                    drainedInWindow = 0;
+                }
+                if (!sent) {
+                    try {
+                        Thread.sleep(drainInterval);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        } finally {
+            metrics.setSpoolDrainRate(0);
+            sender.close();
+        }
+    }
+
+    private synchronized Record peek() {
+        while (!segments.isEmpty()) {
+            Segment segment = segments.peekFirst();
+            Record record = segment.next();
+            if (record != null) {
+                return record;
+            }
+            if (segment == segments.peekLast()) {
+                return null;
+            }
+            // every record of the sealed segment has been consumed
+            segments.pollFirst();
+            recycle(segment);
+        }
+        return null;
+    }
+
+    private synchronized void consume(Record record) {
+        if (record.segment.consume(record)) {
+            pendingRecords--;
+        }
+    }
+
+    /**
+     * @return the segment to write the record to, or null if the spool is full.
+     * @throws IOException if the record does not fit in a segment, or the segment cannot be created.
+     */
+    private Segment writableSegment(int recordLength) throws IOException {
+        // the record, its length, and the end marker following it
+        int required = recordLength + 8;
+        if (required > segmentSize) {
+            throw new IOException("Event of " + recordLength + " bytes does not fit in a spool segment of "
+                    + segmentSize + " bytes.");
+        }
+        Segment segment = segments.peekLast();
+        if (segment != null && segment.remaining() >= required) {
+            return segment;
+        }
+        if (segments.size() >= maxSegments) {
+            return null;
+        }
+        if (segment != null) {
+            segment.seal();
+        }
+        Segment newSegment = createSegment();
+        segments.addLast(newSegment);
+        return newSegment;
+    }
+
+    private Segment createSegment() throws IOException {
+        File file = new File(directory, SEGMENT_PREFIX + String.format("%019d", nextSequence++) + SEGMENT_SUFFIX);
+        File recycled = recycledFiles.pollFirst();
+        if (recycled != null && !recycled.renameTo(file)) {
+            log.debug("Unable to recycle spool segment " + recycled + ", creating " + file);
+            if (!recycled.delete()) {
+                log.debug("Unable to delete spool segment " + recycled);
+            }
+        }
+        Segment segment = new Segment(file);
+        segment.reset();
+        return segment;
+    }
+
+    private void recycle(Segment segment) {
+        segment.close();
+        // one spare segment avoids creating a file every time a segment fills up, while keeping the disk usage low
+        if (recycledFiles.isEmpty()) {
+            recycledFiles.add(segment.file);
+        } else if (!segment.file.delete()) {
+            log.warn("Unable to delete spool segment " + segment.file);
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String sequence = file.getName().substring(SEGMENT_PREFIX.length(),
+                    file.getName().length() - SEGMENT_SUFFIX.length());
+            try {
+                nextSequence = Math.max(nextSequence, Long.parseLong(sequence) + 1);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (file.length() != segmentSize) {
+                log.warn("Ignoring spool segment " + file + " as its size does not match the segment size of "
+                        + segmentSize + " bytes.");
+                continue;
+            }
+            Segment segment = new Segment(file);
+            int records = segment.recover();
+            if (records == 0 && segments.isEmpty()) {
+                recycle(segment);
+            } else {
+                segments.addLast(segment);
+                pendingRecords += records;
+            }
+        }
+        if (pendingRecords > 0) {
+            log.info("Recovered " + pendingRecords + " spooled events from " + directory);
+        }
+    }
+
+    private synchronized long getSize() {
+        return (long) segmentSize * segments.size();
+    }
+
+    /**
+     * Releases the mapping of the buffer, which must not be used afterwards. Uses the cleaner of the buffer on JDK 8,
+     * and sun.misc.Unsafe from JDK 9. If neither is available, the mapping is released once the buffer is garbage
+     * collected.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return;
+            }
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to unmap a spool segment, it is unmapped once garbage collected.", e);
+            }
+        }
+    }
+
+    /**
+     * Encodes the event into a spool record, which is also the serialized form of the pending events of a snapshot.
+     */
+    static byte[] encode(String destination, Object payload, DynamicOptions options) throws IOException {
+        int eventCount = 0;
+        String delimiter = null;
+        if (payload instanceof JMSEnvelope) {
+            JMSEnvelope envelope = (JMSEnvelope) payload;
+            eventCount = envelope.getEventCount();
+            delimiter = envelope.getDelimiter();
+            payload = envelope.getPayload();
+        }
+        if (payload instanceof JMSMapPayload) {
+            payload = ((JMSMapPayload) payload).toMap();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(out);
+        byte[] destinationBytes = destination.getBytes(StandardCharsets.UTF_8);
+        byte[] delimiterBytes = delimiter == null ? new byte[0] : delimiter.getBytes(StandardCharsets.UTF_8);
+        if (payload instanceof String) {
+            record.writeByte(TEXT);
+        } else if (payload instanceof ByteBuffer) {
+            record.writeByte(BYTES);
+        } else if (payload instanceof Map) {
+            record.writeByte(MAP);
+        } else {
+            throw new IOException("Unsupported payload type " + payload.getClass());
+        }
+        record.writeInt(eventCount);
+        record.writeShort(delimiterBytes.length);
+        record.write(delimiterBytes);
+        record.writeShort(destinationBytes.length);
+        record.write(destinationBytes);
+        Event event = options == null ? null : options.getEvent();
+        if (event == null) {
+            record.writeByte(NO_OPTIONS);
+        } else {
+            record.writeByte(EVENT_OPTIONS);
+            record.writeLong(event.getTimestamp());
+            Object[] data = event.getData();
+            record.writeInt(data.length);
+            for (Object value : data) {
+                writeValue(record, value);
+            }
+        }
+        if (payload instanceof String) {
+            record.write(((String) payload).getBytes(StandardCharsets.UTF_8));
+        } else if (payload instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) payload;
+            int offset = JMSMessageUtils.payloadOffset(buffer);
+            int length = JMSMessageUtils.payloadLength(buffer);
+            if (buffer.hasArray()) {
+                record.write(buffer.array(), buffer.arrayOffset() + offset, length);
+            } else {
+                byte[] body = new byte[length];
+                ByteBuffer content = buffer.duplicate();
+                ((Buffer) content).position(offset);
+                content.get(body);
+                record.write(body);
+            }
+        } else {
+            Map<?, ?> map = (Map<?, ?>) payload;
+            record.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(record, String.valueOf(entry.getKey()));
+                writeValue(record, entry.getValue());
+            }
+        }
+        record.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the event into a spool record, without dynamic options.
+     */
+    static byte[] encode(String destination, Object payload) throws IOException {
+        return encode(destination, payload, null);
+    }
+
+    /**
+     * Decodes an event encoded with {@link #encode(String, Object, DynamicOptions)}.
+     */
+    static Record decode(byte[] record) throws IOException {
+        return decode(null, 0, record.length, ByteBuffer.wrap(record));
+    }
+
+    private static Record decode(Segment segment, int position, int length, ByteBuffer record) throws IOException {
+        byte kind = record.get();
+        int eventCount = record.getInt();
+        byte[] delimiterBytes = new byte[record.getShort() & 0xFFFF];
+        record.get(delimiterBytes);
+        byte[] destinationBytes = new byte[record.getShort() & 0xFFFF];
+        record.get(destinationBytes);
+        DynamicOptions options = null;
+        byte optionsKind = record.get();
+        if (optionsKind == EVENT_OPTIONS) {
+            long timestamp = record.getLong();
+            Object[] data = new Object[readCount(record)];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = readValue(record);
+            }
+            options = new DynamicOptions(new Event(timestamp, data));
+        } else if (optionsKind != NO_OPTIONS) {
+            throw new IOException("Unknown spooled options type " + optionsKind);
+        }
+        Object payload;
+        switch (kind) {
+            case TEXT:
+                payload = new String(readBytes(record, record.remaining()), StandardCharsets.UTF_8);
+                break;
+            case BYTES:
+                payload = ByteBuffer.wrap(readBytes(record, record.remaining()));
+                break;
+            case MAP:
+                int size = readCount(record);
+                Map<String, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(record), readValue(record));
+                }
+                payload = map;
+                break;
+            default:
+                throw new IOException("Unknown spooled record type " + kind);
+        }
+        if (eventCount > 0) {
+            payload = new JMSEnvelope(payload, eventCount,
+                    delimiterBytes.length == 0 ? null : new String(delimiterBytes, StandardCharsets.UTF_8));
+        }
+        return new Record(segment, position, length, new String(destinationBytes, StandardCharsets.UTF_8), payload,
+                options);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof String) {
+            out.writeByte(STRING_VALUE);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT_VALUE);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG_VALUE);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT_VALUE);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE_VALUE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new IOException("Values of type " + value.getClass().getName() + " cannot be spooled.");
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        switch (type) {
+            case NULL_VALUE:
+                return null;
+            case STRING_VALUE:
+                return readString(in);
+            case INT_VALUE:
+                return in.getInt();
+            case LONG_VALUE:
+                return in.getLong();
+            case FLOAT_VALUE:
+                return in.getFloat();
+            case DOUBLE_VALUE:
+                return in.getDouble();
+            case BOOLEAN_VALUE:
+                return in.get() != 0;
+            default:
+                throw new IOException("Unknown spooled value type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        return new String(readBytes(in, in.getInt()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer in, int length) throws IOException {
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Invalid length of " + length + " bytes in a spooled record.");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the number of values which follow, each taking at least a byte.
+     */
+    private static int readCount(ByteBuffer in) throws IOException {
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining()) {
+            throw new IOException("Invalid count of " + count + " values in a spooled record.");
+        }
+        return count;
+    }
+
+    /**
+     * A memory-mapped segment file, read from its oldest unconsumed record and written at its end.
+     */
+    private class Segment {
+        private final File file;
+        private final FileChannel channel;
+        // null once the segment is closed and unmapped, as accessing an unmapped buffer crashes the JVM
+        private MappedByteBuffer buffer;
+        private int readPosition;
+        private int writePosition;
+        private boolean sealed;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(segmentSize);
+                this.channel = randomAccessFile.getChannel();
+                // the mapping stays valid after the channel is closed
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+        }
+
+        private void reset() {
+            buffer.putInt(0, END_OF_RECORDS);
+            readPosition = 0;
+            writePosition = 0;
+            sealed = false;
+        }
+
+        /**
+         * Finds the end of the records, and the first record which has not been consumed.
+         *
+         * @return the number of records which have not been consumed.
+         */
+        private int recover() {
+            int records = 0;
+            int position = 0;
+            readPosition = -1;
+            while (position <= segmentSize - 4) {
+                int length = buffer.getInt(position);
+                if (length == END_OF_SEGMENT) {
+                    sealed = true;
+                    break;
+                }
+                if (length <= 0 || position + 4 + length > segmentSize - 4) {
+                    break;
+                }
+                if (buffer.get(position + 4) != CONSUMED) {
+                    records++;
+                    if (readPosition < 0) {
+                        readPosition = position;
+                    }
+                }
+                position += 4 + length;
+            }
+            writePosition = position;
+            if (readPosition < 0) {
+                readPosition = position;
+            }
+            if (!sealed) {
+                buffer.putInt(writePosition, END_OF_RECORDS);
+            }
+            return records;
+        }
+
+        private int remaining() {
+            return sealed ? 0 : segmentSize - writePosition;
+        }
+
+        private void write(byte[] record) {
+            ByteBuffer target = buffer.duplicate();
+            target.position(writePosition + 4);
+            target.put(record);
+            target.putInt(END_OF_RECORDS);
+            // the length makes the record visible, so it is written last
+            buffer.putInt(writePosition, record.length);
+            writePosition += 4 + record.length;
+        }
+
+        private void seal() {
+            buffer.putInt(writePosition, END_OF_SEGMENT);
+            sealed = true;
+            buffer.force();
+        }
+
+        /**
+         * Reads the oldest record which has not been consumed.
+         *
+         * @return the record, or null if there is none.
+         */
+        private Record next() {
+            while (readPosition < writePosition) {
+                int length = buffer.getInt(readPosition);
+                if (buffer.get(readPosition + 4) == CONSUMED) {
+                    readPosition += 4 + length;
+                    continue;
+                }
+                ByteBuffer record = buffer.duplicate();
+                record.position(readPosition + 4);
+                record.limit(readPosition + 4 + length);
+                try {
+                    return decode(this, readPosition, length, record.slice());
+                } catch (IOException | RuntimeException e) {
+                    log.error("Discarding the unreadable spooled event at offset " + readPosition + " of " + file, e);
+                    buffer.put(readPosition + 4, CONSUMED);
+                    readPosition += 4 + length;
+                    pendingRecords--;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return whether the record was marked as consumed, false if the segment is already closed.
+         */
+        private boolean consume(Record record) {
+            if (buffer == null) {
+                return false;
+            }
+            buffer.put(record.position + 4, CONSUMED);
+            readPosition = record.position + 4 + record.length;
+            return true;
+        }
+
+        private void close() {
+            if (buffer == null) {
+                return;
+            }
+            buffer.force();
+            unmap(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * A spooled event along with its location.
+     */
+    static class Record {
+        private final Segment segment;
+        private final int position;
+        private final int length;
+        private final String destination;
+        private final Object payload;
+        private final DynamicOptions options;
+
+        private Record(Segment segment, int position, int length, String destination, Object payload,
+                       DynamicOptions options) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+            this.destination = destination;
+            this.payload = payload;
+            this.options = options;
+        }
+
+        String getDestination() {
+            return destination;
+        }
+
+        Object getPayload() {
+            return payload;
+        }
+
+        DynamicOptions getOptions() {
+            return options;
+        }
+    }
+}
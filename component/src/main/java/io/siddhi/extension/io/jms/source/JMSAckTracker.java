@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.source;
+
+import java.util.HashSet;
+import java.util.Set;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Tracks the messages delivered to a client acknowledged session, so that they are acknowledged in batches.
+ * <p>
+ * A JMS acknowledgement covers every message delivered to the session so far, so a batch can only be acknowledged
+ * once all of its messages are processed. Messages are numbered in the order they are delivered, and the tracker
+ * keeps the watermark of the highest number up to which every message is processed, regardless of the order in which
+ * they complete. An acknowledgement is only made once the watermark reaches the last delivered message. A failed
+ * message holds the watermark until the session is recovered, so that no acknowledgement is ever made past it.
+ */
+class JMSAckTracker {
+    private final int ackBatchSize;
+    private final long ackInterval;
+    private final Set<Long> processedAhead = new HashSet<>();
+    private long delivered;
+    private long watermark;
+    private long acknowledged;
+    private boolean failed;
+    private Message lastDelivered;
+    private long firstUnacknowledgedTime;
+
+    JMSAckTracker(int ackBatchSize, long ackInterval) {
+        this.ackBatchSize = ackBatchSize;
+        this.ackInterval = ackInterval;
+    }
+
+    /**
+     * Records a message delivered to the session.
+     *
+     * @return the number of the message, to be passed to {@link #processed(long)}.
+     */
+    synchronized long delivered(Message message) {
+        if (delivered == acknowledged) {
+            firstUnacknowledgedTime = System.currentTimeMillis();
+        }
+        lastDelivered = message;
+        return ++delivered;
+    }
+
+    synchronized void processed(long number) {
+        if (number != watermark + 1) {
+            processedAhead.add(number);
+            return;
+        }
+        watermark = number;
+        while (!processedAhead.isEmpty() && processedAhead.remove(watermark + 1)) {
+            watermark++;
+        }
+    }
+
+    synchronized void failed() {
+        failed = true;
+    }
+
+    /**
+     * Acknowledges every delivered message if all of them are processed, and either the ack batch size is reached,
+     * the oldest unacknowledged message is older than the ack interval, or the acknowledgement is forced.
+     *
+     * @param force whether to acknowledge regardless of the ack batch size and interval.
+     * @return the number of messages acknowledged.
+     * @throws JMSException if the acknowledgement fails.
+     */
+    synchronized int acknowledgeIfDue(boolean force) throws JMSException {
+        int pending = (int) (delivered - acknowledged);
+        if (failed || pending == 0 || watermark != delivered) {
+            return 0;
+        }
+        if (!force && pending < ackBatchSize
+                && System.currentTimeMillis() - firstUnacknowledgedTime < ackInterval) {
+            return 0;
+        }
+        lastDelivered.acknowledge();
+        acknowledged = delivered;
+        lastDelivered = null;
+        return pending;
+    }
+
+    /**
+     * Forgets every unacknowledged message once the session is recovered or discarded, as they are redelivered, or
+     * once the provider acknowledges them.
+     */
+    synchronized void reset() {
+        delivered = 0;
+        watermark = 0;
+        acknowledged = 0;
+        failed = false;
+        lastDelivered = null;
+        processedAhead.clear();
+    }
+
+    /**
+     * @return whether no delivered message is waiting to be acknowledged.
+     */
+    synchronized boolean isEmpty() {
+        return delivered == acknowledged && processedAhead.isEmpty() && lastDelivered == null;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.source;
+
+import io.siddhi.extension.io.jms.util.JMSSessionFactory;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+
+/**
+ * Receives messages on sessions owned by this consumer and passes them to the {@link JMSMessageProcessor} in
+ * batches, in place of the carbon transport listener.
+ * <p>
+ * Every worker thread receives on its own session, collecting messages until the batch size is reached or the batch
+ * timeout has passed since the first message of the batch. The events of the batch are passed to Siddhi back to
+ * back. How the messages are then acknowledged depends on the {@link AcknowledgementMode}:
+ * <ul>
+ * <li>AUTO acknowledges every batch once all its events are processed.</li>
+ * <li>CLIENT acknowledges once the ack batch size of messages are processed, or the oldest unacknowledged message
+ * is older than the ack interval, tracking the processed messages with a {@link JMSAckTracker}.</li>
+ * <li>DUPS_OK leaves the acknowledgements to the provider, which sends them lazily.</li>
+ * </ul>
+ * If a message fails to be processed, the session is recovered so that every unacknowledged message is redelivered,
+ * which gives at-least-once delivery. A JMS acknowledgement covers every message delivered to the session, so the
+ * messages processed before the failed one cannot be acknowledged on their own: they are redelivered too, and passed
+ * to Siddhi again along with the failed message.
+ * <p>
+ * In transacted mode the acknowledgement mode does not apply. Every batch is received in a transaction, which is
+ * committed once all its events are processed and rolled back as soon as one of them fails, so that a batch is
+ * either consumed as a whole or redelivered as a whole. The events of a rolled back batch which were processed before
+ * the failure are passed to Siddhi again.
+ * <p>
+ * Broken connections are re-established by the {@link JMSSessionFactory} after the retry interval.
+ */
+public class JMSBatchConsumer {
+    private static final Logger log = Logger.getLogger(JMSBatchConsumer.class);
+    private static final long RECEIVE_TIMEOUT_MS = 100;
+    private static final long STOP_TIMEOUT_MS = 5000;
+    private static final int MAX_INITIAL_BATCH_CAPACITY = 1024;
+    private final String name;
+    private final JMSSessionFactory sessionFactory;
+    private final String destination;
+    private final int workerCount;
+    private final int batchSize;
+    private final long batchTimeout;
+    private final long retryInterval;
+    private final boolean transacted;
+    private final AcknowledgementMode acknowledgementMode;
+    private final int ackBatchSize;
+    private final long ackInterval;
+    private final JMSMessageProcessor processor;
+    private final JMSSourceMetrics metrics;
+    private final List<Thread> workers;
+    private volatile boolean running;
+
+    public JMSBatchConsumer(String name, JMSSessionFactory sessionFactory, String destination, int workerCount,
+                            int batchSize, long batchTimeout, long retryInterval, boolean transacted,
+                            AcknowledgementMode acknowledgementMode, int ackBatchSize, long ackInterval,
+                            JMSMessageProcessor processor, JMSSourceMetrics metrics) {
+        this.name = name;
+        this.sessionFactory = sessionFactory;
+        this.destination = destination;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.retryInterval = retryInterval;
+        this.transacted = transacted;
+        this.acknowledgementMode = acknowledgementMode;
+        this.ackBatchSize = ackBatchSize;
+        this.ackInterval = ackInterval;
+        this.processor = processor;
+        this.metrics = metrics;
+        this.workers = new ArrayList<>(workerCount);
+    }
+
+    /**
+     * Starts the worker threads, if they are not already running.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::consume, name + "-consumer-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Stops the worker threads once their current batch is processed and acknowledged, and closes the connection.
+     * Messages which are not acknowledged by then are redelivered by the broker.
+     */
+    public void stop() {
+        List<Thread> threads;
+        synchronized (this) {
+            running = false;
+            threads = new ArrayList<>(workers);
+            workers.clear();
+        }
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MS;
+        try {
+            for (Thread worker : threads) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining > 0) {
+                    worker.join(remaining);
+                }
+                if (worker.isAlive()) {
+                    worker.interrupt();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sessionFactory.close();
+    }
+
+    private void consume() {
+        List<Message> batch = new ArrayList<>(Math.min(batchSize, MAX_INITIAL_BATCH_CAPACITY));
+        JMSAckTracker ackTracker = acknowledgementMode == AcknowledgementMode.CLIENT
+                ? new JMSAckTracker(ackBatchSize, ackInterval)
+                : new JMSAckTracker(1, 0);
+        int sessionMode = transacted ? Session.SESSION_TRANSACTED
+                : acknowledgementMode == AcknowledgementMode.DUPS_OK ? Session.DUPS_OK_ACKNOWLEDGE
+                : Session.CLIENT_ACKNOWLEDGE;
+        Session session = null;
+        MessageConsumer consumer = null;
+        try {
+            while (running) {
+                try {
+                    if (session == null) {
+                        session = sessionFactory.createSession(transacted, sessionMode);
+                        consumer = session.createConsumer(sessionFactory.createDestination(session, destination));
+                        ackTracker.reset();
+                    }
+                    if (receive(consumer, batch)) {
+                        processor.awaitResume();
+                        processBatch(session, batch, ackTracker);
+                    }
+                    if (sessionMode == Session.CLIENT_ACKNOWLEDGE) {
+                        acknowledge(ackTracker, false);
+                    } else if (sessionMode == Session.DUPS_OK_ACKNOWLEDGE) {
+                        // the provider acknowledges lazily, so nothing is left to track once the batch is processed
+                        ackTracker.reset();
+                    }
+                } catch (JMSException e) {
+                    log.error("Error while consuming JMS messages from destination: " + destination + ", retrying "
+                            + "in " + retryInterval + " ms.", e);
+                    closeSession(session);
+                    session = null;
+                    Thread.sleep(retryInterval);
+                } finally {
+                    batch.clear();
+                }
+            }
+            if (session != null && sessionMode == Session.CLIENT_ACKNOWLEDGE) {
+                acknowledge(ackTracker, true);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (JMSException e) {
+            log.error("Error while acknowledging the JMS messages processed from destination: " + destination
+                    + ", they will be redelivered.", e);
+        } finally {
+            closeSession(session);
+        }
+    }
+
+    /**
+     * Receives the next batch into the given list.
+     *
+     * @return whether any message was received.
+     */
+    private boolean receive(MessageConsumer consumer, List<Message> batch) throws JMSException {
+        Message message = consumer.receive(RECEIVE_TIMEOUT_MS);
+        if (message == null) {
+            return false;
+        }
+        batch.add(message);
+        long deadline = System.currentTimeMillis() + batchTimeout;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            message = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+            if (message == null) {
+                break;
+            }
+            batch.add(message);
+        }
+        return true;
+    }
+
+    private void processBatch(Session session, List<Message> batch, JMSAckTracker ackTracker) throws JMSException {
+        long first = 0;
+        for (Message message : batch) {
+            long number = ackTracker.delivered(message);
+            if (first == 0) {
+                first = number;
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                processor.process(batch.get(i));
+            } catch (JMSException | RuntimeException e) {
+                metrics.failed();
+                if (transacted) {
+                    log.error("Error while processing a JMS message from destination: " + destination + ", the "
+                            + "transaction of " + batch.size() + " messages is rolled back.", e);
+                    session.rollback();
+                    ackTracker.reset();
+                    metrics.rolledBack();
+                    return;
+                }
+                ackTracker.failed();
+                log.error("Error while processing a JMS message from destination: " + destination + ", the "
+                        + "unacknowledged messages of the session will be redelivered.", e);
+                session.recover();
+                ackTracker.reset();
+                metrics.recovered();
+                return;
+            }
+            ackTracker.processed(first + i);
+        }
+        if (transacted) {
+            long start = System.nanoTime();
+            session.commit();
+            metrics.committed(batch.size(), System.nanoTime() - start);
+            ackTracker.reset();
+        }
+    }
+
+    private void acknowledge(JMSAckTracker ackTracker, boolean force) throws JMSException {
+        int acknowledged = ackTracker.acknowledgeIfDue(force);
+        if (acknowledged > 0) {
+            metrics.acknowledged(acknowledged);
+        }
+    }
+
+    private void closeSession(Session session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.close();
+        } catch (JMSException e) {
+            log.debug("Error while closing the JMS session", e);
+        }
+    }
+
+    /**
+     * How the messages received by the consumer are acknowledged.
+     */
+    public enum AcknowledgementMode {
+        AUTO, CLIENT, DUPS_OK;
+
+        public static AcknowledgementMode fromString(String mode) {
+            return valueOf(mode.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+}
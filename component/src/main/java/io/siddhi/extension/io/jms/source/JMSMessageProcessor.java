@@ -21,45 +21,79 @@ package io.siddhi.extension.io.jms.source;
 import io.siddhi.core.config.SiddhiAppContext;
 import io.siddhi.core.stream.input.source.SourceEventListener;
 import io.siddhi.extension.io.jms.source.exception.JMSInputAdaptorRuntimeException;
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
+import io.siddhi.extension.io.jms.util.JMSEnvelopeUtil;
 import org.wso2.transport.jms.callback.JMSCallback;
 import org.wso2.transport.jms.contract.JMSListener;
-import org.wso2.transport.jms.exception.JMSConnectorException;
-import org.wso2.transport.jms.utils.JMSConstants;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
-import javax.jms.Destination;
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.MapMessage;
 import javax.jms.Message;
-import javax.jms.Queue;
 import javax.jms.TextMessage;
-import javax.jms.Topic;
 
 /**
  * This processes the JMS messages using a pausable thread pool.
  */
 public class JMSMessageProcessor implements JMSListener {
+    public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
     private SourceEventListener sourceEventListener;
     private boolean paused;
     private ReentrantLock lock;
     private Condition condition;
-    private String[] requestedTransportPropertyNames;
+    private JMSTransportHeaderExtractor headerExtractor;
+    private JMSSourceMetrics metrics;
+    private int maxDecompressedSize;
 
     public JMSMessageProcessor(SourceEventListener sourceEventListener, SiddhiAppContext
             executionPlanContext, String[] requestedTransportPropertyNames) {
+        this(sourceEventListener, executionPlanContext, requestedTransportPropertyNames, null);
+    }
+
+    public JMSMessageProcessor(SourceEventListener sourceEventListener, SiddhiAppContext
+            executionPlanContext, String[] requestedTransportPropertyNames, JMSSourceMetrics metrics) {
+        this(sourceEventListener, executionPlanContext, requestedTransportPropertyNames, metrics,
+                DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    public JMSMessageProcessor(SourceEventListener sourceEventListener, SiddhiAppContext executionPlanContext,
+                               String[] requestedTransportPropertyNames, JMSSourceMetrics metrics,
+                               int maxDecompressedSize) {
         this.sourceEventListener = sourceEventListener;
+        this.metrics = metrics;
+        this.maxDecompressedSize = maxDecompressedSize;
         lock = new ReentrantLock();
         condition = lock.newCondition();
-        this.requestedTransportPropertyNames = requestedTransportPropertyNames;
+        this.headerExtractor = new JMSTransportHeaderExtractor(requestedTransportPropertyNames);
     }
 
     @Override
     public void onMessage(Message message, JMSCallback jmsCallback) {
+        awaitResume();
+        try {
+            process(message);
+            // ACK only if the event is processed i.e: no exceptions thrown from the onEvent method.
+            if (jmsCallback != null) {
+                jmsCallback.done(true);
+            }
+        } catch (JMSException e) {
+            throw new JMSInputAdaptorRuntimeException("Failed to process JMS message for the stream: "
+                    + sourceEventListener.getStreamDefinition().getId(), e);
+        }
+    }
+
+    /**
+     * Blocks the calling consumer thread while the source is paused.
+     */
+    void awaitResume() {
         if (paused) { //spurious wakeup condition is deliberately traded off for performance
             lock.lock();
             try {
@@ -70,140 +104,119 @@ public class JMSMessageProcessor implements JMSListener {
                 lock.unlock();
             }
         }
-        try {
-            if (message instanceof TextMessage) {
-                String[] transportProperties = populateTransportHeaders(message);
-                String event = ((TextMessage) message).getText();
-                sourceEventListener.onEvent(event, transportProperties);
-            } else if (message instanceof MapMessage) {
-                String[] transportProperties = populateTransportHeaders(message);
-                Map<String, Object> event = new HashMap<>();
-                MapMessage mapEvent = (MapMessage) message;
-                Enumeration<String> mapNames = mapEvent.getMapNames();
-                while (mapNames.hasMoreElements()) {
-                    String key = mapNames.nextElement();
-                    event.put(key, mapEvent.getObject(key));
-                }
-                sourceEventListener.onEvent(event, transportProperties);
-            } else if (message instanceof ByteBuffer) {
-                String[] transportProperties = populateTransportHeaders(message);
-                sourceEventListener.onEvent(message, transportProperties);
-            } else {
-                throw new JMSInputAdaptorRuntimeException("The message type of the JMS message " + message.getClass()
-                        + " is not supported!");
-            }
-            // ACK only if the event is processed i.e: no exceptions thrown from the onEvent method.
-            if (jmsCallback != null) {
-                jmsCallback.done(true);
-            }
-        } catch (JMSConnectorException | JMSException e) {
-            throw new JMSInputAdaptorRuntimeException("Failed to process JMS message for the stream: "
-                    + sourceEventListener.getStreamDefinition().getId(), e);
-        }
     }
 
-    private String[] populateTransportHeaders(Message message) throws JMSException, JMSConnectorException {
-        if (requestedTransportPropertyNames.length > 0) {
-            //cannot be null according to siddhi impl
-            String[] properties = new String[requestedTransportPropertyNames.length];
-            int i = 0;
-            for (String property : requestedTransportPropertyNames) {
-                switch (property) {
-                    case JMSConstants.JMS_REPLY_TO: {
-                        if (message.getJMSReplyTo() != null) {
-                            properties[i] = getDestinationName(message.getJMSReplyTo());
-                            i++;
-                        }
-                        break;
-                    }
-                    case JMSConstants.JMS_DESTINATION: {
-                        if (message.getJMSDestination() != null) {
-                            properties[i] = getDestinationName(message.getJMSDestination());
-                            i++;
-                        }
-                        break;
-                    }
-                    case JMSConstants.JMS_DELIVERY_MODE: {
-                        properties[i] = String.valueOf(message.getJMSDeliveryMode());
-                        i++;
-                        break;
-                    }
-                    case JMSConstants.JMS_CORRELATION_ID: {
-                        properties[i] = message.getJMSCorrelationID();
-                        i++;
-                        break;
-                    }
-                    case JMSConstants.JMS_EXPIRATION: {
-                        properties[i] = String.valueOf(message.getJMSExpiration());
-                        i++;
-                        break;
-                    }
-                    case JMSConstants.JMS_MESSAGE_ID: {
-                        properties[i] = message.getJMSMessageID();
-                        i++;
-                        break;
-                    }
-                    case JMSConstants.JMS_PRIORITY: {
-                        properties[i] = String.valueOf(message.getJMSPriority());
-                        i++;
-                        break;
-                    }
-                    case JMSConstants.JMS_REDELIVERED: {
-                        properties[i] = String.valueOf(message.getJMSRedelivered());
-                        i++;
-                        break;
-                    }
-                    case JMSConstants.JMS_TIMESTAMP: {
-                        properties[i] = String.valueOf(message.getJMSTimestamp());
-                        i++;
-                        break;
-                    }
-                    case JMSConstants.JMS_TYPE: {
-                        properties[i] = message.getJMSType();
-                        i++;
-                        break;
-                    }
-                    default: {
-                        if (message.getStringProperty(property) == null) {
-                            throw new JMSInputAdaptorRuntimeException(String.format("Specified property: %s is "
-                                    + "not available in the message", property));
-                        }
-                    }
-                }
+    /**
+     * Passes the events of the message to the source event listener, without acknowledging the message.
+     *
+     * @throws JMSException if the message cannot be read.
+     */
+    void process(Message message) throws JMSException {
+        if (metrics != null) {
+            metrics.received(message.getJMSRedelivered());
+        }
+        if (message instanceof BytesMessage && (message.propertyExists(JMSCompressionCodec.CODEC_PROPERTY)
+                || message.propertyExists(JMSEnvelopeUtil.EVENT_COUNT_PROPERTY))) {
+            String[] transportProperties = headerExtractor.extract(message);
+            deliver(message, readPayload((BytesMessage) message), transportProperties);
+        } else if (message instanceof TextMessage) {
+            String[] transportProperties = headerExtractor.extract(message);
+            String event = ((TextMessage) message).getText();
+            deliver(message, event, transportProperties);
+        } else if (message instanceof MapMessage) {
+            String[] transportProperties = headerExtractor.extract(message);
+            Map<String, Object> event = new HashMap<>();
+            MapMessage mapEvent = (MapMessage) message;
+            Enumeration<String> mapNames = mapEvent.getMapNames();
+            while (mapNames.hasMoreElements()) {
+                String key = mapNames.nextElement();
+                event.put(key, mapEvent.getObject(key));
             }
-            return properties;
+            sourceEventListener.onEvent(event, transportProperties);
+        } else if (message instanceof BytesMessage) {
+            String[] transportProperties = headerExtractor.extract(message);
+            sourceEventListener.onEvent(readBytes((BytesMessage) message), transportProperties);
         } else {
-            return new String[0];
+            throw new JMSInputAdaptorRuntimeException("The message type of the JMS message " + message.getClass()
+                    + " is not supported!");
         }
     }
 
     /**
-     * Returns the name of the destination. The destination can be either a {@link Topic} or {@link Queue}
-     * destination.
-     * <p>
-     * Provided {@link Destination} should be not null.
-     *
-     * @param jmsDestination {@link Destination}.
-     * @return name of the destination.
-     * @throws JMSConnectorException throws when there is an unknown {@link Destination} type is provided or
-     *                               JMS error when trying to retrieve the destination name.
+     * Passes the payload to the source event listener, unpacking it first if the message is an envelope of events
+     * packed by the JMS sink.
      */
-    private String getDestinationName(Destination jmsDestination) throws JMSConnectorException {
-
-        String destinationAsString;
+    private void deliver(Message message, Object payload, String[] transportProperties) throws JMSException {
+        if (!message.propertyExists(JMSEnvelopeUtil.EVENT_COUNT_PROPERTY)) {
+            sourceEventListener.onEvent(payload, transportProperties);
+            return;
+        }
+        // the event count is checked against the size of the envelope when unpacking, as it comes with the message
+        Object[] events;
         try {
-            if (jmsDestination instanceof Queue) {
-                destinationAsString = ((Queue) jmsDestination).getQueueName();
-            } else if (jmsDestination instanceof Topic) {
-                destinationAsString = ((Topic) jmsDestination).getTopicName();
+            int eventCount = message.getIntProperty(JMSEnvelopeUtil.EVENT_COUNT_PROPERTY);
+            if (payload instanceof String) {
+                String delimiter = message.getStringProperty(JMSEnvelopeUtil.DELIMITER_PROPERTY);
+                events = JMSEnvelopeUtil.unpackText((String) payload,
+                        delimiter == null ? JMSEnvelopeUtil.DEFAULT_DELIMITER : delimiter, eventCount);
             } else {
-                throw new JMSConnectorException("Unknown JMS destination type. [ " + jmsDestination + " ]");
+                events = JMSEnvelopeUtil.unpackBytes((ByteBuffer) payload, eventCount);
             }
-            return destinationAsString;
-        } catch (JMSException e) {
-            throw new JMSConnectorException("Error occurred while retrieving the destination name for " +
-                    "JMS Destination [ " + jmsDestination + " ]", e);
+        } catch (IllegalArgumentException e) {
+            throw new JMSInputAdaptorRuntimeException("Invalid envelope received for the stream: "
+                    + sourceEventListener.getStreamDefinition().getId() + ". " + e.getMessage(), e);
+        }
+        for (Object event : events) {
+            sourceEventListener.onEvent(event, transportProperties);
+        }
+    }
+
+    /**
+     * Reads the body of a plain BytesMessage into a buffer of its own, as source mappers and event handlers may keep
+     * the payload after onEvent returns.
+     */
+    private ByteBuffer readBytes(BytesMessage message) throws JMSException {
+        long length = message.getBodyLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new JMSInputAdaptorRuntimeException("The JMS BytesMessage of " + length + " bytes received for "
+                    + "the stream: " + sourceEventListener.getStreamDefinition().getId() + " is too large.");
+        }
+        byte[] body = new byte[(int) length];
+        int read = length == 0 ? 0 : message.readBytes(body);
+        return ByteBuffer.wrap(body, 0, Math.max(read, 0));
+    }
+
+    /**
+     * Reads the payload of a BytesMessage published by the JMS sink, decompressing it if needed. Text payloads are
+     * returned as a String and binary payloads as a ByteBuffer.
+     */
+    private Object readPayload(BytesMessage message) throws JMSException {
+        String codecName = message.getStringProperty(JMSCompressionCodec.CODEC_PROPERTY);
+        if (codecName == null) {
+            // an envelope of events which was not compressed
+            codecName = JMSCompressionCodec.NONE.getName();
+        }
+        JMSCompressionCodec codec;
+        try {
+            codec = JMSCompressionCodec.fromString(codecName);
+        } catch (IllegalArgumentException e) {
+            throw new JMSInputAdaptorRuntimeException("Unsupported compression codec '" + codecName + "' of the "
+                    + "JMS message for the stream: " + sourceEventListener.getStreamDefinition().getId(), e);
+        }
+        byte[] body = new byte[(int) message.getBodyLength()];
+        message.readBytes(body);
+        byte[] payload;
+        try {
+            payload = codec.decompress(body, maxDecompressedSize);
+        } catch (IOException e) {
+            throw new JMSInputAdaptorRuntimeException("Failed to decompress the " + codecName + " compressed JMS "
+                    + "message for the stream: " + sourceEventListener.getStreamDefinition().getId(), e);
+        }
+        if (JMSCompressionCodec.PAYLOAD_TYPE_TEXT.equals(
+                message.getStringProperty(JMSCompressionCodec.PAYLOAD_TYPE_PROPERTY))) {
+            return new String(payload, StandardCharsets.UTF_8);
         }
+        return ByteBuffer.wrap(payload);
     }
 
     void pause() {
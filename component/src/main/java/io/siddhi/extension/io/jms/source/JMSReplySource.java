@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.source;
+
+import io.siddhi.annotation.Example;
+import io.siddhi.annotation.Extension;
+import io.siddhi.annotation.Parameter;
+import io.siddhi.annotation.util.DataType;
+import io.siddhi.core.config.SiddhiAppContext;
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.stream.ServiceDeploymentInfo;
+import io.siddhi.core.stream.input.source.Source;
+import io.siddhi.core.stream.input.source.SourceEventListener;
+import io.siddhi.core.util.config.ConfigReader;
+import io.siddhi.core.util.snapshot.state.State;
+import io.siddhi.core.util.snapshot.state.StateFactory;
+import io.siddhi.core.util.transport.OptionHolder;
+import io.siddhi.extension.io.jms.util.JMSOptionsMapper;
+import io.siddhi.extension.io.jms.util.JMSReplyRegistry;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Source receiving the replies to the requests sent by a JMS sink in request-reply mode.
+ */
+@Extension(
+        name = "jms-reply",
+        namespace = "source",
+        description = "JMS reply source receives the replies to the requests sent by the JMS sink with the same "
+                + "'sink.id'. The sink consumes the replies on its own connection and matches them to their "
+                + "requests by 'JMSCorrelationID', and this source maps them into its stream like the JMS source "
+                + "does. The correlation id of a reply is available as the 'JMS_CORRELATION_ID' transport property.",
+        parameters = {
+                @Parameter(name = JMSOptionsMapper.SINK_ID,
+                        description = "The 'sink.id' of the JMS sink sending the requests.",
+                        type = DataType.STRING)
+        },
+        examples = {
+                @Example(description = "This example sends every event of 'requestStream' as a request, and "
+                        + "receives the replies in 'replyStream', along with the correlation id of their requests.",
+                        syntax = "@sink(type='jms', sink.id='enrich', @map(type='json'), "
+                                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                                + "provider.url='tcp://localhost:61616',"
+                                + "destination='ENRICH_REQUESTS'"
+                                + ")\n"
+                                + "define stream requestStream (name string, age int);\n"
+                                + "@source(type='jms-reply', sink.id='enrich', @map(type='json', "
+                                + "@attributes(correlationId='trp:JMS_CORRELATION_ID', name='$.name', "
+                                + "country='$.country')))\n"
+                                + "define stream replyStream (correlationId string, name string, country string);")
+        }
+)
+public class JMSReplySource extends Source {
+    private String registryKey;
+    private JMSMessageProcessor jmsMessageProcessor;
+
+    @Override
+    public StateFactory init(SourceEventListener sourceEventListener, OptionHolder optionHolder,
+                             String[] requestedTransportPropertyNames, ConfigReader configReader,
+                             SiddhiAppContext siddhiAppContext) {
+        this.registryKey = JMSReplyRegistry.keyOf(siddhiAppContext.getName(),
+                optionHolder.validateAndGetStaticValue(JMSOptionsMapper.SINK_ID));
+        this.jmsMessageProcessor = new JMSMessageProcessor(sourceEventListener, siddhiAppContext,
+                requestedTransportPropertyNames);
+        return null;
+    }
+
+    @Override
+    public void connect(ConnectionCallback connectionCallback, State state) throws ConnectionUnavailableException {
+        JMSReplyRegistry.register(registryKey, jmsMessageProcessor);
+    }
+
+    @Override
+    protected ServiceDeploymentInfo exposeServiceDeploymentInfo() {
+        return null;
+    }
+
+    @Override
+    public Class[] getOutputEventClasses() {
+        return new Class[]{String.class, Map.class, ByteBuffer.class};
+    }
+
+    @Override
+    public void disconnect() {
+        JMSReplyRegistry.unregister(registryKey, jmsMessageProcessor);
+        jmsMessageProcessor.disconnect();
+    }
+
+    @Override
+    public void destroy() {
+        // disconnect() gets called before destroy() which does the cleanup destroy() needs
+    }
+
+    @Override
+    public void pause() {
+        jmsMessageProcessor.pause();
+    }
+
+    @Override
+    public void resume() {
+        jmsMessageProcessor.resume();
+    }
+}
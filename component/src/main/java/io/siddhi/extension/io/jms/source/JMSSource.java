@@ -24,6 +24,7 @@ import io.siddhi.annotation.Parameter;
 import io.siddhi.annotation.util.DataType;
 import io.siddhi.core.config.SiddhiAppContext;
 import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.stream.ServiceDeploymentInfo;
 import io.siddhi.core.stream.input.source.Source;
 import io.siddhi.core.stream.input.source.SourceEventListener;
@@ -32,15 +33,31 @@ import io.siddhi.core.util.snapshot.state.State;
 import io.siddhi.core.util.snapshot.state.StateFactory;
 import io.siddhi.core.util.transport.OptionHolder;
 import io.siddhi.extension.io.jms.source.exception.JMSInputAdaptorRuntimeException;
+import io.siddhi.extension.io.jms.util.JMSMetricsUtil;
 import io.siddhi.extension.io.jms.util.JMSOptionsMapper;
+import io.siddhi.extension.io.jms.util.JMSSessionFactory;
 import org.apache.log4j.Logger;
 import org.wso2.transport.jms.contract.JMSServerConnector;
 import org.wso2.transport.jms.exception.JMSConnectorException;
 import org.wso2.transport.jms.receiver.JMSServerConnectorImpl;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.management.ObjectName;
+
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ACKNOWLEDGEMENT_MODE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ACK_BATCH_INTERVAL;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.ACK_BATCH_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.BATCH_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.BATCH_TIMEOUT;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DECOMPRESSION_MAX_SIZE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.DESTINATION;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.PARAM_SUB_DURABLE;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.RETRY_INTERVAL;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.TRANSACTED;
+import static io.siddhi.extension.io.jms.util.JMSOptionsMapper.WORKER_COUNT;
 
 /**
  * JMS Source implementation.
@@ -49,7 +66,10 @@ import java.util.Map;
         name = "jms",
         namespace = "source",
         description = "JMS Source allows users to subscribe to a JMS broker and receive JMS messages. It has the "
-                + "ability to receive Map messages and Text messages.",
+                + "ability to receive Map messages, Text messages and Bytes messages, the latter being passed to the "
+                + "mapper as a ByteBuffer of their own. Messages compressed by the JMS sink's 'compression' option "
+                + "are decompressed transparently, and envelopes packed by its 'envelope.size' option are unpacked "
+                + "into their events.",
         parameters = {
                 @Parameter(name = JMSOptionsMapper.DESTINATION,
                         description = "Queue/Topic name which JMS Source should subscribe to",
@@ -118,7 +138,65 @@ import java.util.Map;
                         description = "Connection factory nature for the broker.",
                         type = DataType.STRING,
                         optional = true,
-                        defaultValue = "default")
+                        defaultValue = "default"),
+                @Parameter(name = JMSOptionsMapper.BATCH_SIZE,
+                        description = "Maximum number of messages each worker passes to Siddhi as one batch. When "
+                                + "this is larger than 1, every worker receives on its own client acknowledged "
+                                + "session, collecting messages until either the batch size or the batch timeout is "
+                                + "reached, and acknowledges the whole batch once all its events are processed. A "
+                                + "batch which fails to be processed is redelivered. Durable subscriptions are not "
+                                + "supported in this mode.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "1"),
+                @Parameter(name = JMSOptionsMapper.BATCH_TIMEOUT,
+                        description = "Maximum time in milliseconds a worker waits for more messages after the "
+                                + "first message of a batch. Only applicable when 'batch.size' is larger than 1.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "100"),
+                @Parameter(name = JMSOptionsMapper.TRANSACTED,
+                        description = "Receive messages in a transacted session. Every batch, as bounded by "
+                                + "'batch.size' and 'batch.timeout', is committed once all its events are processed "
+                                + "and rolled back for redelivery as soon as one of them fails. The 'batch.timeout' "
+                                + "hence bounds the time between commits. Cannot be combined with an "
+                                + "'acknowledgement.mode' other than 'auto', and durable subscriptions are not "
+                                + "supported in this mode.",
+                        type = DataType.BOOL,
+                        optional = true,
+                        defaultValue = "false"),
+                @Parameter(name = JMSOptionsMapper.ACKNOWLEDGEMENT_MODE,
+                        description = "How received messages are acknowledged. This can be 'auto', 'client' or "
+                                + "'dups_ok'. With 'auto' every message, or every batch when 'batch.size' is larger "
+                                + "than 1, is acknowledged once processed. With 'client' messages are acknowledged "
+                                + "once 'ack.batch.size' of them are processed or the oldest unacknowledged message "
+                                + "is older than 'ack.batch.interval', and never past a message which failed to be "
+                                + "processed. With 'dups_ok' the broker acknowledges lazily, and messages may be "
+                                + "redelivered after a failure. When a message fails to be processed in 'client' or "
+                                + "'dups_ok' mode, every unacknowledged message of its session is redelivered. "
+                                + "Durable subscriptions are not supported in 'client' and 'dups_ok' modes.",
+                        type = DataType.STRING,
+                        optional = true,
+                        defaultValue = "auto"),
+                @Parameter(name = JMSOptionsMapper.ACK_BATCH_SIZE,
+                        description = "Number of processed messages after which they are acknowledged at once. Only "
+                                + "applicable when 'acknowledgement.mode' is 'client'.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "100"),
+                @Parameter(name = JMSOptionsMapper.ACK_BATCH_INTERVAL,
+                        description = "Maximum time in milliseconds a processed message is left unacknowledged. Only "
+                                + "applicable when 'acknowledgement.mode' is 'client'.",
+                        type = DataType.LONG,
+                        optional = true,
+                        defaultValue = "1000"),
+                @Parameter(name = JMSOptionsMapper.DECOMPRESSION_MAX_SIZE,
+                        description = "Maximum size in bytes a message body compressed by the JMS sink may "
+                                + "decompress to. Messages which exceed it fail to be processed instead of "
+                                + "exhausting the memory.",
+                        type = DataType.INT,
+                        optional = true,
+                        defaultValue = "67108864")
         },
         examples = {
                 @Example(description = "This example shows how to connect to an ActiveMQ topic and "
@@ -138,6 +216,17 @@ import java.util.Map;
                                 + "provider.url='tcp://localhost:61616',"
                                 + "destination='DAS_JMS_TEST' "
                                 + ")\n" +
+                                "define stream inputStream (name string, age int, country string);"),
+                @Example(description = "This example shows how to receive messages from an ActiveMQ queue in "
+                        + "batches of up to 500 messages, each batch being acknowledged once its events are "
+                        + "processed.",
+                        syntax = "@source(type='jms', @map(type='json'), "
+                                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                                + "provider.url='tcp://localhost:61616',"
+                                + "destination='DAS_JMS_TEST', "
+                                + "batch.size='500', "
+                                + "batch.timeout='50'"
+                                + ")\n" +
                                 "define stream inputStream (name string, age int, country string);")
         }
 )
@@ -147,6 +236,9 @@ public class JMSSource extends Source {
     private OptionHolder optionHolder;
     private JMSServerConnector jmsServerConnector;
     private JMSMessageProcessor jmsMessageProcessor;
+    private JMSBatchConsumer batchConsumer;
+    private JMSSourceMetrics metrics;
+    private ObjectName metricsName;
 
     @Override
     public StateFactory init(SourceEventListener sourceEventListener, OptionHolder optionHolder,
@@ -156,8 +248,59 @@ public class JMSSource extends Source {
         this.optionHolder = optionHolder;
         Map<String, String> properties = initJMSProperties();
 
+        String streamId = sourceEventListener.getStreamDefinition().getId();
+        metrics = new JMSSourceMetrics();
+        metricsName = JMSMetricsUtil.register("Source", siddhiAppContext.getName(), streamId,
+                Integer.toHexString(System.identityHashCode(this)), metrics);
+        int maxDecompressedSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(DECOMPRESSION_MAX_SIZE,
+                Integer.toString(JMSMessageProcessor.DEFAULT_MAX_DECOMPRESSED_SIZE)));
+        if (maxDecompressedSize < 1) {
+            throw new SiddhiAppCreationException("'" + DECOMPRESSION_MAX_SIZE + "' of the JMS source on stream '"
+                    + streamId + "' should be positive, but found " + maxDecompressedSize + ".");
+        }
         jmsMessageProcessor = new JMSMessageProcessor(sourceEventListener, siddhiAppContext,
-                requestedTransportPropertyNames);
+                requestedTransportPropertyNames, metrics, maxDecompressedSize);
+        int batchSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(BATCH_SIZE, "1"));
+        long batchTimeout = Long.parseLong(optionHolder.validateAndGetStaticValue(BATCH_TIMEOUT, "100"));
+        if (batchSize < 1 || batchTimeout < 1) {
+            throw new SiddhiAppCreationException("'" + BATCH_SIZE + "' and '" + BATCH_TIMEOUT + "' of the JMS source "
+                    + "on stream '" + streamId + "' should be positive, but found " + batchSize + " and "
+                    + batchTimeout + ".");
+        }
+        String ackMode = optionHolder.validateAndGetStaticValue(ACKNOWLEDGEMENT_MODE, "auto");
+        JMSBatchConsumer.AcknowledgementMode acknowledgementMode;
+        try {
+            acknowledgementMode = JMSBatchConsumer.AcknowledgementMode.fromString(ackMode);
+        } catch (IllegalArgumentException e) {
+            throw new SiddhiAppCreationException("'" + ACKNOWLEDGEMENT_MODE + "' of the JMS source on stream '"
+                    + streamId + "' should be one of 'auto', 'client' or 'dups_ok', but found '" + ackMode + "'.");
+        }
+        int ackBatchSize = Integer.parseInt(optionHolder.validateAndGetStaticValue(ACK_BATCH_SIZE, "100"));
+        long ackInterval = Long.parseLong(optionHolder.validateAndGetStaticValue(ACK_BATCH_INTERVAL, "1000"));
+        if (ackBatchSize < 1 || ackInterval < 1) {
+            throw new SiddhiAppCreationException("'" + ACK_BATCH_SIZE + "' and '" + ACK_BATCH_INTERVAL + "' of the "
+                    + "JMS source on stream '" + streamId + "' should be positive, but found " + ackBatchSize
+                    + " and " + ackInterval + ".");
+        }
+        boolean transacted = Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(TRANSACTED, "false"));
+        if (transacted && acknowledgementMode != JMSBatchConsumer.AcknowledgementMode.AUTO) {
+            throw new SiddhiAppCreationException("'" + TRANSACTED + "' of the JMS source on stream '" + streamId
+                    + "' cannot be combined with '" + ACKNOWLEDGEMENT_MODE + "' '" + ackMode + "'.");
+        }
+        if (batchSize > 1 || transacted || acknowledgementMode != JMSBatchConsumer.AcknowledgementMode.AUTO) {
+            if (Boolean.parseBoolean(optionHolder.validateAndGetStaticValue(PARAM_SUB_DURABLE, "false"))) {
+                throw new SiddhiAppCreationException("'" + PARAM_SUB_DURABLE + "' of the JMS source on stream '"
+                        + streamId + "' is not supported along with '" + BATCH_SIZE + "', '" + TRANSACTED
+                        + "' or '" + ACKNOWLEDGEMENT_MODE + "'.");
+            }
+            int workerCount = Integer.parseInt(optionHolder.validateAndGetStaticValue(WORKER_COUNT, "1"));
+            long retryInterval = Long.parseLong(optionHolder.validateAndGetStaticValue(RETRY_INTERVAL, "10000"));
+            batchConsumer = new JMSBatchConsumer(siddhiAppContext.getName() + "-" + streamId,
+                    new JMSSessionFactory(properties), optionHolder.validateAndGetStaticValue(DESTINATION),
+                    workerCount, batchSize, batchTimeout, retryInterval, transacted, acknowledgementMode,
+                    ackBatchSize, ackInterval, jmsMessageProcessor, metrics);
+            return null;
+        }
         try {
             jmsServerConnector = new JMSServerConnectorImpl(null, properties, jmsMessageProcessor);
         } catch (JMSConnectorException e) {
@@ -172,6 +315,10 @@ public class JMSSource extends Source {
     @Override
     public void connect(ConnectionCallback connectionCallback, State state) throws ConnectionUnavailableException {
         //ConnectionCallback is not used as re-connection is handled by carbon transport.
+        if (batchConsumer != null) {
+            batchConsumer.start();
+            return;
+        }
         try {
             jmsServerConnector.start();
         } catch (JMSConnectorException e) {
@@ -188,7 +335,7 @@ public class JMSSource extends Source {
 
     @Override
     public Class[] getOutputEventClasses() {
-        return new Class[]{String.class, Map.class};
+        return new Class[]{String.class, Map.class, ByteBuffer.class};
     }
 
     @Override
@@ -197,6 +344,9 @@ public class JMSSource extends Source {
             if (jmsServerConnector != null) {
                 jmsServerConnector.stop();
             }
+            if (batchConsumer != null) {
+                batchConsumer.stop();
+            }
             if (jmsMessageProcessor != null) {
                 jmsMessageProcessor.disconnect();
             }
@@ -208,6 +358,7 @@ public class JMSSource extends Source {
     @Override
     public void destroy() {
         // disconnect() gets called before destroy() which does the cleanup destroy() needs
+        JMSMetricsUtil.unregister(metricsName);
     }
 
     @Override
@@ -236,8 +387,10 @@ public class JMSSource extends Source {
                 transportProperties.put(carbonPropertyMapping.get(requiredOption),
                         optionHolder.validateAndGetStaticValue(requiredOption)));
         // getting optional values
+        List<String> consumerOptions = JMSOptionsMapper.getSourceConsumerOptions();
         optionHolder.getStaticOptionsKeys().stream()
-                .filter(option -> !requiredOptions.contains(option) && !option.equals("type"))
+                .filter(option -> !requiredOptions.contains(option) && !option.equals("type")
+                        && !consumerOptions.contains(option))
                 .forEach(option -> transportProperties.put(
                         carbonPropertyMapping.get(option) == null ? option : carbonPropertyMapping.get(option),
                         optionHolder.validateAndGetStaticValue(option)));
@@ -0,0 +1,139 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.source;
+
+import io.siddhi.extension.io.jms.util.JMSLatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the consume path of a {@link JMSSource}.
+ */
+public class JMSSourceMetrics implements JMSSourceMetricsMBean {
+    private final LongAdder received = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder acknowledgements = new LongAdder();
+    private final LongAdder acknowledgedMessages = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder committedMessages = new LongAdder();
+    private final LongAdder rolledBack = new LongAdder();
+    private final JMSLatencyHistogram commitLatency = new JMSLatencyHistogram();
+
+    void received(boolean redelivery) {
+        received.increment();
+        if (redelivery) {
+            redelivered.increment();
+        }
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    void recovered() {
+        recovered.increment();
+    }
+
+    void acknowledged(int messageCount) {
+        acknowledgements.increment();
+        acknowledgedMessages.add(messageCount);
+    }
+
+    void committed(int messageCount, long nanos) {
+        commits.increment();
+        committedMessages.add(messageCount);
+        commitLatency.record(nanos);
+    }
+
+    void rolledBack() {
+        rolledBack.increment();
+    }
+
+    @Override
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    @Override
+    public long getRedeliveredCount() {
+        return redelivered.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    @Override
+    public long getRecoveredCount() {
+        return recovered.sum();
+    }
+
+    @Override
+    public long getAcknowledgementCount() {
+        return acknowledgements.sum();
+    }
+
+    @Override
+    public long getAcknowledgedMessageCount() {
+        return acknowledgedMessages.sum();
+    }
+
+    @Override
+    public long getAcksSavedCount() {
+        return acknowledgedMessages.sum() - acknowledgements.sum();
+    }
+
+    @Override
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    @Override
+    public long getCommittedMessageCount() {
+        return committedMessages.sum();
+    }
+
+    @Override
+    public long getRollbackCount() {
+        return rolledBack.sum();
+    }
+
+    @Override
+    public void resetCommitLatency() {
+        commitLatency.reset();
+    }
+
+    @Override
+    public double getCommitLatencyMeanMicros() {
+        return commitLatency.getMeanMicros();
+    }
+
+    @Override
+    public long getCommitLatencyP99Micros() {
+        return commitLatency.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getCommitLatencyMaxMicros() {
+        return commitLatency.getMaxMicros();
+    }
+}
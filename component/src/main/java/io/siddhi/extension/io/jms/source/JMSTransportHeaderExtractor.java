@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.source;
+
+import io.siddhi.extension.io.jms.source.exception.JMSInputAdaptorRuntimeException;
+import org.wso2.transport.jms.utils.JMSConstants;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.Topic;
+
+/**
+ * Reads the transport properties requested by the source mapper from JMS messages.
+ * <p>
+ * The requested names are compiled once into an array holding an extractor per name, so that reading the properties
+ * of a message is a single pass over that array without comparing any names. Every value is written at the index of
+ * its name, and JMS headers which the message does not carry are left null. Names which are not JMS headers are read
+ * as message properties, which must be present. When no properties are requested nothing is read at all.
+ */
+final class JMSTransportHeaderExtractor {
+    private static final String[] NO_PROPERTIES = new String[0];
+    private final Extractor[] extractors;
+
+    JMSTransportHeaderExtractor(String[] requestedTransportPropertyNames) {
+        this.extractors = new Extractor[requestedTransportPropertyNames.length];
+        for (int i = 0; i < extractors.length; i++) {
+            extractors[i] = compile(requestedTransportPropertyNames[i]);
+        }
+    }
+
+    /**
+     * @return the requested properties of the message, in the order they were requested.
+     * @throws JMSException if a property cannot be read.
+     */
+    String[] extract(Message message) throws JMSException {
+        if (extractors.length == 0) {
+            return NO_PROPERTIES;
+        }
+        String[] properties = new String[extractors.length];
+        for (int i = 0; i < extractors.length; i++) {
+            properties[i] = extractors[i].extract(message);
+        }
+        return properties;
+    }
+
+    private static Extractor compile(String name) {
+        switch (name) {
+            case JMSConstants.JMS_REPLY_TO:
+                return message -> destinationName(message.getJMSReplyTo());
+            case JMSConstants.JMS_DESTINATION:
+                return message -> destinationName(message.getJMSDestination());
+            case JMSConstants.JMS_DELIVERY_MODE:
+                return message -> String.valueOf(message.getJMSDeliveryMode());
+            case JMSConstants.JMS_CORRELATION_ID:
+                return Message::getJMSCorrelationID;
+            case JMSConstants.JMS_EXPIRATION:
+                return message -> String.valueOf(message.getJMSExpiration());
+            case JMSConstants.JMS_MESSAGE_ID:
+                return Message::getJMSMessageID;
+            case JMSConstants.JMS_PRIORITY:
+                return message -> String.valueOf(message.getJMSPriority());
+            case JMSConstants.JMS_REDELIVERED:
+                return message -> String.valueOf(message.getJMSRedelivered());
+            case JMSConstants.JMS_TIMESTAMP:
+                return message -> String.valueOf(message.getJMSTimestamp());
+            case JMSConstants.JMS_TYPE:
+                return Message::getJMSType;
+            default:
+                return message -> {
+                    String value = message.getStringProperty(name);
+                    if (value == null) {
+                        throw new JMSInputAdaptorRuntimeException(String.format("Specified property: %s is not "
+                                + "available in the message", name));
+                    }
+                    return value;
+                };
+        }
+    }
+
+    /**
+     * Returns the name of the given {@link Topic} or {@link Queue}, or null if there is no destination.
+     */
+    private static String destinationName(Destination destination) throws JMSException {
+        if (destination == null) {
+            return null;
+        } else if (destination instanceof Queue) {
+            return ((Queue) destination).getQueueName();
+        } else if (destination instanceof Topic) {
+            return ((Topic) destination).getTopicName();
+        }
+        throw new JMSException("Unknown JMS destination type. [ " + destination + " ]");
+    }
+
+    /**
+     * Reads a single transport property of a message.
+     */
+    @FunctionalInterface
+    private interface Extractor {
+
+        String extract(Message message) throws JMSException;
+    }
+}
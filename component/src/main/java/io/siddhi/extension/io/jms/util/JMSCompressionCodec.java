@@ -0,0 +1,168 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Compression codecs applied to the body of the JMS messages published by the sink.
+ * <p>
+ * A compressed message is always a BytesMessage carrying the codec in the {@link #CODEC_PROPERTY} property and the
+ * type of the original payload in the {@link #PAYLOAD_TYPE_PROPERTY} property, so that the source can restore the
+ * payload regardless of the codec configured on its side.
+ */
+public enum JMSCompressionCodec {
+    NONE {
+        @Override
+        public byte[] compress(byte[] data, int offset, int length) {
+            return Arrays.copyOfRange(data, offset, offset + length);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int maxLength) {
+            return data;
+        }
+    },
+    GZIP {
+        @Override
+        public byte[] compress(byte[] data, int offset, int length) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(length / 4, 64));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE)) {
+                gzip.write(data, offset, length);
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int maxLength) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(initialCapacity(data.length, maxLength));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data), BUFFER_SIZE)) {
+                int read;
+                while ((read = gzip.read(buffer)) != -1) {
+                    checkLength(out.size() + (long) read, maxLength);
+                    out.write(buffer, 0, read);
+                }
+            }
+            return out.toByteArray();
+        }
+    },
+    DEFLATE {
+        @Override
+        public byte[] compress(byte[] data, int offset, int length) {
+            Deflater deflater = DEFLATERS.get();
+            deflater.reset();
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(length / 4, 64));
+            byte[] buffer = BUFFERS.get();
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int maxLength) throws IOException {
+            Inflater inflater = INFLATERS.get();
+            inflater.reset();
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(initialCapacity(data.length, maxLength));
+            byte[] buffer = BUFFERS.get();
+            try {
+                while (!inflater.finished()) {
+                    int read = inflater.inflate(buffer);
+                    if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated deflate compressed JMS message body.");
+                    }
+                    checkLength(out.size() + (long) read, maxLength);
+                    out.write(buffer, 0, read);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Invalid deflate compressed JMS message body.", e);
+            }
+            return out.toByteArray();
+        }
+    };
+
+    public static final String CODEC_PROPERTY = "SiddhiCompressionCodec";
+    public static final String PAYLOAD_TYPE_PROPERTY = "SiddhiPayloadType";
+    public static final String PAYLOAD_TYPE_TEXT = "text";
+    public static final String PAYLOAD_TYPE_BYTES = "bytes";
+    private static final int BUFFER_SIZE = 8192;
+    // the output of a decompression starts at up to 4 times the compressed size, and grows from there if needed
+    private static final int MAX_INITIAL_CAPACITY = 1024 * 1024;
+    private static final int MIN_INITIAL_CAPACITY = 64;
+    // deflaters hold native memory, so they are reused by each thread rather than created per message
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(Deflater::new);
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    /**
+     * Compresses the given range of bytes.
+     *
+     * @param data   bytes to compress.
+     * @param offset offset of the first byte.
+     * @param length number of bytes.
+     * @return the compressed bytes.
+     * @throws IOException if the bytes cannot be compressed.
+     */
+    public abstract byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Restores the bytes compressed by {@link #compress(byte[], int, int)}, failing as soon as they exceed the given
+     * length, so that a small message cannot expand into an arbitrarily large one. {@link #NONE} returns the given
+     * bytes as they are.
+     *
+     * @param data      compressed bytes.
+     * @param maxLength maximum number of decompressed bytes.
+     * @return the original bytes.
+     * @throws IOException if the bytes are not valid for the codec or decompress to more than the maximum length.
+     */
+    public abstract byte[] decompress(byte[] data, int maxLength) throws IOException;
+
+    public String getName() {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    public static JMSCompressionCodec fromString(String codec) {
+        return valueOf(codec.trim().toUpperCase(Locale.ENGLISH));
+    }
+
+    private static int initialCapacity(int compressedLength, int maxLength) {
+        long capacity = Math.min((long) compressedLength * 4, Math.min(maxLength, MAX_INITIAL_CAPACITY));
+        return (int) Math.max(capacity, Math.min(maxLength, MIN_INITIAL_CAPACITY));
+    }
+
+    private static void checkLength(long length, int maxLength) throws IOException {
+        if (length > maxLength) {
+            throw new IOException("The decompressed JMS message body exceeds the maximum of " + maxLength
+                    + " bytes.");
+        }
+    }
+}
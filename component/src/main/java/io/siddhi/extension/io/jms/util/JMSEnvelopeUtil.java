@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Format of the envelopes in which the JMS sink packs multiple events into a single JMS message.
+ * <p>
+ * Text events are joined with a delimiter into a single text payload, and binary events are written one after the
+ * other, each prefixed with its length as a 4 byte big-endian integer. Envelopes carry the number of events in the
+ * {@link #EVENT_COUNT_PROPERTY} property, and text envelopes also carry the delimiter in the
+ * {@link #DELIMITER_PROPERTY} property, so that the source can unpack them without any configuration.
+ */
+public final class JMSEnvelopeUtil {
+    public static final String EVENT_COUNT_PROPERTY = "SiddhiEnvelopeEventCount";
+    public static final String DELIMITER_PROPERTY = "SiddhiEnvelopeDelimiter";
+    public static final String DEFAULT_DELIMITER = "\u001E";
+    public static final int LENGTH_PREFIX_SIZE = 4;
+    public static final int MAX_EVENT_COUNT = 100000;
+
+    private JMSEnvelopeUtil() {
+    }
+
+    /**
+     * Splits a text envelope into its events. The event count is read from the message, so it is checked against
+     * the size of the envelope before anything is allocated.
+     *
+     * @param envelope   text envelope.
+     * @param delimiter  delimiter the events were joined with.
+     * @param eventCount number of events in the envelope.
+     * @return the events.
+     * @throws IllegalArgumentException if the envelope does not hold the given number of events.
+     */
+    public static String[] unpackText(String envelope, String delimiter, int eventCount) {
+        checkEventCount(eventCount);
+        if (delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Text envelope delimiter should not be empty.");
+        }
+        if (eventCount - 1 > envelope.length() / delimiter.length()) {
+            throw new IllegalArgumentException("Text envelope of " + envelope.length() + " characters cannot hold "
+                    + eventCount + " events.");
+        }
+        String[] events = new String[eventCount];
+        int start = 0;
+        for (int i = 0; i < eventCount - 1; i++) {
+            int end = envelope.indexOf(delimiter, start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Text envelope holds " + (i + 1) + " events, but "
+                        + eventCount + " were expected.");
+            }
+            events[i] = envelope.substring(start, end);
+            start = end + delimiter.length();
+        }
+        events[eventCount - 1] = envelope.substring(start);
+        return events;
+    }
+
+    /**
+     * Splits a binary envelope into its events. The returned buffers share the content of the envelope. The event
+     * count is read from the message, so it is checked against the size of the envelope before anything is
+     * allocated.
+     *
+     * @param envelope   binary envelope, read from its position to its limit.
+     * @param eventCount number of events in the envelope.
+     * @return the events.
+     * @throws IllegalArgumentException if the envelope does not hold the given number of events.
+     */
+    public static ByteBuffer[] unpackBytes(ByteBuffer envelope, int eventCount) {
+        checkEventCount(eventCount);
+        if (eventCount > envelope.remaining() / LENGTH_PREFIX_SIZE) {
+            throw new IllegalArgumentException("Binary envelope of " + envelope.remaining() + " bytes cannot hold "
+                    + eventCount + " events.");
+        }
+        ByteBuffer[] events = new ByteBuffer[eventCount];
+        ByteBuffer buffer = envelope.duplicate();
+        for (int i = 0; i < eventCount; i++) {
+            if (buffer.remaining() < LENGTH_PREFIX_SIZE) {
+                throw new IllegalArgumentException("Binary envelope holds " + i + " events, but " + eventCount
+                        + " were expected.");
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Event " + (i + 1) + " of the binary envelope has an invalid "
+                        + "length of " + length + " bytes.");
+            }
+            ByteBuffer event = buffer.slice();
+            ((Buffer) event).limit(length);
+            events[i] = event;
+            ((Buffer) buffer).position(buffer.position() + length);
+        }
+        return events;
+    }
+
+    private static void checkEventCount(int eventCount) {
+        if (eventCount < 1 || eventCount > MAX_EVENT_COUNT) {
+            throw new IllegalArgumentException("Envelope event count should be between 1 and " + MAX_EVENT_COUNT
+                    + ", but found " + eventCount + ".");
+        }
+    }
+}
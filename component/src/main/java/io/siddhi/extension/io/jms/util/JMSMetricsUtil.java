@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import org.apache.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers the JMS source and sink metrics as MBeans in the platform MBean server.
+ */
+public final class JMSMetricsUtil {
+    private static final Logger log = Logger.getLogger(JMSMetricsUtil.class);
+    private static final String DOMAIN = "io.siddhi.extension.io.jms";
+
+    private JMSMetricsUtil() {
+    }
+
+    /**
+     * Registers the given MBean, replacing a stale registration left behind under the same name.
+     *
+     * @param type      type of the component, e.g. Sink or Source.
+     * @param siddhiApp name of the Siddhi app.
+     * @param streamId  id of the stream the component is attached to.
+     * @param id        id distinguishing components attached to the same stream.
+     * @param mbean     the MBean.
+     * @return the registered name, or null if the MBean could not be registered.
+     */
+    public static ObjectName register(String type, String siddhiApp, String streamId, String id, Object mbean) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=" + type
+                    + ",siddhiApp=" + ObjectName.quote(siddhiApp)
+                    + ",stream=" + ObjectName.quote(streamId)
+                    + ",id=" + ObjectName.quote(id));
+            try {
+                mBeanServer.registerMBean(mbean, name);
+            } catch (InstanceAlreadyExistsException e) {
+                mBeanServer.unregisterMBean(name);
+                mBeanServer.registerMBean(mbean, name);
+            }
+            return name;
+        } catch (JMException e) {
+            log.warn("Unable to register the JMS " + type + " metrics of stream '" + streamId + "' in Siddhi app '"
+                    + siddhiApp + "' with JMX.", e);
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            log.debug("JMS metrics MBean " + name + " is already unregistered.");
+        } catch (JMException e) {
+            log.warn("Unable to unregister the JMS metrics MBean " + name, e);
+        }
+    }
+}
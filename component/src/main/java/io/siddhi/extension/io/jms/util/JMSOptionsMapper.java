@@ -42,6 +42,50 @@ public class JMSOptionsMapper {
     public static final String USE_RECEIVER = "use.receiver";
     public static final String PARAM_SUB_DURABLE = "subscription.durable";
     public static final String CONNECTION_FACTORY_NATURE = "connection.factory.nature";
+    public static final String BATCH_SIZE = "batch.size";
+    public static final String BATCH_TIMEOUT = "batch.timeout";
+    public static final String PUBLISHER_QUEUE_SIZE = "publisher.queue.size";
+    public static final String PUBLISHER_THREAD_COUNT = "publisher.thread.count";
+    public static final String PUBLISHER_THREAD_TYPE = "publisher.thread.type";
+    public static final String PUBLISHER_MAX_IN_FLIGHT = "publisher.max.in.flight";
+    public static final String PUBLISHER_QUEUE_FULL_POLICY = "publisher.queue.full.policy";
+    public static final String PUBLISHER_ORDERED = "publisher.ordered";
+    public static final String PUBLISHER_SESSION_PER_THREAD = "publisher.session.per.thread";
+    public static final String DESTINATION_CACHE_SIZE = "destination.cache.size";
+    public static final String DESTINATION_CACHE_TTL = "destination.cache.ttl";
+    public static final String ASYNC_SEND = "async.send";
+    public static final String ASYNC_SEND_WINDOW = "async.send.window";
+    public static final String COMPRESSION = "compression";
+    public static final String ENVELOPE_SIZE = "envelope.size";
+    public static final String ENVELOPE_TIMEOUT = "envelope.timeout";
+    public static final String ENVELOPE_DELIMITER = "envelope.delimiter";
+    public static final String EXACTLY_ONCE = "exactly.once";
+    public static final String EXACTLY_ONCE_MAX_UNCOMMITTED = "exactly.once.max.uncommitted";
+    public static final String PARTITION_KEY = "partition.key";
+    public static final String PARTITION_COUNT = "partition.count";
+    public static final String LOAD_BALANCE_STRATEGY = "load.balance.strategy";
+    public static final String BROKER_PROBE_INTERVAL = "broker.probe.interval";
+    public static final String RATE_LIMIT_MESSAGES = "rate.limit.messages";
+    public static final String RATE_LIMIT_BYTES = "rate.limit.bytes";
+    public static final String RATE_LIMIT_SCOPE = "rate.limit.scope";
+    public static final String RATE_LIMIT_ADAPTIVE = "rate.limit.adaptive";
+    public static final String RATE_LIMIT_LATENCY_THRESHOLD = "rate.limit.latency.threshold";
+    public static final String RATE_LIMIT_ERROR_THRESHOLD = "rate.limit.error.threshold";
+    public static final String SINK_ID = "sink.id";
+    public static final String REPLY_DESTINATION = "reply.destination";
+    public static final String REPLY_TIMEOUT = "reply.timeout";
+    public static final String REPLY_MAX_OUTSTANDING = "reply.max.outstanding";
+    public static final String METRICS_ENABLED = "metrics.enabled";
+    public static final String DRAIN_TIMEOUT = "drain.timeout";
+    public static final String SPOOL_DIRECTORY = "spool.directory";
+    public static final String SPOOL_SEGMENT_SIZE = "spool.segment.size";
+    public static final String SPOOL_MAX_SIZE = "spool.max.size";
+    public static final String SPOOL_DRAIN_INTERVAL = "spool.drain.interval";
+    public static final String TRANSACTED = "transacted";
+    public static final String ACKNOWLEDGEMENT_MODE = "acknowledgement.mode";
+    public static final String ACK_BATCH_SIZE = "ack.batch.size";
+    public static final String ACK_BATCH_INTERVAL = "ack.batch.interval";
+    public static final String DECOMPRESSION_MAX_SIZE = "decompression.max.size";
     /**
      * Returns the custom property map mapping the siddhi extension key name to JMS transport key.
      *
@@ -73,4 +117,31 @@ public class JMSOptionsMapper {
     public static List<String> getRequiredOptions() {
         return Arrays.asList(DESTINATION, FACTORY_INITIAL, PROVIDER_URL);
     }
+
+    /**
+     * Returns the options which configure the JMS sink publisher itself and are not passed to the JMS transport.
+     *
+     * @return list of publisher options.
+     */
+    public static List<String> getSinkPublisherOptions() {
+        return Arrays.asList(BATCH_SIZE, BATCH_TIMEOUT, PUBLISHER_QUEUE_SIZE, PUBLISHER_THREAD_COUNT,
+                PUBLISHER_THREAD_TYPE, PUBLISHER_MAX_IN_FLIGHT, PUBLISHER_QUEUE_FULL_POLICY, PUBLISHER_ORDERED,
+                PUBLISHER_SESSION_PER_THREAD, DESTINATION_CACHE_SIZE, DESTINATION_CACHE_TTL, ASYNC_SEND,
+                ASYNC_SEND_WINDOW, COMPRESSION, ENVELOPE_SIZE, ENVELOPE_TIMEOUT, ENVELOPE_DELIMITER, EXACTLY_ONCE,
+                EXACTLY_ONCE_MAX_UNCOMMITTED, PARTITION_KEY, PARTITION_COUNT, LOAD_BALANCE_STRATEGY,
+                BROKER_PROBE_INTERVAL, RATE_LIMIT_MESSAGES, RATE_LIMIT_BYTES, RATE_LIMIT_SCOPE, RATE_LIMIT_ADAPTIVE,
+                RATE_LIMIT_LATENCY_THRESHOLD, RATE_LIMIT_ERROR_THRESHOLD, SINK_ID, REPLY_DESTINATION, REPLY_TIMEOUT,
+                REPLY_MAX_OUTSTANDING, METRICS_ENABLED, DRAIN_TIMEOUT, SPOOL_DIRECTORY, SPOOL_SEGMENT_SIZE,
+                SPOOL_MAX_SIZE, SPOOL_DRAIN_INTERVAL);
+    }
+
+    /**
+     * Returns the options which configure the JMS source consumer itself and are not passed to the JMS transport.
+     *
+     * @return list of consumer options.
+     */
+    public static List<String> getSourceConsumerOptions() {
+        return Arrays.asList(BATCH_SIZE, BATCH_TIMEOUT, TRANSACTED, ACKNOWLEDGEMENT_MODE, ACK_BATCH_SIZE,
+                ACK_BATCH_INTERVAL, DECOMPRESSION_MAX_SIZE);
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+/**
+ * Maps partition keys to the shards of a partitioned destination.
+ * <p>
+ * Keys are hashed with the 64 bit FNV-1a hash of their characters, which unlike {@link Object#hashCode()} of
+ * arbitrary objects is stable across JVMs and releases, and the hash is mapped to a shard with the jump consistent
+ * hash of Lamping and Veach. The shard of a key therefore never changes for a given shard count, and when the shard
+ * count grows from n to n + 1 only 1 / (n + 1) of the keys move, all of them to the new shard.
+ */
+public final class JMSPartitionUtil {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long JUMP_MULTIPLIER = 2862933555777941757L;
+
+    private JMSPartitionUtil() {
+    }
+
+    /**
+     * @param key            partition key, which is mapped to shard 0 when null.
+     * @param partitionCount number of shards.
+     * @return the shard of the key, between 0 and the partition count, exclusive.
+     */
+    public static int partitionOf(String key, int partitionCount) {
+        if (key == null) {
+            return 0;
+        }
+        return jumpHash(hash(key), partitionCount);
+    }
+
+    /**
+     * @return the name of the shard of the destination.
+     */
+    public static String shardName(String destination, int partition) {
+        return destination + "." + partition;
+    }
+
+    static long hash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xFF)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static int jumpHash(long key, int buckets) {
+        long bucket = -1;
+        long next = 0;
+        while (next < buckets) {
+            bucket = next;
+            key = key * JUMP_MULTIPLIER + 1;
+            next = (long) ((bucket + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) bucket;
+    }
+}
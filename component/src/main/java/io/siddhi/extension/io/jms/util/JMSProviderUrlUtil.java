@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the provider URL option of the sink into the URLs of its brokers, and masks the credentials of the URLs
+ * before they are logged or exposed over JMX.
+ */
+public final class JMSProviderUrlUtil {
+    private static final Pattern USER_INFO = Pattern.compile("//[^/@?#()',]*@");
+    private static final Pattern PASSWORD_PARAMETER = Pattern.compile("(?i)\\b(password|passwd|pwd)=[^&'\")]*");
+
+    private JMSProviderUrlUtil() {
+    }
+
+    /**
+     * Splits a comma separated list of provider URLs, leaving the commas within parentheses, such as those of an
+     * ActiveMQ failover URL, in place.
+     *
+     * @param providerUrl comma separated provider URLs.
+     * @return the trimmed, non-empty URLs.
+     */
+    public static List<String> split(String providerUrl) {
+        List<String> providerUrls = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < providerUrl.length(); i++) {
+            char c = providerUrl.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                add(providerUrls, providerUrl.substring(start, i));
+                start = i + 1;
+            }
+        }
+        add(providerUrls, providerUrl.substring(start));
+        return providerUrls;
+    }
+
+    /**
+     * Replaces the user info and the password parameters of a provider URL with '***'.
+     *
+     * @param providerUrl provider URL, which may hold several nested URLs.
+     * @return the masked URL.
+     */
+    public static String mask(String providerUrl) {
+        if (providerUrl == null) {
+            return null;
+        }
+        String masked = USER_INFO.matcher(providerUrl).replaceAll("//***@");
+        return PASSWORD_PARAMETER.matcher(masked).replaceAll("$1=***");
+    }
+
+    private static void add(List<String> providerUrls, String providerUrl) {
+        String trimmed = providerUrl.trim();
+        if (!trimmed.isEmpty()) {
+            providerUrls.add(trimmed);
+        }
+    }
+}
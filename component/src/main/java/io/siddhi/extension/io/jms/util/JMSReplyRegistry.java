@@ -0,0 +1,54 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import org.wso2.transport.jms.contract.JMSListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Links the JMS sinks sending requests to the 'jms-reply' sources receiving their replies, by the Siddhi app name
+ * and the 'sink.id' given to both.
+ */
+public final class JMSReplyRegistry {
+    private static final Map<String, JMSListener> REPLY_SOURCES = new ConcurrentHashMap<>();
+
+    private JMSReplyRegistry() {
+    }
+
+    public static String keyOf(String siddhiApp, String sinkId) {
+        return siddhiApp + ":" + sinkId;
+    }
+
+    public static void register(String key, JMSListener replySource) {
+        REPLY_SOURCES.put(key, replySource);
+    }
+
+    /**
+     * Removes the reply source, unless another source was registered under the key since.
+     */
+    public static void unregister(String key, JMSListener replySource) {
+        REPLY_SOURCES.remove(key, replySource);
+    }
+
+    public static JMSListener get(String key) {
+        return REPLY_SOURCES.get(key);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import org.apache.log4j.Logger;
+import org.wso2.transport.jms.utils.JMSConstants;
+
+import java.util.Map;
+import java.util.Properties;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+/**
+ * Owns a JMS connection looked up through JNDI and hands out sessions created on it.
+ * Used where the extension needs direct control over sessions (e.g. transactions), which the carbon transport
+ * connectors do not expose. Sessions are not thread safe and must be confined to the caller that created them.
+ */
+public class JMSSessionFactory {
+    private static final Logger log = Logger.getLogger(JMSSessionFactory.class);
+    private static final String DEFAULT_CONNECTION_FACTORY_JNDI_NAME = "QueueConnectionFactory";
+    private static final String DESTINATION_TYPE_TOPIC = "topic";
+    private final Properties jndiProperties;
+    private final String connectionFactoryJndiName;
+    private final boolean topic;
+    private final String username;
+    private final String password;
+    private volatile Connection connection;
+    private volatile int connectionCount;
+
+    public JMSSessionFactory(Map<String, String> jmsProperties) {
+        this.jndiProperties = new Properties();
+        jmsProperties.forEach((key, value) -> {
+            if (key != null && value != null) {
+                jndiProperties.put(key, value);
+            }
+        });
+        jndiProperties.put(Context.INITIAL_CONTEXT_FACTORY,
+                jmsProperties.get(JMSConstants.PARAM_NAMING_FACTORY_INITIAL));
+        jndiProperties.put(Context.PROVIDER_URL, jmsProperties.get(JMSConstants.PARAM_PROVIDER_URL));
+        String jndiName = jmsProperties.get(JMSConstants.PARAM_CONNECTION_FACTORY_JNDI_NAME);
+        this.connectionFactoryJndiName = jndiName == null ? DEFAULT_CONNECTION_FACTORY_JNDI_NAME : jndiName;
+        this.topic = DESTINATION_TYPE_TOPIC.equalsIgnoreCase(
+                jmsProperties.get(JMSConstants.PARAM_CONNECTION_FACTORY_TYPE));
+        this.username = jmsProperties.get(JMSConstants.CONNECTION_USERNAME);
+        this.password = jmsProperties.get(JMSConstants.CONNECTION_PASSWORD);
+    }
+
+    /**
+     * Looks up the connection factory and starts a connection, if one is not already available.
+     *
+     * @throws JMSException    if the connection cannot be created or started.
+     * @throws NamingException if the connection factory lookup fails.
+     */
+    public synchronized void connect() throws JMSException, NamingException {
+        if (connection != null) {
+            return;
+        }
+        Context context = new InitialContext(jndiProperties);
+        try {
+            ConnectionFactory connectionFactory = (ConnectionFactory) context.lookup(connectionFactoryJndiName);
+            Connection newConnection = username == null ? connectionFactory.createConnection()
+                    : connectionFactory.createConnection(username, password);
+            newConnection.setExceptionListener(e -> {
+                log.error("JMS connection to " + JMSProviderUrlUtil.mask(getProviderUrl()) + " failed, it will be "
+                        + "re-established on the next session request.", e);
+                invalidate(newConnection);
+            });
+            newConnection.start();
+            connection = newConnection;
+            connectionCount++;
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Creates a new session on the shared connection, reconnecting first if the connection was lost.
+     *
+     * @param transacted      whether the session is transacted.
+     * @param acknowledgeMode acknowledge mode, ignored for transacted sessions.
+     * @return a new session, which must be confined to the calling thread.
+     * @throws JMSException if the session cannot be created.
+     */
+    public Session createSession(boolean transacted, int acknowledgeMode) throws JMSException {
+        Connection current = connection;
+        if (current == null) {
+            try {
+                connect();
+            } catch (NamingException e) {
+                JMSException jmsException = new JMSException("Error while looking up the connection factory "
+                        + connectionFactoryJndiName);
+                jmsException.setLinkedException(e);
+                throw jmsException;
+            }
+            current = connection;
+        }
+        return current.createSession(transacted, acknowledgeMode);
+    }
+
+    /**
+     * Creates the queue or topic with the given name, depending on the configured connection factory type.
+     *
+     * @param session         session to create the destination on.
+     * @param destinationName name of the queue or topic.
+     * @return the destination.
+     * @throws JMSException if the destination cannot be created.
+     */
+    public Destination createDestination(Session session, String destinationName) throws JMSException {
+        return topic ? session.createTopic(destinationName) : session.createQueue(destinationName);
+    }
+
+    public boolean isConnected() {
+        return connection != null;
+    }
+
+    /**
+     * @return the number of connections established so far, which changes whenever the connection is replaced.
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public String getProviderUrl() {
+        return jndiProperties.getProperty(Context.PROVIDER_URL);
+    }
+
+    /**
+     * Closes the connection along with every session created on it.
+     */
+    public synchronized void close() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (JMSException e) {
+                log.error("Error while closing the JMS connection to " + JMSProviderUrlUtil.mask(getProviderUrl()), e);
+            }
+        }
+    }
+
+    private synchronized void invalidate(Connection failedConnection) {
+        if (connection == failedConnection) {
+            connection = null;
+            try {
+                failedConnection.close();
+            } catch (JMSException e) {
+                log.debug("Error while closing the failed JMS connection", e);
+            }
+        }
+    }
+}
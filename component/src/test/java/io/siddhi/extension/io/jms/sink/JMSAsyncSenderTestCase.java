@@ -0,0 +1,197 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+
+/**
+ * Test cases for the asynchronous sends of the JMS sink.
+ * <p>
+ * The JMS API the tests run with is JMS 1.1, so the sender is given a stand-in for the JMS 2.0 completion listener,
+ * and the producers are stubs with the matching asynchronous send.
+ */
+public class JMSAsyncSenderTestCase {
+
+    @Test
+    public void testCompletions() throws JMSException {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        List<Object> failed = new ArrayList<>();
+        JMSAsyncSender sender = new JMSAsyncSender(10, metrics, (payload, options, e) -> failed.add(payload),
+                CompletionListener.class);
+        AsyncProducer producer = new AsyncProducer();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(sender.send(producer.stub, message(i), "queue", "event-" + i, null));
+        }
+        Assert.assertEquals(metrics.getAsyncSendInFlight(), 3);
+        producer.complete();
+        producer.fail(new JMSException("Rejected by the broker"));
+        producer.complete();
+        Assert.assertEquals(metrics.getAsyncSendInFlight(), 0);
+        Assert.assertEquals(metrics.getAsyncSendCompletedCount(), 2);
+        Assert.assertEquals(metrics.getAsyncSendFailedCount(), 1);
+        // completions arrive in the order of the sends, so the failure is matched to the second event
+        Assert.assertEquals(failed, Collections.singletonList("event-1"));
+    }
+
+    @Test
+    public void testWindow() throws Exception {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSAsyncSender sender = new JMSAsyncSender(2, metrics, (payload, options, e) -> {
+        }, CompletionListener.class);
+        AsyncProducer producer = new AsyncProducer();
+        sender.send(producer.stub, message(0), "queue", "event-0", null);
+        sender.send(producer.stub, message(1), "queue", "event-1", null);
+        CountDownLatch sent = new CountDownLatch(1);
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread blocked = new Thread(() -> {
+            try {
+                sender.send(producer.stub, message(2), "queue", "event-2", null);
+                sent.countDown();
+            } catch (JMSException e) {
+                error.set(e);
+            }
+        });
+        blocked.start();
+        Assert.assertFalse(sent.await(200, TimeUnit.MILLISECONDS), "The send should wait while the window is full.");
+        Assert.assertEquals(producer.sends.size(), 2);
+        producer.complete();
+        Assert.assertTrue(sent.await(5, TimeUnit.SECONDS), "The send should proceed once a message completes.");
+        blocked.join();
+        Assert.assertNull(error.get());
+        Assert.assertEquals(metrics.getAsyncSendInFlight(), 2);
+    }
+
+    @Test
+    public void testInterruptedWhileWindowIsFull() throws Exception {
+        JMSAsyncSender sender = new JMSAsyncSender(1, new JMSSinkMetrics(), (payload, options, e) -> {
+        }, CompletionListener.class);
+        AsyncProducer producer = new AsyncProducer();
+        sender.send(producer.stub, message(0), "queue", "event-0", null);
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread blocked = new Thread(() -> {
+            try {
+                sender.send(producer.stub, message(1), "queue", "event-1", null);
+            } catch (JMSException e) {
+                error.set(e);
+            }
+        });
+        blocked.start();
+        Thread.sleep(100);
+        blocked.interrupt();
+        blocked.join(5000);
+        Assert.assertTrue(error.get() instanceof JMSException);
+        Assert.assertEquals(producer.sends.size(), 1);
+    }
+
+    @Test
+    public void testReset() throws JMSException {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSAsyncSender sender = new JMSAsyncSender(10, metrics, (payload, options, e) -> {
+        }, CompletionListener.class);
+        AsyncProducer producer = new AsyncProducer();
+        sender.send(producer.stub, message(0), "queue", "event-0", null);
+        sender.send(producer.stub, message(1), "queue", "event-1", null);
+        sender.reset();
+        Assert.assertEquals(metrics.getAsyncSendInFlight(), 0);
+        Assert.assertEquals(metrics.getAsyncSendCompletedCount(), 0);
+    }
+
+    @Test
+    public void testFallbackWithoutAsyncSend() throws JMSException {
+        JMSAsyncSender sender = new JMSAsyncSender(10, new JMSSinkMetrics(), (payload, options, e) -> {
+        }, CompletionListener.class);
+        MessageProducer producer = (MessageProducer) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{MessageProducer.class}, (proxy, method, args) -> null);
+        Assert.assertFalse(sender.send(producer, message(0), "queue", "event-0", null));
+    }
+
+    @Test
+    public void testFallbackWithoutCompletionListener() throws JMSException {
+        JMSAsyncSender sender = new JMSAsyncSender(10, new JMSSinkMetrics(), (payload, options, e) -> {
+        }, null);
+        AsyncProducer producer = new AsyncProducer();
+        Assert.assertFalse(sender.send(producer.stub, message(0), "queue", "event-0", null));
+        Assert.assertTrue(producer.sends.isEmpty());
+    }
+
+    private static Message message(int sequence) throws JMSException {
+        ActiveMQTextMessage message = new ActiveMQTextMessage();
+        message.setText("event-" + sequence);
+        return message;
+    }
+
+    /**
+     * Stand-in for {@code javax.jms.CompletionListener}.
+     */
+    public interface CompletionListener {
+
+        void onCompletion(Message message);
+
+        void onException(Message message, Exception exception);
+    }
+
+    /**
+     * The asynchronous send of a JMS 2.0 producer.
+     */
+    public interface AsyncSend {
+
+        void send(Message message, CompletionListener completionListener);
+    }
+
+    /**
+     * Producer stub which keeps the asynchronous sends until the test completes them, in order.
+     */
+    private static class AsyncProducer {
+        private final BlockingQueue<Object[]> sends = new LinkedBlockingQueue<>();
+        private final MessageProducer stub = (MessageProducer) Proxy.newProxyInstance(
+                JMSAsyncSenderTestCase.class.getClassLoader(), new Class[]{MessageProducer.class, AsyncSend.class},
+                (proxy, method, args) -> {
+                    if ("send".equals(method.getName()) && args.length == 2
+                            && args[1] instanceof CompletionListener) {
+                        sends.add(args);
+                    }
+                    return null;
+                });
+
+        private void complete() {
+            Object[] send = sends.remove();
+            ((CompletionListener) send[1]).onCompletion((Message) send[0]);
+        }
+
+        private void fail(Exception exception) {
+            Object[] send = sends.remove();
+            ((CompletionListener) send[1]).onException((Message) send[0], exception);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.exception.ConnectionUnavailableException;
+import io.siddhi.core.util.transport.DynamicOptions;
+import io.siddhi.extension.io.jms.util.JMSEnvelopeUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test cases for packing the events of the JMS sink into envelopes.
+ */
+public class JMSEnvelopePackerTestCase {
+
+    @Test
+    public void testPackText() throws ConnectionUnavailableException {
+        List<Object> dispatched = new ArrayList<>();
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(3, 60000, "|", null,
+                (destination, payload, options) -> dispatched.add(payload), failOnError());
+        DynamicOptions options = new DynamicOptions(null);
+        for (int i = 0; i < 4; i++) {
+            packer.add("queue", "e" + i, options);
+        }
+        Assert.assertEquals(dispatched.size(), 1);
+        JMSEnvelope envelope = (JMSEnvelope) dispatched.get(0);
+        Assert.assertEquals(envelope.getEventCount(), 3);
+        Assert.assertEquals(JMSEnvelopeUtil.unpackText((String) envelope.getPayload(), "|", 3),
+                new String[]{"e0", "e1", "e2"});
+        Assert.assertEquals(packer.flushAll(), 0);
+        Assert.assertEquals(dispatched.get(1), "e3", "A single event should be sent as a plain event");
+    }
+
+    @Test
+    public void testPackBytes() throws ConnectionUnavailableException {
+        List<Object> dispatched = new ArrayList<>();
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(2, 60000, "|", null,
+                (destination, payload, options) -> dispatched.add(payload), failOnError());
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.put((byte) 1).flip();
+        packer.add("queue", buffer, null);
+        // the buffer is reused by the mapper, so the envelope should hold a copy of the first event
+        buffer.clear();
+        buffer.put((byte) 2).put((byte) 3).flip();
+        packer.add("queue", buffer, null);
+        JMSEnvelope envelope = (JMSEnvelope) dispatched.get(0);
+        ByteBuffer[] events = JMSEnvelopeUtil.unpackBytes((ByteBuffer) envelope.getPayload(), 2);
+        Assert.assertEquals(events[0], ByteBuffer.wrap(new byte[]{1}));
+        Assert.assertEquals(events[1], ByteBuffer.wrap(new byte[]{2, 3}));
+    }
+
+    @Test
+    public void testFailedFullEnvelopeRethrowsAndHandsOnEvents() throws ConnectionUnavailableException {
+        List<Object> failed = new ArrayList<>();
+        List<DynamicOptions> failedOptions = new ArrayList<>();
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(2, 60000, "|", null, failingDispatcher(),
+                (payload, options, e) -> {
+                    failed.add(payload);
+                    failedOptions.add(options);
+                });
+        DynamicOptions options = new DynamicOptions(null);
+        packer.add("queue", "a", options);
+        try {
+            packer.add("queue", "b", options);
+            Assert.fail("The failure of the envelope flushed by 'b' should be rethrown");
+        } catch (ConnectionUnavailableException e) {
+            Assert.assertEquals(e.getMessage(), "Broker unavailable");
+        }
+        // 'b' is left to Siddhi, which passes it to 'on.error' as the event whose publish failed
+        Assert.assertEquals(failed, Collections.singletonList("a"));
+        Assert.assertSame(failedOptions.get(0), options);
+        packer.add("queue", "c", options);
+        Assert.assertEquals(packer.flushAll(), 1);
+        Assert.assertEquals(failed, Arrays.asList("a", "c"));
+    }
+
+    @Test
+    public void testFailedFlushHandsOnEachEvent() throws ConnectionUnavailableException {
+        List<Object> failed = new ArrayList<>();
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(10, 60000, "|", null, failingDispatcher(),
+                (payload, options, e) -> failed.add(payload));
+        packer.add("text", "a", null);
+        packer.add("text", "b", null);
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.put((byte) 1).flip();
+        packer.add("bytes", buffer, null);
+        buffer.clear();
+        buffer.put((byte) 2).put((byte) 3).flip();
+        packer.add("bytes", buffer, null);
+        Assert.assertEquals(packer.flushAll(), 4, "Flushes by the timer or on disconnect should not throw");
+        Assert.assertEquals(failed.size(), 4);
+        Assert.assertTrue(failed.containsAll(Arrays.asList("a", "b")), failed.toString());
+        Assert.assertTrue(failed.contains(ByteBuffer.wrap(new byte[]{1})), failed.toString());
+        Assert.assertTrue(failed.contains(ByteBuffer.wrap(new byte[]{2, 3})), failed.toString());
+        Assert.assertTrue(failed.stream().noneMatch(payload -> payload instanceof JMSEnvelope),
+                "The error handler should receive the events, not the envelope");
+    }
+
+    @Test
+    public void testFailedFlushOnOptionsKeyChangeLeavesAddedEvent() throws ConnectionUnavailableException {
+        List<Object> failed = new ArrayList<>();
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(10, 60000, "|", options -> options, failingDispatcher(),
+                (payload, options, e) -> failed.add(payload));
+        DynamicOptions first = new DynamicOptions(null);
+        packer.add("queue", "a", first);
+        packer.add("queue", "b", first);
+        try {
+            packer.add("queue", "c", new DynamicOptions(null));
+            Assert.fail("The failure of the envelope flushed by 'c' should be rethrown");
+        } catch (ConnectionUnavailableException e) {
+            Assert.assertEquals(failed, Arrays.asList("a", "b"));
+        }
+        Assert.assertEquals(packer.flushAll(), 0, "'c' should not be added once its publish failed");
+    }
+
+    @Test
+    public void testFlushOnOptionsKeyChange() throws ConnectionUnavailableException {
+        List<Object> dispatched = new ArrayList<>();
+        List<DynamicOptions> dispatchedOptions = new ArrayList<>();
+        DynamicOptions first = new DynamicOptions(null);
+        DynamicOptions second = new DynamicOptions(null);
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(10, 60000, "|", options -> options == first ? "a" : "b",
+                (destination, payload, options) -> {
+                    dispatched.add(payload);
+                    dispatchedOptions.add(options);
+                }, failOnError());
+        packer.add("queue", "1", first);
+        packer.add("queue", "2", first);
+        packer.add("queue", "3", second);
+        Assert.assertEquals(dispatched.size(), 1);
+        Assert.assertEquals(((JMSEnvelope) dispatched.get(0)).getPayload(), "1|2");
+        Assert.assertSame(dispatchedOptions.get(0), first);
+        packer.flushAll();
+        Assert.assertEquals(dispatched.get(1), "3");
+        Assert.assertSame(dispatchedOptions.get(1), second);
+    }
+
+    @Test
+    public void testMapEventFlushesEnvelope() throws ConnectionUnavailableException {
+        List<Object> dispatched = new ArrayList<>();
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(10, 60000, "|", null,
+                (destination, payload, options) -> dispatched.add(payload), failOnError());
+        Object mapEvent = new Object();
+        packer.add("queue", "a", null);
+        packer.add("queue", "b", null);
+        packer.add("queue", mapEvent, null);
+        Assert.assertEquals(dispatched.size(), 2);
+        Assert.assertEquals(((JMSEnvelope) dispatched.get(0)).getPayload(), "a|b");
+        Assert.assertSame(dispatched.get(1), mapEvent);
+    }
+
+    @Test
+    public void testExpiryAndIdleEviction() throws ConnectionUnavailableException, InterruptedException {
+        List<Object> dispatched = new ArrayList<>();
+        JMSEnvelopePacker packer = new JMSEnvelopePacker(10, 50, "|", null,
+                (destination, payload, options) -> dispatched.add(destination + ":" + payload), failOnError());
+        packer.add("queue1", "a", null);
+        Thread.sleep(100);
+        packer.add("queue2", "b", null);
+        Assert.assertEquals(packer.destinationCount(), 2);
+        packer.flushExpired();
+        Assert.assertEquals(dispatched.size(), 1);
+        Assert.assertEquals(dispatched.get(0), "queue1:a");
+        Assert.assertEquals(packer.destinationCount(), 1, "The envelope of the idle destination should be discarded");
+        packer.flushExpired();
+        Assert.assertEquals(dispatched.size(), 1);
+        Assert.assertEquals(packer.destinationCount(), 1, "Envelopes should only be discarded once idle");
+        Thread.sleep(100);
+        packer.flushExpired();
+        Assert.assertEquals(dispatched.get(1), "queue2:b");
+        Assert.assertEquals(packer.destinationCount(), 0);
+        packer.add("queue1", "d", null);
+        Assert.assertEquals(packer.destinationCount(), 1);
+        Assert.assertEquals(packer.flushAll(), 0);
+        Assert.assertEquals(dispatched.get(2), "queue1:d");
+    }
+
+    private static JMSEnvelopePacker.Dispatcher failingDispatcher() {
+        return (destination, payload, options) -> {
+            throw new ConnectionUnavailableException("Broker unavailable");
+        };
+    }
+
+    private static JMSPublishPipeline.ErrorHandler failOnError() {
+        return (payload, options, e) -> Assert.fail("Unexpected envelope failure", e);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.query.api.definition.Attribute;
+import io.siddhi.query.api.definition.StreamDefinition;
+import org.apache.activemq.command.ActiveMQMapMessage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+
+/**
+ * Test cases for writing the events of a stream into map messages.
+ */
+public class JMSMapMessageWriterTestCase {
+    private final JMSMapMessageWriter writer = JMSMapMessageWriter.compile(StreamDefinition.id("inputStream")
+            .attribute("name", Attribute.Type.STRING)
+            .attribute("age", Attribute.Type.INT)
+            .attribute("id", Attribute.Type.LONG)
+            .attribute("height", Attribute.Type.FLOAT)
+            .attribute("weight", Attribute.Type.DOUBLE)
+            .attribute("active", Attribute.Type.BOOL));
+
+    @Test
+    public void testWriteEventData() throws JMSException {
+        MapMessage message = new ActiveMQMapMessage();
+        writer.write(message, new Object[]{"JAMES", 23, 4000000000L, 1.8f, 72.5, true});
+        assertTypedValues(message);
+    }
+
+    @Test
+    public void testWriteAttributeMap() throws JMSException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", "JAMES");
+        map.put("age", 23);
+        map.put("id", 4000000000L);
+        map.put("height", 1.8f);
+        map.put("weight", 72.5);
+        map.put("active", true);
+        MapMessage message = new ActiveMQMapMessage();
+        writer.write(message, map);
+        assertTypedValues(message);
+    }
+
+    @Test
+    public void testWriteCustomMap() throws JMSException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("fullName", "JAMES");
+        map.put("years", 23);
+        MapMessage message = new ActiveMQMapMessage();
+        writer.write(message, map);
+        Assert.assertEquals(message.getObject("fullName"), "JAMES");
+        Assert.assertTrue(message.getObject("years") instanceof Integer);
+        Assert.assertFalse(message.itemExists("name"));
+    }
+
+    @Test
+    public void testWriteMismatchedValue() throws JMSException {
+        MapMessage message = new ActiveMQMapMessage();
+        writer.write(message, new Object[]{"JAMES", "23", 4000000000L, 1.8f, 72.5, null});
+        // values which do not match their attribute type are written as they are
+        Assert.assertEquals(message.getObject("age"), "23");
+        Assert.assertTrue(message.getObject("id") instanceof Long);
+        Assert.assertNull(message.getObject("active"));
+    }
+
+    private static void assertTypedValues(MapMessage message) throws JMSException {
+        Assert.assertEquals(message.getObject("name"), "JAMES");
+        Assert.assertEquals(message.getObject("age"), 23);
+        Assert.assertTrue(message.getObject("age") instanceof Integer);
+        Assert.assertEquals(message.getObject("id"), 4000000000L);
+        Assert.assertTrue(message.getObject("id") instanceof Long);
+        Assert.assertEquals(message.getObject("height"), 1.8f);
+        Assert.assertTrue(message.getObject("height") instanceof Float);
+        Assert.assertEquals(message.getObject("weight"), 72.5);
+        Assert.assertTrue(message.getObject("weight") instanceof Double);
+        Assert.assertEquals(message.getObject("active"), Boolean.TRUE);
+        Assert.assertTrue(message.getObject("active") instanceof Boolean);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.jms.JMSException;
+
+/**
+ * Test cases for writing the binary payloads of the JMS sink into messages.
+ */
+public class JMSMessageUtilsTestCase {
+    private static final byte[] PAYLOAD = "binary payload".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testFlippedHeapBuffer() throws JMSException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(PAYLOAD);
+        buffer.flip();
+        Assert.assertEquals(write(buffer), PAYLOAD);
+        Assert.assertEquals(buffer.position(), 0);
+        Assert.assertEquals(JMSMessageUtils.sizeOf(buffer), PAYLOAD.length);
+    }
+
+    @Test
+    public void testUnflippedHeapBuffer() throws JMSException {
+        // as handed over by siddhi-map-binary, which allocates the exact size and does not flip the buffer
+        ByteBuffer buffer = ByteBuffer.allocate(PAYLOAD.length);
+        buffer.put(PAYLOAD);
+        Assert.assertEquals(write(buffer), PAYLOAD);
+        Assert.assertEquals(buffer.position(), PAYLOAD.length);
+        Assert.assertEquals(JMSMessageUtils.sizeOf(buffer), PAYLOAD.length);
+    }
+
+    @Test
+    public void testFlippedAndConsumedBuffer() throws JMSException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(PAYLOAD);
+        buffer.flip();
+        buffer.position(buffer.limit());
+        Assert.assertEquals(write(buffer), new byte[0], "A consumed buffer should not be re-sent from the start");
+        Assert.assertEquals(JMSMessageUtils.sizeOf(buffer), 0);
+        Assert.assertEquals(buffer.position(), PAYLOAD.length);
+    }
+
+    @Test
+    public void testWrappedBuffer() throws JMSException {
+        Assert.assertEquals(write(ByteBuffer.wrap(PAYLOAD)), PAYLOAD);
+    }
+
+    @Test
+    public void testSlicedBuffer() throws JMSException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAYLOAD.length + 8);
+        buffer.putInt(0xCAFE).put(PAYLOAD).putInt(0xBABE);
+        buffer.position(4);
+        buffer.limit(4 + PAYLOAD.length);
+        ByteBuffer slice = buffer.slice();
+        Assert.assertEquals(write(slice), PAYLOAD);
+        Assert.assertEquals(write(buffer), PAYLOAD);
+    }
+
+    @Test
+    public void testDirectBuffer() throws JMSException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(PAYLOAD.length);
+        buffer.put(PAYLOAD);
+        Assert.assertEquals(write(buffer), PAYLOAD);
+        buffer.flip();
+        Assert.assertEquals(write(buffer), PAYLOAD);
+        Assert.assertEquals(buffer.position(), 0);
+    }
+
+    @Test
+    public void testLargeDirectBuffer() throws JMSException {
+        // larger than the chunk direct buffers are copied through
+        byte[] payload = new byte[20000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(payload.length + 10);
+        buffer.position(10);
+        buffer.put(payload);
+        buffer.position(10);
+        Assert.assertEquals(write(buffer), payload);
+        Assert.assertEquals(buffer.position(), 10);
+    }
+
+    @Test
+    public void testReadOnlyBuffer() throws JMSException {
+        ByteBuffer buffer = ByteBuffer.wrap(PAYLOAD).asReadOnlyBuffer();
+        Assert.assertFalse(buffer.hasArray());
+        Assert.assertEquals(write(buffer), PAYLOAD);
+        buffer.position(PAYLOAD.length);
+        Assert.assertEquals(write(buffer), PAYLOAD);
+    }
+
+    @Test
+    public void testEmptyBuffer() throws JMSException {
+        Assert.assertEquals(write(ByteBuffer.allocate(0)), new byte[0]);
+        Assert.assertEquals(JMSMessageUtils.sizeOf(ByteBuffer.allocate(0)), 0);
+    }
+
+    private static byte[] write(ByteBuffer buffer) throws JMSException {
+        ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        JMSMessageUtils.writeBytes(message, buffer);
+        message.reset();
+        byte[] written = new byte[(int) message.getBodyLength()];
+        message.readBytes(written);
+        return written;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.jms.MessageProducer;
+
+/**
+ * Test cases for the producer cache of the JMS sink's sessions.
+ */
+public class JMSProducerCacheTestCase {
+
+    @Test
+    public void testEvictionBySize() {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSProducerCache cache = new JMSProducerCache(2, 0, metrics);
+        Set<String> closed = new HashSet<>();
+        MessageProducer a = producer("a", closed);
+        MessageProducer b = producer("b", closed);
+        cache.put("a", a);
+        cache.put("b", b);
+        // using 'a' makes 'b' the least recently used producer
+        Assert.assertSame(cache.get("a"), a);
+        cache.put("c", producer("c", closed));
+        Assert.assertEquals(closed, new HashSet<>(Collections.singletonList("b")));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertSame(cache.get("a"), a);
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertEquals(metrics.getDestinationCacheEvictionCount(), 1);
+        Assert.assertEquals(metrics.getDestinationCacheSize(), 2);
+        Assert.assertEquals(metrics.getDestinationCacheHitCount(), 3);
+        Assert.assertEquals(metrics.getDestinationCacheMissCount(), 1);
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSProducerCache cache = new JMSProducerCache(10, 100, metrics);
+        Set<String> closed = new HashSet<>();
+        cache.put("idle", producer("idle", closed));
+        cache.put("used", producer("used", closed));
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(50);
+            Assert.assertNotNull(cache.get("used"));
+        }
+        Assert.assertEquals(closed, new HashSet<>(Collections.singletonList("idle")));
+        Assert.assertNull(cache.get("idle"));
+        Assert.assertEquals(metrics.getDestinationCacheEvictionCount(), 1);
+        Assert.assertEquals(metrics.getDestinationCacheSize(), 1);
+        Thread.sleep(150);
+        Assert.assertNull(cache.get("used"));
+        Assert.assertEquals(closed, new HashSet<>(Arrays.asList("idle", "used")));
+        Assert.assertEquals(metrics.getDestinationCacheSize(), 0);
+    }
+
+    @Test
+    public void testClearDoesNotClose() {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSProducerCache cache = new JMSProducerCache(10, 0, metrics);
+        Set<String> closed = new HashSet<>();
+        cache.put("a", producer("a", closed));
+        cache.put("b", producer("b", closed));
+        cache.clear();
+        Assert.assertTrue(closed.isEmpty());
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(metrics.getDestinationCacheSize(), 0);
+        Assert.assertEquals(metrics.getDestinationCacheEvictionCount(), 0);
+    }
+
+    /**
+     * Creates a producer which records its destination in the given set when it is closed.
+     */
+    private static MessageProducer producer(String destination, Set<String> closed) {
+        return (MessageProducer) Proxy.newProxyInstance(MessageProducer.class.getClassLoader(),
+                new Class[]{MessageProducer.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            closed.add(destination);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "MessageProducer(" + destination + ")";
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
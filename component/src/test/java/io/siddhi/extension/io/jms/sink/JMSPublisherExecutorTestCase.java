@@ -0,0 +1,163 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Test cases for the executor running the publishers of the JMS sink.
+ */
+public class JMSPublisherExecutorTestCase {
+
+    @Test
+    public void testExecuteWaitsForInFlightPublishes() throws InterruptedException {
+        JMSPublisherExecutor executor = new JMSPublisherExecutor("test", JMSPublisherExecutor.ThreadType.PLATFORM, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondRun = new CountDownLatch(1);
+        executor.execute(() -> awaitUninterruptibly(release));
+        Thread submitter = new Thread(() -> {
+            try {
+                executor.execute(secondRun::countDown);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        submitter.start();
+        Assert.assertFalse(secondRun.await(200, TimeUnit.MILLISECONDS),
+                "The second publish should wait while the first is in flight");
+        Assert.assertEquals(executor.getInFlight(), 1);
+        release.countDown();
+        Assert.assertTrue(secondRun.await(5, TimeUnit.SECONDS));
+        submitter.join(5000);
+        Assert.assertEquals(executor.stop(5000), 0);
+        Assert.assertEquals(executor.getInFlight(), 0);
+    }
+
+    @Test
+    public void testStopWaitsForPublishes() throws InterruptedException {
+        JMSPublisherExecutor executor = new JMSPublisherExecutor("test", JMSPublisherExecutor.ThreadType.PLATFORM, 4);
+        AtomicBoolean completed = new AtomicBoolean();
+        executor.execute(() -> {
+            try {
+                Thread.sleep(200);
+                completed.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertEquals(executor.stop(5000), 0);
+        Assert.assertTrue(completed.get());
+    }
+
+    @Test
+    public void testStopInterruptsPublishes() throws InterruptedException {
+        JMSPublisherExecutor executor = new JMSPublisherExecutor("test", JMSPublisherExecutor.ThreadType.PLATFORM, 4);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                // a publisher hands its event to the spool or to 'on.error' here
+                interrupted.countDown();
+            }
+        });
+        Assert.assertEquals(executor.stop(100), 0, "An interrupted publish which ends should not be reported");
+        Assert.assertTrue(interrupted.await(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testStopReportsPublishesIgnoringInterrupts() throws InterruptedException {
+        JMSPublisherExecutor executor = new JMSPublisherExecutor("test", JMSPublisherExecutor.ThreadType.PLATFORM, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> awaitUninterruptibly(release));
+        executor.execute(() -> {
+        });
+        try {
+            Assert.assertEquals(executor.stop(100), 1);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testPublishesRunOnInjectedThreadFactory() throws InterruptedException {
+        AtomicInteger created = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "injected-" + created.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        JMSPublisherExecutor executor = new JMSPublisherExecutor(threadFactory, true, 2);
+        Assert.assertTrue(executor.isVirtual());
+        List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                threadNames.add(Thread.currentThread().getName());
+                started.countDown();
+                awaitUninterruptibly(release);
+            });
+        }
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(executor.getInFlight(), 2);
+        release.countDown();
+        Assert.assertEquals(executor.stop(5000), 0);
+        Assert.assertEquals(executor.getInFlight(), 0, "Publishes on injected threads should release their permits");
+        Assert.assertEquals(created.get(), 2, "Every publish in flight should run on its own thread");
+        Assert.assertTrue(threadNames.stream().allMatch(name -> name.startsWith("injected-")), threadNames.toString());
+    }
+
+    @Test
+    public void testVirtualThreadTypeOnRunningJdk() throws InterruptedException {
+        // virtual threads are only created on JDK 21 or later, older JDKs fall back to platform threads
+        JMSPublisherExecutor executor = new JMSPublisherExecutor("test", JMSPublisherExecutor.ThreadType.VIRTUAL, 1);
+        Assert.assertEquals(executor.isVirtual(), JMSPublisherExecutor.isVirtualAvailable());
+        AtomicReference<String> threadName = new AtomicReference<>();
+        executor.execute(() -> threadName.set(Thread.currentThread().getName()));
+        Assert.assertEquals(executor.stop(5000), 0);
+        Assert.assertTrue(threadName.get().startsWith("test-publisher-"), threadName.get());
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.statistics.LatencyTracker;
+import io.siddhi.extension.io.jms.sink.exception.JMSSinkAdaptorRuntimeException;
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
+import org.apache.activemq.command.ActiveMQTextMessage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.transport.jms.contract.JMSClientConnector;
+import org.wso2.transport.jms.exception.JMSConnectorException;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test cases for the pooled publishers of the JMS sink.
+ */
+public class JMSPublisherTestCase {
+
+    @Test
+    public void testPublisherReturnsToPool() {
+        BlockingQueue<JMSPublisher> pool = new ArrayBlockingQueue<>(4);
+        List<String> sent = new ArrayList<>();
+        JMSPublisher publisher = JMSPublisher.acquire(pool);
+        publisher.prepare(connector(sent, false), JMSCompressionCodec.NONE, "queue", "event", null, null, null, null)
+                .run();
+        Assert.assertEquals(sent, Collections.singletonList("queue"));
+        Assert.assertSame(JMSPublisher.acquire(pool), publisher);
+    }
+
+    @Test
+    public void testPrepareFailureReleasesPublisher() {
+        BlockingQueue<JMSPublisher> pool = new ArrayBlockingQueue<>(4);
+        JMSPublisher publisher = JMSPublisher.acquire(pool);
+        try {
+            publisher.prepare(connector(new ArrayList<>(), false), JMSCompressionCodec.NONE, "queue", 42, null,
+                    null, null, null);
+            Assert.fail("An unsupported payload should not be prepared.");
+        } catch (JMSSinkAdaptorRuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("not supported"), e.getMessage());
+        }
+        Assert.assertEquals(pool.size(), 1);
+        Assert.assertSame(JMSPublisher.acquire(pool), publisher);
+    }
+
+    @Test
+    public void testSendFailurePassedToErrorHandler() {
+        BlockingQueue<JMSPublisher> pool = new ArrayBlockingQueue<>(4);
+        List<Object> failed = new ArrayList<>();
+        JMSPublisher publisher = JMSPublisher.acquire(pool);
+        publisher.prepare(connector(new ArrayList<>(), true), JMSCompressionCodec.NONE, "queue", "event", null,
+                null, null, (payload, options, e) -> failed.add(payload)).run();
+        Assert.assertEquals(failed, Collections.singletonList("event"));
+        Assert.assertSame(JMSPublisher.acquire(pool), publisher);
+    }
+
+    @Test(expectedExceptions = JMSSinkAdaptorRuntimeException.class)
+    public void testSendFailureThrownWithoutErrorHandler() {
+        BlockingQueue<JMSPublisher> pool = new ArrayBlockingQueue<>(4);
+        JMSPublisher.acquire(pool).prepare(connector(new ArrayList<>(), true), JMSCompressionCodec.NONE, "queue",
+                "event", null, null, null, null).run();
+    }
+
+    @Test
+    public void testFailedSendEndsLatencyMark() {
+        AtomicInteger markedIn = new AtomicInteger();
+        AtomicInteger markedOut = new AtomicInteger();
+        LatencyTracker tracker = (LatencyTracker) Proxy.newProxyInstance(LatencyTracker.class.getClassLoader(),
+                new Class[]{LatencyTracker.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("markIn")) {
+                        markedIn.incrementAndGet();
+                    } else if (method.getName().equals("markOut")) {
+                        markedOut.incrementAndGet();
+                    }
+                    return null;
+                });
+        JMSPublishTimings timings = new JMSPublishTimings(tracker, null);
+        JMSPublisher.publish(connector(new ArrayList<>(), false), JMSCompressionCodec.NONE, "queue", "event",
+                timings);
+        try {
+            JMSPublisher.publish(connector(new ArrayList<>(), true), JMSCompressionCodec.NONE, "queue", "event",
+                    timings);
+            Assert.fail("The send should fail.");
+        } catch (JMSSinkAdaptorRuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("queue"), e.getMessage());
+        }
+        // every mark in is paired with a mark out, while only the successful send is recorded
+        Assert.assertEquals(markedIn.get(), 2);
+        Assert.assertEquals(markedOut.get(), 2);
+        Assert.assertEquals(timings.getSentCount(), 1);
+        Assert.assertEquals(timings.getBytesOut(), 5);
+
+        timings.resetTimings();
+        Assert.assertEquals(timings.getSendMaxMicros(), 0);
+        Assert.assertEquals(timings.getSentCount(), 1);
+    }
+
+    /**
+     * Creates a connector creating ActiveMQ text messages, which records the destinations of the sent messages or
+     * fails every send.
+     */
+    private static JMSClientConnector connector(List<String> sent, boolean failing) {
+        return (JMSClientConnector) Proxy.newProxyInstance(JMSClientConnector.class.getClassLoader(),
+                new Class[]{JMSClientConnector.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createMessage":
+                            return new ActiveMQTextMessage();
+                        case "send":
+                            if (failing) {
+                                throw new JMSConnectorException("Broker unavailable");
+                            }
+                            sent.add((String) args[1]);
+                            return true;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test cases for the token bucket rate limit of the JMS sink.
+ */
+public class JMSRateLimiterTestCase {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testNewBucketAllowsBurstOfOneSecond() {
+        AtomicLong clock = new AtomicLong(SECOND);
+        JMSRateLimiter.TokenBucket bucket = new JMSRateLimiter.TokenBucket(clock::get);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(bucket.reserve(1, 10), 0, "Send " + i + " of the burst should not wait");
+        }
+        // the eleventh send waits for a tenth of a second
+        Assert.assertEquals(bucket.reserve(1, 10), SECOND / 10);
+    }
+
+    @Test
+    public void testBucketRefillsWithElapsedTime() {
+        AtomicLong clock = new AtomicLong(SECOND);
+        JMSRateLimiter.TokenBucket bucket = new JMSRateLimiter.TokenBucket(clock::get);
+        Assert.assertEquals(bucket.reserve(10, 10), 0);
+        clock.addAndGet(SECOND / 2);
+        Assert.assertEquals(bucket.reserve(5, 10), 0);
+        Assert.assertEquals(bucket.reserve(1, 10), SECOND / 10);
+    }
+
+    @Test
+    public void testBucketHoldsAtMostOneSecond() {
+        AtomicLong clock = new AtomicLong(SECOND);
+        JMSRateLimiter.TokenBucket bucket = new JMSRateLimiter.TokenBucket(clock::get);
+        Assert.assertEquals(bucket.reserve(10, 10), 0);
+        clock.addAndGet(60 * SECOND);
+        Assert.assertEquals(bucket.reserve(10, 10), 0);
+        Assert.assertEquals(bucket.reserve(1, 10), SECOND / 10);
+    }
+
+    @Test
+    public void testDeficitIsQueued() {
+        AtomicLong clock = new AtomicLong(SECOND);
+        JMSRateLimiter.TokenBucket bucket = new JMSRateLimiter.TokenBucket(clock::get);
+        Assert.assertEquals(bucket.reserve(10, 10), 0);
+        // waiting senders are served in the order they reserved
+        Assert.assertEquals(bucket.reserve(1, 10), SECOND / 10);
+        Assert.assertEquals(bucket.reserve(1, 10), 2 * SECOND / 10);
+        clock.addAndGet(2 * SECOND / 10);
+        Assert.assertEquals(bucket.reserve(1, 10), SECOND / 10);
+    }
+
+    @Test
+    public void testClockGoingBackDoesNotRefill() {
+        AtomicLong clock = new AtomicLong(SECOND);
+        JMSRateLimiter.TokenBucket bucket = new JMSRateLimiter.TokenBucket(clock::get);
+        Assert.assertEquals(bucket.reserve(10, 10), 0);
+        clock.addAndGet(-SECOND / 2);
+        Assert.assertEquals(bucket.reserve(1, 10), SECOND / 10);
+    }
+
+    @Test
+    public void testAcquireThrottlesBeyondBurst() throws InterruptedException {
+        AtomicLong clock = new AtomicLong(SECOND);
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSRateLimiter rateLimiter = new JMSRateLimiter(10, 0, false, false, 0, 0, metrics, clock::get);
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.acquire("queue", "event");
+        }
+        Assert.assertEquals(metrics.getThrottledCount(), 0);
+        long start = System.nanoTime();
+        rateLimiter.acquire("queue", "event");
+        Assert.assertTrue(System.nanoTime() - start >= SECOND / 10, "The send beyond the burst should wait");
+        Assert.assertEquals(metrics.getThrottledCount(), 1);
+        clock.addAndGet(2 * SECOND);
+        rateLimiter.acquire("other", "event");
+        Assert.assertEquals(metrics.getThrottledCount(), 1);
+    }
+
+    @Test
+    public void testBytesArePerDestination() throws InterruptedException {
+        AtomicLong clock = new AtomicLong(SECOND);
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSRateLimiter rateLimiter = new JMSRateLimiter(0, 10, true, false, 0, 0, metrics, clock::get);
+        rateLimiter.acquire("first", "0123456789");
+        rateLimiter.acquire("second", "0123456789");
+        Assert.assertEquals(metrics.getThrottledCount(), 0);
+        long start = System.nanoTime();
+        rateLimiter.acquire("first", "0");
+        Assert.assertTrue(System.nanoTime() - start >= SECOND / 10, "The exhausted destination should wait");
+        Assert.assertEquals(metrics.getThrottledCount(), 1);
+    }
+}
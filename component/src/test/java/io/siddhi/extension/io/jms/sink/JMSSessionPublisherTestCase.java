@@ -0,0 +1,155 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.util.transport.DynamicOptions;
+import io.siddhi.extension.io.jms.util.JMSCompressionCodec;
+import io.siddhi.extension.io.jms.util.JMSSessionFactory;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.transport.jms.utils.JMSConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+/**
+ * Test cases for the transacted session publishers of the JMS sink, as used in exactly once mode.
+ */
+public class JMSSessionPublisherTestCase {
+    private static final String BROKER_URL = "vm://session-publisher?broker.persistent=false&broker.useJmx=false";
+    private JMSSessionFactory sessionFactory;
+    private Connection connection;
+
+    @BeforeClass
+    public void connect() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JMSConstants.PARAM_NAMING_FACTORY_INITIAL,
+                "org.apache.activemq.jndi.ActiveMQInitialContextFactory");
+        properties.put(JMSConstants.PARAM_PROVIDER_URL, BROKER_URL);
+        sessionFactory = new JMSSessionFactory(properties);
+        sessionFactory.connect();
+        connection = new ActiveMQConnectionFactory(BROKER_URL).createConnection();
+        connection.start();
+    }
+
+    @AfterClass
+    public void close() throws JMSException {
+        connection.close();
+        sessionFactory.close();
+    }
+
+    @Test
+    public void testUncommittedMessagesAreInvisible() throws JMSException {
+        JMSSessionPublisher publisher = snapshotPublisher();
+        MessageConsumer consumer = consumer("INVISIBLE");
+        publisher.send("INVISIBLE", "a1", null);
+        publisher.send("INVISIBLE", "a2", null);
+        Assert.assertEquals(publisher.getPendingCount(), 2);
+        Assert.assertNull(consumer.receive(500), "Uncommitted messages should not be received");
+
+        Assert.assertTrue(publisher.commitPending());
+        Assert.assertEquals(publisher.getPendingCount(), 0);
+        Assert.assertEquals(receive(consumer, 2), Arrays.asList("a1", "a2"));
+        publisher.close();
+    }
+
+    @Test
+    public void testResetPendingRollsBackAndResends() throws JMSException {
+        JMSSessionPublisher publisher = snapshotPublisher();
+        MessageConsumer consumer = consumer("RESET");
+        publisher.send("RESET", "a1", null);
+        publisher.send("RESET", "a2", null);
+        // restoring a snapshot which left b1 uncommitted
+        Assert.assertEquals(publisher.resetPending(Collections.singletonList("RESET"),
+                Collections.singletonList("b1")), 2);
+        List<Object> pending = new ArrayList<>();
+        publisher.forEachPending((destination, payload) -> pending.add(payload));
+        Assert.assertEquals(pending, Collections.singletonList("b1"));
+        publisher.send("RESET", "b2", null);
+
+        Assert.assertTrue(publisher.commitPending());
+        Assert.assertEquals(receive(consumer, 2), Arrays.asList("b1", "b2"));
+        Assert.assertNull(consumer.receive(500), "Rolled back messages should not be received");
+        publisher.close();
+    }
+
+    @Test
+    public void testDisconnectRollsBackOpenTransaction() throws JMSException {
+        JMSSessionPublisher publisher = snapshotPublisher();
+        MessageConsumer consumer = consumer("ROLLED_BACK");
+        publisher.send("ROLLED_BACK", "a1", null);
+        Assert.assertEquals(publisher.resetPending(Collections.emptyList(), Collections.emptyList()), 1);
+        Assert.assertEquals(publisher.close(), 0);
+        Assert.assertNull(consumer.receive(500), "Rolled back messages should not be received");
+    }
+
+    @Test
+    public void testTakePending() throws JMSException {
+        JMSSessionPublisher publisher = new JMSSessionPublisher(sessionFactory, 4, 60000,
+                new JMSProducerCache(10, 0, new JMSSinkMetrics()), null, JMSCompressionCodec.NONE, null, null, null);
+        MessageConsumer consumer = consumer("TAKEN");
+        publisher.send("TAKEN", "a1", null);
+        publisher.send("TAKEN", "a2", null);
+        List<String> destinations = new ArrayList<>();
+        List<Object> payloads = new ArrayList<>();
+        List<DynamicOptions> options = new ArrayList<>();
+        Assert.assertEquals(publisher.takePending(destinations, payloads, options), 2);
+        Assert.assertEquals(destinations, Arrays.asList("TAKEN", "TAKEN"));
+        Assert.assertEquals(payloads, Arrays.asList("a1", "a2"));
+        Assert.assertEquals(options.size(), 2);
+        Assert.assertEquals(publisher.getPendingCount(), 0);
+        Assert.assertEquals(publisher.close(), 0);
+        Assert.assertNull(consumer.receive(500), "Taken messages should not be committed");
+    }
+
+    /**
+     * Creates a publisher whose transaction is only committed on request, as in exactly once mode.
+     */
+    private JMSSessionPublisher snapshotPublisher() {
+        return new JMSSessionPublisher(sessionFactory, Integer.MAX_VALUE, Long.MAX_VALUE,
+                new JMSProducerCache(10, 0, new JMSSinkMetrics()), null, JMSCompressionCodec.NONE, null, null, null);
+    }
+
+    private MessageConsumer consumer(String queue) throws JMSException {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        return session.createConsumer(session.createQueue(queue));
+    }
+
+    private static List<String> receive(MessageConsumer consumer, int count) throws JMSException {
+        List<String> received = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TextMessage message = (TextMessage) consumer.receive(10000);
+            Assert.assertNotNull(message, "Only received " + received);
+            received.add(message.getText());
+        }
+        return received;
+    }
+}
@@ -20,18 +20,53 @@ package io.siddhi.extension.io.jms.sink;
 
 import io.siddhi.core.SiddhiAppRuntime;
 import io.siddhi.core.SiddhiManager;
+import io.siddhi.core.event.Event;
 import io.siddhi.core.exception.SiddhiAppCreationException;
 import io.siddhi.core.stream.input.InputHandler;
+import io.siddhi.core.stream.output.StreamCallback;
+import io.siddhi.core.util.persistence.InMemoryPersistenceStore;
 import io.siddhi.extension.io.jms.sink.util.JMSClient;
+import io.siddhi.extension.io.jms.sink.util.QueueConsumer;
 import io.siddhi.extension.io.jms.sink.util.ResultContainer;
+import io.siddhi.extension.io.jms.util.JMSPartitionUtil;
 import io.siddhi.query.api.exception.SiddhiAppValidationException;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 /**
  * Class implementing the Test cases for JMS Sink.
  */
 public class JMSSinkTestCase {
+    private static final int SPOOL_BROKER_PORT = 61626;
+    private static final int MULTI_BROKER_PORT = 61627;
 
     /**
      * Test for configure the JMS Sink publish the message to an ActiveMQ topic.
@@ -263,4 +298,894 @@ public class JMSSinkTestCase {
             }
         }
     }
+
+    /**
+     * Test for configure the JMS Sink to publish messages to an ActiveMQ queue in transacted batches, where the last
+     * partially filled batch is committed by the batch timeout.
+     */
+    @Test(dependsOnMethods = "jmsTopicPublishTest6")
+    public void jmsBatchPublishTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(3);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "batch.size='2', "
+                    + "batch.timeout='500'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish messages through its bounded publish queue and sender threads.
+     */
+    @Test(dependsOnMethods = "jmsBatchPublishTest")
+    public void jmsQueuedPublishTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(3);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.queue.size='10', "
+                    + "publisher.thread.count='2', "
+                    + "publisher.queue.full.policy='block'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish messages through ordered publish lanes, keeping the order of events
+     * to the same destination.
+     */
+    @Test(dependsOnMethods = "jmsQueuedPublishTest")
+    public void jmsOrderedPublishTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(5);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.queue.size='10', "
+                    + "publisher.thread.count='4', "
+                    + "publisher.ordered='true'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+            inputStream.send(new Object[]{"PAUL", 41, "France"});
+            inputStream.send(new Object[]{"ANNA", 35, "Italy"});
+
+            Assert.assertTrue(resultContainer.assertMessageOrder("JAMES", "MIKE", "JOHN", "PAUL", "ANNA"));
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish messages from sender threads owning their sessions, each committing
+     * its own batches.
+     */
+    @Test(dependsOnMethods = "jmsOrderedPublishTest")
+    public void jmsSessionPerThreadPublishTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(3);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='json'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.queue.size='10', "
+                    + "publisher.thread.count='2', "
+                    + "publisher.session.per.thread='true', "
+                    + "batch.size='2', "
+                    + "batch.timeout='500'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish messages with asynchronous sends, which fall back to synchronous
+     * sends on JMS 1.1 providers.
+     */
+    @Test(dependsOnMethods = "jmsSessionPerThreadPublishTest")
+    public void jmsAsyncSendPublishTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(3);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.queue.size='100', "
+                    + "async.send='true', "
+                    + "async.send.window='2'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to spool the events which cannot be sent while the broker is down, and to
+     * re-send them in order, before the new events, once the broker is back.
+     */
+    @Test(dependsOnMethods = "jmsAsyncSendPublishTest")
+    public void jmsSpoolPublishTest() throws Exception {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(5);
+        String brokerUrl = "tcp://localhost:" + SPOOL_BROKER_PORT;
+        QueueConsumer consumer = new QueueConsumer(new ActiveMQConnectionFactory("failover:(" + brokerUrl + ")"),
+                "DAS_JMS_SPOOL_TEST", resultContainer);
+        File spoolDirectory = Files.createTempDirectory("jms-spool").toFile();
+        BrokerService broker = startBroker("spool-broker", brokerUrl);
+        try {
+            //init
+            Thread listenerThread = new Thread(consumer);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@App:name('SpoolTestApp')" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='failover:(" + brokerUrl + ")?timeout=500&maxReconnectDelay=100',"
+                    + "destination='DAS_JMS_SPOOL_TEST', "
+                    + "publisher.queue.size='10', "
+                    + "spool.directory='" + spoolDirectory.getAbsolutePath() + "', "
+                    + "spool.segment.size='4096', "
+                    + "spool.drain.interval='100'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            Thread.sleep(1000);
+
+            broker.stop();
+            broker.waitUntilStopped();
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+            long deadline = System.currentTimeMillis() + 10000;
+            while (sinkMetric("SpoolTestApp", "SpooledCount") < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(sinkMetric("SpoolTestApp", "SpooledCount"), 2L);
+            Assert.assertEquals(sinkMetric("SpoolTestApp", "SpoolDepth"), 2L);
+            Assert.assertEquals(sinkMetric("SpoolTestApp", "SpoolDrainedCount"), 0L);
+
+            // new events are spooled behind the events waiting for the broker
+            inputStream.send(new Object[]{"PAUL", 41, "UK"});
+            broker = startBroker("spool-broker", brokerUrl);
+            inputStream.send(new Object[]{"ANNA", 35, "France"});
+
+            Assert.assertTrue(resultContainer.assertMessageOrder("JAMES", "MIKE", "JOHN", "PAUL", "ANNA"));
+            Assert.assertEquals(sinkMetric("SpoolTestApp", "SpoolDepth"), 0L);
+            Assert.assertEquals(sinkMetric("SpoolTestApp", "SpoolDrainedCount"), 4L);
+        } finally {
+            consumer.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+            broker.stop();
+            deleteRecursively(spoolDirectory);
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to send its queued, batched and in-flight events when the app shuts down.
+     */
+    @Test(dependsOnMethods = "jmsSpoolPublishTest")
+    public void jmsDrainOnShutdownTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(6);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.queue.size='100', "
+                    + "batch.size='100', "
+                    + "batch.timeout='60000', "
+                    + "drain.timeout='5000'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+            // the batch is only committed when the sink disconnects
+            executionPlanRuntime.shutdown();
+            executionPlanRuntime = null;
+
+            // the publishes running on the publisher threads are waited for as well
+            executionPlanRuntime = siddhiManager.createSiddhiAppRuntime("" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.max.in.flight='4', "
+                    + "drain.timeout='5000'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);");
+            inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"PAUL", 41, "UK"});
+            inputStream.send(new Object[]{"ANNA", 35, "France"});
+            inputStream.send(new Object[]{"LISA", 28, "Spain"});
+            executionPlanRuntime.shutdown();
+            executionPlanRuntime = null;
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+            Assert.assertTrue(resultContainer.assertMessageContent("PAUL"));
+            Assert.assertTrue(resultContainer.assertMessageContent("ANNA"));
+            Assert.assertTrue(resultContainer.assertMessageContent("LISA"));
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish passed through events as map messages written from the stream
+     * definition.
+     */
+    @Test(dependsOnMethods = "jmsDrainOnShutdownTest")
+    public void jmsPassThroughMapPublishTest() throws InterruptedException, JMSException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        Connection connection = new ActiveMQConnectionFactory("vm://localhost").createConnection();
+        try {
+            //init
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue("DAS_JMS_MAP_TEST"));
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='passThrough'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_MAP_TEST', "
+                    + "batch.size='2'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, id long, height float, weight double, "
+                    + "active bool);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, 4000000000L, 1.8f, 72.5, true});
+            inputStream.send(new Object[]{"MIKE", 23, 1L, 1.7f, 65.0, false});
+            inputStream.send(new Object[]{"JOHN", 30, 2L, 1.9f, 80.25, true});
+
+            List<MapMessage> messages = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Message message = consumer.receive(10000);
+                Assert.assertTrue(message instanceof MapMessage, "Expected a MapMessage but received " + message);
+                messages.add((MapMessage) message);
+            }
+            MapMessage first = messages.get(0);
+            // the attributes are written with their typed setters, so they are read back with the same types
+            Assert.assertEquals(first.getObject("name"), "JAMES");
+            Assert.assertEquals(first.getObject("age"), 23);
+            Assert.assertTrue(first.getObject("age") instanceof Integer);
+            Assert.assertEquals(first.getObject("id"), 4000000000L);
+            Assert.assertTrue(first.getObject("id") instanceof Long);
+            Assert.assertEquals(first.getObject("height"), 1.8f);
+            Assert.assertTrue(first.getObject("height") instanceof Float);
+            Assert.assertEquals(first.getObject("weight"), 72.5);
+            Assert.assertTrue(first.getObject("weight") instanceof Double);
+            Assert.assertEquals(first.getObject("active"), Boolean.TRUE);
+            Assert.assertTrue(first.getObject("active") instanceof Boolean);
+            Assert.assertEquals(messages.get(1).getObject("name"), "MIKE");
+            Assert.assertEquals(messages.get(1).getObject("active"), Boolean.FALSE);
+            Assert.assertEquals(messages.get(2).getObject("name"), "JOHN");
+            Assert.assertEquals(messages.get(2).getObject("weight"), 80.25);
+        } finally {
+            connection.close();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to spread the messages over several brokers, and to re-send the uncommitted
+     * batch of a broker which goes down to the remaining broker.
+     */
+    @Test(dependsOnMethods = "jmsPassThroughMapPublishTest")
+    public void jmsMultiBrokerPublishTest() throws Exception {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(5);
+        String firstBrokerUrl = "tcp://localhost:" + MULTI_BROKER_PORT;
+        String secondBrokerUrl = "tcp://localhost:" + (MULTI_BROKER_PORT + 1);
+        BrokerService firstBroker = startBroker("first-broker", firstBrokerUrl);
+        BrokerService secondBroker = startBroker("second-broker", secondBrokerUrl);
+        QueueConsumer consumer = new QueueConsumer(new ActiveMQConnectionFactory(firstBrokerUrl),
+                "DAS_JMS_MULTI_BROKER_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(consumer);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='" + firstBrokerUrl + "," + secondBrokerUrl + "',"
+                    + "destination='DAS_JMS_MULTI_BROKER_TEST', "
+                    + "load.balance.strategy='round-robin', "
+                    + "batch.size='4', "
+                    + "batch.timeout='60000', "
+                    + "broker.probe.interval='60000'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            // one uncommitted event on each broker
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+
+            secondBroker.stop();
+            secondBroker.waitUntilStopped();
+            Thread.sleep(1000);
+            // the second broker is ejected on its next send, and its uncommitted event is sent to the first broker
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+            inputStream.send(new Object[]{"PAUL", 41, "UK"});
+            inputStream.send(new Object[]{"ANNA", 35, "France"});
+            executionPlanRuntime.shutdown();
+            executionPlanRuntime = null;
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+            Assert.assertTrue(resultContainer.assertMessageContent("PAUL"));
+            Assert.assertTrue(resultContainer.assertMessageContent("ANNA"));
+        } finally {
+            consumer.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+            firstBroker.stop();
+            secondBroker.stop();
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish every event to the shard queue of its partition key.
+     */
+    @Test(dependsOnMethods = "jmsMultiBrokerPublishTest")
+    public void jmsPartitionedPublishTest() throws InterruptedException, JMSException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        Connection connection = new ActiveMQConnectionFactory("vm://localhost").createConnection();
+        try {
+            //init
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer[] consumers = new MessageConsumer[2];
+            for (int i = 0; i < consumers.length; i++) {
+                consumers[i] = session.createConsumer(session.createQueue("DAS_JMS_PARTITION_TEST." + i));
+            }
+
+            // deploying the execution plan, without a publish queue so that the partitioned one is used
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_PARTITION_TEST', "
+                    + "publisher.thread.count='2', "
+                    + "partition.key='{{country}}', "
+                    + "partition.count='2'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            List<List<String>> expected = Arrays.asList(new ArrayList<>(), new ArrayList<>());
+            String[][] events = {{"JAMES", "USA"}, {"MIKE", "Germany"}, {"JOHN", "Canada"}, {"PAUL", "USA"},
+                    {"ANNA", "Germany"}, {"LISA", "USA"}};
+            for (String[] event : events) {
+                inputStream.send(new Object[]{event[0], 30, event[1]});
+                expected.get(JMSPartitionUtil.partitionOf(event[1], 2)).add(event[0]);
+            }
+
+            // every key goes to its own shard, in the order its events were published
+            for (int i = 0; i < consumers.length; i++) {
+                for (String name : expected.get(i)) {
+                    Message message = consumers[i].receive(10000);
+                    Assert.assertNotNull(message, "Did not receive " + name + " on shard " + i);
+                    String text = ((TextMessage) message).getText();
+                    Assert.assertTrue(text.contains("<name>" + name + "</name>"), text);
+                }
+                Assert.assertNull(consumers[i].receive(500));
+            }
+        } finally {
+            connection.close();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to commit the events it sent when Siddhi takes a snapshot.
+     */
+    @Test(dependsOnMethods = "jmsPartitionedPublishTest")
+    public void jmsExactlyOncePublishTest() throws InterruptedException, JMSException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        Connection connection = new ActiveMQConnectionFactory("vm://localhost").createConnection();
+        try {
+            //init
+            connection.start();
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer consumer = session.createConsumer(session.createQueue("DAS_JMS_EXACTLY_ONCE_TEST"));
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            siddhiManager.setPersistenceStore(new InMemoryPersistenceStore());
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_EXACTLY_ONCE_TEST', "
+                    + "exactly.once='true'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+            Assert.assertNull(consumer.receive(1000), "No event should be visible before the snapshot");
+
+            // the events are committed by the snapshot
+            executionPlanRuntime.persist();
+            assertReceived(consumer, "JAMES", "MIKE", "JOHN");
+
+            // the events sent after the restored snapshot are rolled back
+            inputStream.send(new Object[]{"PAUL", 41, "UK"});
+            inputStream.send(new Object[]{"ANNA", 35, "France"});
+            executionPlanRuntime.restoreLastRevision();
+            inputStream.send(new Object[]{"LISA", 28, "Spain"});
+            executionPlanRuntime.persist();
+            assertReceived(consumer, "LISA");
+            Assert.assertNull(consumer.receive(1000), "The rolled back events should not be received");
+        } finally {
+            connection.close();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink in exactly once mode without a persistence store to take its snapshots.
+     */
+    @Test(dependsOnMethods = "jmsExactlyOncePublishTest", expectedExceptions = SiddhiAppCreationException.class)
+    public void jmsExactlyOnceWithoutPersistenceTest() {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        try {
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_EXACTLY_ONCE_TEST', "
+                    + "exactly.once='true'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+        } finally {
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to limit the rate of the messages it sends to each destination.
+     */
+    @Test(dependsOnMethods = "jmsExactlyOnceWithoutPersistenceTest")
+    public void jmsRateLimitedPublishTest() throws InterruptedException, JMException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(3);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@App:name('RateLimitTestApp')" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.queue.size='100', "
+                    + "rate.limit.messages='2', "
+                    + "rate.limit.scope='destination', "
+                    + "rate.limit.adaptive='true'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            long start = System.currentTimeMillis();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+            // the burst of two messages goes through, and the third waits for half a second
+            Assert.assertTrue(System.currentTimeMillis() - start >= 450, "The third message was not throttled");
+            Assert.assertEquals(sinkMetric("RateLimitTestApp", "ThrottledCount"), 1L);
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish without recording its metrics and publish timings.
+     */
+    @Test(dependsOnMethods = "jmsRateLimitedPublishTest")
+    public void jmsMetricsDisabledPublishTest() throws InterruptedException, JMException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(3);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@App:name('MetricsDisabledTestApp')" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.queue.size='100', "
+                    + "metrics.enabled='false'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+            // neither the counters nor the timings of the sink are registered
+            Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName(
+                    "io.siddhi.extension.io.jms:siddhiApp=" + ObjectName.quote("MetricsDisabledTestApp") + ",*"),
+                    null).isEmpty());
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to publish on virtual threads, or on platform threads before Java 21.
+     */
+    @Test(dependsOnMethods = "jmsMetricsDisabledPublishTest")
+    public void jmsVirtualThreadPublishTest() throws InterruptedException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        ResultContainer resultContainer = new ResultContainer(3);
+        JMSClient client = new JMSClient("activemq", "", "DAS_JMS_OUTPUT_TEST", resultContainer);
+        try {
+            //init
+            Thread listenerThread = new Thread(client);
+            listenerThread.start();
+            Thread.sleep(1000);
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_OUTPUT_TEST', "
+                    + "publisher.thread.type='virtual', "
+                    + "publisher.max.in.flight='2'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            Assert.assertTrue(resultContainer.assertMessageContent("JAMES"));
+            Assert.assertTrue(resultContainer.assertMessageContent("MIKE"));
+            Assert.assertTrue(resultContainer.assertMessageContent("JOHN"));
+        } finally {
+            client.shutdown();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for configure the JMS Sink to send requests, and the JMS reply source to receive their replies.
+     */
+    @Test(dependsOnMethods = "jmsVirtualThreadPublishTest")
+    public void jmsRequestReplyTest() throws InterruptedException, JMSException {
+        SiddhiAppRuntime executionPlanRuntime = null;
+        List<String> replies = Collections.synchronizedList(new ArrayList<>());
+        List<String> correlationIds = Collections.synchronizedList(new ArrayList<>());
+        Connection responderConnection = new ActiveMQConnectionFactory("vm://localhost").createConnection();
+        try {
+            // echoes every request back to its reply destination
+            Session responderSession = responderConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer replyProducer = responderSession.createProducer(null);
+            responderSession.createConsumer(responderSession.createQueue("DAS_JMS_REQUEST_TEST"))
+                    .setMessageListener(request -> {
+                        try {
+                            TextMessage reply = responderSession.createTextMessage(
+                                    ((TextMessage) request).getText());
+                            reply.setJMSCorrelationID(request.getJMSCorrelationID());
+                            replyProducer.send(request.getJMSReplyTo(), reply);
+                        } catch (JMSException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+            responderConnection.start();
+
+            // deploying the execution plan
+            SiddhiManager siddhiManager = new SiddhiManager();
+            String inStreamDefinition = "" +
+                    "@sink(type='jms', @map(type='xml'), "
+                    + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                    + "provider.url='vm://localhost',"
+                    + "destination='DAS_JMS_REQUEST_TEST', "
+                    + "sink.id='enrich'"
+                    + ")" +
+                    "define stream inputStream (name string, age int, country string);"
+                    + "@source(type='jms-reply', sink.id='enrich', @map(type='xml', "
+                    + "@attributes(correlationId='trp:JMS_CORRELATION_ID', name='name', age='age', "
+                    + "country='country')))"
+                    + "define stream replyStream (correlationId string, name string, age int, country string);";
+            executionPlanRuntime = siddhiManager.
+                    createSiddhiAppRuntime(inStreamDefinition);
+            executionPlanRuntime.addCallback("replyStream", new StreamCallback() {
+                @Override
+                public void receive(Event[] events) {
+                    for (Event event : events) {
+                        correlationIds.add((String) event.getData(0));
+                        replies.add((String) event.getData(1));
+                    }
+                }
+            });
+            InputHandler inputStream = executionPlanRuntime.getInputHandler("inputStream");
+            executionPlanRuntime.start();
+            inputStream.send(new Object[]{"JAMES", 23, "USA"});
+            inputStream.send(new Object[]{"MIKE", 23, "Germany"});
+            inputStream.send(new Object[]{"JOHN", 30, "Canada"});
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (replies.size() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(replies.size(), 3);
+            Assert.assertTrue(replies.containsAll(Arrays.asList("JAMES", "MIKE", "JOHN")));
+            Assert.assertEquals(new HashSet<>(correlationIds).size(), 3);
+        } finally {
+            responderConnection.close();
+            if (executionPlanRuntime != null) {
+                executionPlanRuntime.shutdown();
+            }
+        }
+    }
+
+    private static void assertReceived(MessageConsumer consumer, String... names) throws JMSException {
+        for (String name : names) {
+            Message message = consumer.receive(10000);
+            Assert.assertNotNull(message, "Did not receive " + name);
+            String text = ((TextMessage) message).getText();
+            Assert.assertTrue(text.contains("<name>" + name + "</name>"), text);
+        }
+    }
+
+    private static BrokerService startBroker(String name, String url) throws Exception {
+        BrokerService broker = new BrokerService();
+        broker.setBrokerName(name);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.setUseShutdownHook(false);
+        broker.addConnector(url);
+        broker.start();
+        broker.waitUntilStarted();
+        return broker;
+    }
+
+    private static long sinkMetric(String siddhiApp, String attribute) throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> names = mBeanServer.queryNames(new ObjectName("io.siddhi.extension.io.jms:type=Sink,"
+                + "siddhiApp=" + ObjectName.quote(siddhiApp) + ",*"), null);
+        Assert.assertEquals(names.size(), 1);
+        return (Long) mBeanServer.getAttribute(names.iterator().next(), attribute);
+    }
+
+    private static void deleteRecursively(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
 }
@@ -0,0 +1,264 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.sink;
+
+import io.siddhi.core.event.Event;
+import io.siddhi.core.util.transport.DynamicOptions;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test cases for the store-and-forward spool of the JMS sink.
+ */
+public class JMSSpoolTestCase {
+    private File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("jms-spool").toFile();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testTypedRecordRoundTrip() throws IOException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", "JAMES");
+        map.put("age", 23);
+        map.put("id", 4000000000L);
+        map.put("height", 1.8f);
+        map.put("weight", 72.5);
+        map.put("active", true);
+        map.put("country", null);
+        DynamicOptions options = new DynamicOptions(new Event(1234L, new Object[]{"JAMES", 23, 4000000000L, 1.8f,
+                72.5, false, null}));
+        JMSSpool.Record record = JMSSpool.decode(JMSSpool.encode("queue", map, options));
+        Assert.assertEquals(record.getDestination(), "queue");
+        Assert.assertEquals(record.getPayload(), map);
+        Assert.assertTrue(((Map<?, ?>) record.getPayload()).get("age") instanceof Integer);
+        Assert.assertTrue(((Map<?, ?>) record.getPayload()).get("id") instanceof Long);
+        Assert.assertTrue(((Map<?, ?>) record.getPayload()).get("height") instanceof Float);
+        Assert.assertTrue(((Map<?, ?>) record.getPayload()).get("weight") instanceof Double);
+        Assert.assertTrue(((Map<?, ?>) record.getPayload()).get("active") instanceof Boolean);
+        Event event = record.getOptions().getEvent();
+        Assert.assertEquals(event.getTimestamp(), 1234L);
+        Assert.assertEquals(event.getData(), options.getEvent().getData());
+    }
+
+    @Test
+    public void testEnvelopeRoundTrip() throws IOException {
+        JMSSpool.Record text = JMSSpool.decode(JMSSpool.encode("queue", new JMSEnvelope("a|b", 2, "|")));
+        Assert.assertNull(text.getOptions());
+        JMSEnvelope envelope = (JMSEnvelope) text.getPayload();
+        Assert.assertEquals(envelope.getPayload(), "a|b");
+        Assert.assertEquals(envelope.getEventCount(), 2);
+        Assert.assertEquals(envelope.getDelimiter(), "|");
+
+        ByteBuffer buffer = ByteBuffer.allocate(3);
+        buffer.put(new byte[]{1, 2, 3});
+        // un-flipped buffers are spooled in full
+        JMSSpool.Record bytes = JMSSpool.decode(JMSSpool.encode("topic", buffer));
+        Assert.assertEquals(bytes.getDestination(), "topic");
+        Assert.assertEquals(bytes.getPayload(), ByteBuffer.wrap(new byte[]{1, 2, 3}));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testUnsupportedValueType() throws IOException {
+        Map<String, Object> map = new HashMap<>();
+        map.put("value", new Object());
+        JMSSpool.encode("queue", map);
+    }
+
+    @Test
+    public void testUnsupportedEventRejected() throws IOException {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSSpool spool = new JMSSpool(directory, 4096, 4096, metrics);
+        try {
+            DynamicOptions options = new DynamicOptions(new Event(0, new Object[]{new Object()}));
+            Assert.assertFalse(spool.append("queue", "event", options));
+            Assert.assertTrue(spool.isEmpty());
+            Assert.assertEquals(metrics.getSpoolDroppedCount(), 1);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testFullSpoolRejectsEvents() throws IOException {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSSpool spool = new JMSSpool(directory, 256, 256, metrics);
+        try {
+            int spooled = 0;
+            while (spool.append("queue", "0123456789012345678901234567890123456789", null)) {
+                spooled++;
+            }
+            Assert.assertTrue(spooled > 0);
+            Assert.assertFalse(spool.append("queue", "event", null));
+            Assert.assertEquals(metrics.getSpooledCount(), spooled);
+            Assert.assertEquals(metrics.getSpoolFullCount(), 2);
+            Assert.assertEquals(metrics.getSpoolDroppedCount(), 0);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testDrainInOrderAfterFailures() throws IOException, InterruptedException {
+        JMSSinkMetrics metrics = new JMSSinkMetrics();
+        JMSSpool spool = new JMSSpool(directory, 4096, 8192, metrics);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        List<DynamicOptions> sentOptions = new CopyOnWriteArrayList<>();
+        AtomicInteger failures = new AtomicInteger(3);
+        try {
+            for (int i = 0; i < 5; i++) {
+                Assert.assertTrue(spool.append("queue", "event" + i, new DynamicOptions(new Event(i,
+                        new Object[]{"key" + i}))));
+            }
+            spool.startDrainer("spool-drainer", (destination, payload, options) -> {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IOException("Broker unavailable");
+                }
+                sent.add(destination + ":" + payload);
+                sentOptions.add(options);
+            }, 10);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!spool.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            spool.stopDrainer();
+            Assert.assertTrue(spool.isEmpty());
+            Assert.assertEquals(sent.size(), 5);
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(sent.get(i), "queue:event" + i);
+                Assert.assertEquals(sentOptions.get(i).getEvent().getTimestamp(), i);
+                Assert.assertEquals(sentOptions.get(i).getEvent().getData(), new Object[]{"key" + i});
+            }
+            Assert.assertEquals(metrics.getSpoolDrainedCount(), 5);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testRecoverAfterReopen() throws IOException, InterruptedException {
+        JMSSpool spool = new JMSSpool(directory, 256, 1024, new JMSSinkMetrics());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(spool.append("queue", "event" + i, null));
+        }
+        spool.close();
+
+        spool = new JMSSpool(directory, 256, 1024, new JMSSinkMetrics());
+        List<Object> sent = new CopyOnWriteArrayList<>();
+        try {
+            Assert.assertFalse(spool.isEmpty());
+            spool.startDrainer("spool-drainer", (destination, payload, options) -> sent.add(payload), 10);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!spool.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            spool.stopDrainer();
+            Assert.assertEquals(sent.size(), 10);
+            for (int i = 0; i < 10; i++) {
+                Assert.assertEquals(sent.get(i), "event" + i);
+            }
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testDrainedSegmentsAreUnmapped() throws IOException, InterruptedException {
+        JMSSpool spool = new JMSSpool(directory, 256, 4096, new JMSSinkMetrics());
+        List<Object> sent = new CopyOnWriteArrayList<>();
+        try {
+            // about 10 events per segment, so the events span several segments
+            for (int i = 0; i < 60; i++) {
+                Assert.assertTrue(spool.append("queue", "event" + i, null));
+            }
+            Assert.assertTrue(segmentFiles().size() >= 5, segmentFiles().toString());
+            spool.startDrainer("spool-drainer", (destination, payload, options) -> sent.add(payload), 10);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!spool.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            spool.stopDrainer();
+            Assert.assertEquals(sent.size(), 60);
+            for (int i = 0; i < 60; i++) {
+                Assert.assertEquals(sent.get(i), "event" + i);
+            }
+            // the segment being written to and a single spare are kept, the drained ones are deleted
+            Assert.assertTrue(segmentFiles().size() <= 2, segmentFiles().toString());
+            // only the segment being written to stays mapped, the spare and the deleted segments are unmapped
+            Assert.assertTrue(mappedSegments() <= 1, "Drained segments should be unmapped");
+
+            for (int i = 0; i < 10; i++) {
+                Assert.assertTrue(spool.append("queue", "again" + i, null));
+            }
+            Assert.assertTrue(segmentFiles().size() <= 3, segmentFiles().toString());
+        } finally {
+            spool.close();
+        }
+        Assert.assertEquals(mappedSegments(), 0, "Closing the spool should unmap its segments");
+    }
+
+    private List<String> segmentFiles() {
+        String[] names = directory.list((dir, name) -> name.endsWith(".spool"));
+        return names == null ? Collections.emptyList() : Arrays.asList(names);
+    }
+
+    /**
+     * @return the number of segment mappings of the spool directory, or 0 where the mappings cannot be listed.
+     */
+    private long mappedSegments() throws IOException {
+        Path maps = Paths.get("/proc/self/maps");
+        if (!Files.isReadable(maps)) {
+            return 0;
+        }
+        String prefix = directory.getCanonicalPath() + File.separator;
+        try (Stream<String> lines = Files.lines(maps)) {
+            return lines.filter(line -> line.contains(prefix)).count();
+        }
+    }
+}
@@ -81,4 +81,21 @@ public class ResultContainer {
         }
         return false;
     }
+
+    public Boolean assertMessageOrder(String... contents) {
+        if (!assertMessageContent(contents[0])) {
+            return false;
+        }
+        int index = 0;
+        for (String content : contents) {
+            while (index < results.size() && !results.get(index).contains(content)) {
+                index++;
+            }
+            if (index == results.size()) {
+                log.error("Message containing '" + content + "' is not received in the expected order.");
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,201 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.source;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+/**
+ * Test cases for the tracker batching the acknowledgements of the JMS source, against the redeliveries of a broker.
+ */
+public class JMSAckTrackerTestCase {
+    private static final String BROKER_URL = "vm://ack-tracker?broker.persistent=false&broker.useJmx=false";
+    private Connection connection;
+
+    @BeforeClass
+    public void connect() throws JMSException {
+        connection = new ActiveMQConnectionFactory(BROKER_URL).createConnection();
+        connection.start();
+    }
+
+    @AfterClass
+    public void close() throws JMSException {
+        connection.close();
+    }
+
+    @Test
+    public void testAcknowledgesOnceAllDeliveredAreProcessed() throws JMSException {
+        send("ACK_BATCH", "a1", "a2", "a3");
+        Session session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue("ACK_BATCH"));
+        JMSAckTracker tracker = new JMSAckTracker(2, 60000);
+        List<Long> numbers = deliver(tracker, receive(consumer, 3));
+        tracker.processed(numbers.get(0));
+        tracker.processed(numbers.get(1));
+        Assert.assertEquals(tracker.acknowledgeIfDue(true), 0, "a3 is delivered but not processed");
+        tracker.processed(numbers.get(2));
+        Assert.assertEquals(tracker.acknowledgeIfDue(false), 3);
+        Assert.assertEquals(tracker.acknowledgeIfDue(true), 0, "Nothing is left to acknowledge");
+        Assert.assertTrue(tracker.isEmpty());
+        session.close();
+        Assert.assertTrue(drain("ACK_BATCH").isEmpty(), "Acknowledged messages should not be redelivered");
+    }
+
+    @Test
+    public void testWaitsForAckBatchSizeOrInterval() throws JMSException {
+        send("ACK_INTERVAL", "a1");
+        Session session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue("ACK_INTERVAL"));
+        JMSAckTracker tracker = new JMSAckTracker(10, 60000);
+        tracker.processed(deliver(tracker, receive(consumer, 1)).get(0));
+        Assert.assertEquals(tracker.acknowledgeIfDue(false), 0, "Neither the batch size nor the interval is reached");
+        Assert.assertEquals(tracker.acknowledgeIfDue(true), 1);
+        session.close();
+
+        send("ACK_INTERVAL", "a2");
+        session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+        consumer = session.createConsumer(session.createQueue("ACK_INTERVAL"));
+        tracker = new JMSAckTracker(10, 0);
+        tracker.processed(deliver(tracker, receive(consumer, 1)).get(0));
+        Assert.assertEquals(tracker.acknowledgeIfDue(false), 1, "The ack interval has passed");
+        session.close();
+    }
+
+    @Test
+    public void testWatermarkWaitsForMessagesCompletedOutOfOrder() throws JMSException {
+        send("ACK_WATERMARK", "a1", "a2", "a3");
+        Session session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue("ACK_WATERMARK"));
+        JMSAckTracker tracker = new JMSAckTracker(1, 0);
+        List<Long> numbers = deliver(tracker, receive(consumer, 3));
+        // a2 and a3 complete on other workers before a1
+        tracker.processed(numbers.get(2));
+        tracker.processed(numbers.get(1));
+        Assert.assertEquals(tracker.acknowledgeIfDue(true), 0, "The watermark should not pass the unprocessed a1");
+        tracker.processed(numbers.get(0));
+        Assert.assertEquals(tracker.acknowledgeIfDue(false), 3);
+        Assert.assertTrue(tracker.isEmpty());
+        session.close();
+        Assert.assertTrue(drain("ACK_WATERMARK").isEmpty());
+    }
+
+    @Test
+    public void testFailedMessageHoldsWatermarkUntilRecovered() throws JMSException {
+        send("ACK_FAILED", "a1", "a2", "a3");
+        Session session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue("ACK_FAILED"));
+        JMSAckTracker tracker = new JMSAckTracker(1, 0);
+        List<Long> numbers = deliver(tracker, receive(consumer, 3));
+        tracker.processed(numbers.get(0));
+        tracker.failed();
+        tracker.processed(numbers.get(1));
+        tracker.processed(numbers.get(2));
+        Assert.assertEquals(tracker.acknowledgeIfDue(true), 0, "No acknowledgement should pass a failed message");
+
+        session.recover();
+        tracker.reset();
+        List<Message> redelivered = receive(consumer, 3);
+        // the processed a1 is redelivered along with the failed a2, as the acknowledgement covers the session
+        Assert.assertEquals(texts(redelivered), Arrays.asList("a1", "a2", "a3"));
+        Assert.assertTrue(redelivered.get(0).getJMSRedelivered());
+        for (long number : deliver(tracker, redelivered)) {
+            tracker.processed(number);
+        }
+        Assert.assertEquals(tracker.acknowledgeIfDue(false), 3);
+        session.close();
+        Assert.assertTrue(drain("ACK_FAILED").isEmpty());
+    }
+
+    @Test
+    public void testNothingIsTrackedAfterDupsOkBatch() throws JMSException {
+        send("ACK_DUPS_OK", "a1", "a2");
+        Session session = connection.createSession(false, Session.DUPS_OK_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue("ACK_DUPS_OK"));
+        JMSAckTracker tracker = new JMSAckTracker(1, 0);
+        for (long number : deliver(tracker, receive(consumer, 2))) {
+            tracker.processed(number);
+        }
+        Assert.assertFalse(tracker.isEmpty());
+        // as the batch consumer does once a batch of a DUPS_OK session is processed
+        tracker.reset();
+        Assert.assertTrue(tracker.isEmpty(), "A DUPS_OK session should leave nothing tracked after a batch");
+        session.close();
+    }
+
+    private void send(String queue, String... texts) throws JMSException {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(session.createQueue(queue));
+        for (String text : texts) {
+            producer.send(session.createTextMessage(text));
+        }
+        session.close();
+    }
+
+    private List<Message> drain(String queue) throws JMSException {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue(queue));
+        List<Message> messages = new ArrayList<>();
+        Message message;
+        while ((message = consumer.receive(500)) != null) {
+            messages.add(message);
+        }
+        session.close();
+        return messages;
+    }
+
+    private static List<Long> deliver(JMSAckTracker tracker, List<Message> messages) {
+        List<Long> numbers = new ArrayList<>();
+        for (Message message : messages) {
+            numbers.add(tracker.delivered(message));
+        }
+        return numbers;
+    }
+
+    private static List<Message> receive(MessageConsumer consumer, int count) throws JMSException {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message message = consumer.receive(5000);
+            Assert.assertNotNull(message, "Expected " + count + " messages, received " + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static List<String> texts(List<Message> messages) throws JMSException {
+        List<String> texts = new ArrayList<>();
+        for (Message message : messages) {
+            texts.add(((TextMessage) message).getText());
+        }
+        return texts;
+    }
+}
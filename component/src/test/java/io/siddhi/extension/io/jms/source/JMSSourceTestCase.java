@@ -22,6 +22,7 @@ import io.siddhi.core.SiddhiAppRuntime;
 import io.siddhi.core.SiddhiManager;
 import io.siddhi.core.event.Event;
 import io.siddhi.core.query.output.callback.QueryCallback;
+import io.siddhi.core.stream.input.InputHandler;
 import io.siddhi.core.stream.input.source.Source;
 import io.siddhi.core.util.EventPrinter;
 import io.siddhi.core.util.SiddhiTestHelper;
@@ -37,6 +38,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
 
 /**
  * Class implementing the Test cases for JMS Source.
@@ -495,6 +501,427 @@ public class JMSSourceTestCase {
         siddhiManager.shutdown();
     }
 
+    /**
+     * Test for configure the JMS source to receive messages compressed by the JMS sink, along with plain messages
+     * published to the same queue.
+     */
+    @Test(dependsOnMethods = "testJMSTopicSource7")
+    public void testJMSCompressedSource() throws InterruptedException {
+        AtomicInteger eventCount = new AtomicInteger(0);
+        receivedEventNameList = new ArrayList<>(3);
+
+        // starting the ActiveMQ broker
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(PROVIDER_URL);
+
+        // deploying the execution plan
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String streams = ""
+                + "@source(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_COMPRESSED_TEST'"
+                + ")"
+                + "define stream inputStream (name string, age int, country string);"
+                + "@sink(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_COMPRESSED_TEST', "
+                + "compression='gzip'"
+                + ")"
+                + "define stream gzipStream (name string, age int, country string);"
+                + "@sink(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_COMPRESSED_TEST', "
+                + "compression='deflate'"
+                + ")"
+                + "define stream deflateStream (name string, age int, country string);";
+        String query = ("@info(name = 'query1') "
+                + "from inputStream "
+                + "select *  "
+                + "insert into outputStream;");
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(streams + query);
+
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                for (Event event : inEvents) {
+                    eventCount.incrementAndGet();
+                    receivedEventNameList.add(event.getData(0).toString());
+                }
+            }
+        });
+        executionPlanRuntime.start();
+        executionPlanRuntime.getInputHandler("gzipStream").send(new Object[]{"John", 22, "US"});
+        SiddhiTestHelper.waitForEvents(waitTime, 1, eventCount, timeout);
+        executionPlanRuntime.getInputHandler("deflateStream").send(new Object[]{"Mike", 24, "US"});
+        SiddhiTestHelper.waitForEvents(waitTime, 2, eventCount, timeout);
+        List<String> messageList = new ArrayList<>(1);
+        messageList.add("<events><event><name>Anna</name><age>35</age><country>IT</country></event></events>");
+        publishEvents(null, "DAS_JMS_COMPRESSED_TEST", "activemq", "text", messageList);
+        List<String> expected = new ArrayList<>(3);
+        expected.add("John");
+        expected.add("Mike");
+        expected.add("Anna");
+        SiddhiTestHelper.waitForEvents(waitTime, 3, eventCount, timeout);
+        Assert.assertEquals(eventCount.intValue(), 3, "Event count should be equal to three.");
+        AssertJUnit.assertEquals("JMS Source expected input not received", expected, receivedEventNameList);
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Test for configure the JMS source to receive envelopes of events packed by the JMS sink.
+     */
+    @Test(dependsOnMethods = "testJMSCompressedSource")
+    public void testJMSEnvelopeSource() throws InterruptedException {
+        AtomicInteger eventCount = new AtomicInteger(0);
+        receivedEventNameList = new ArrayList<>(4);
+
+        // starting the ActiveMQ broker
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(PROVIDER_URL);
+
+        // deploying the execution plan
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String streams = ""
+                + "@source(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_ENVELOPE_TEST'"
+                + ")"
+                + "define stream inputStream (name string, age int, country string);"
+                + "@sink(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_ENVELOPE_TEST', "
+                + "envelope.size='3', "
+                + "envelope.timeout='200', "
+                + "compression='gzip'"
+                + ")"
+                + "define stream envelopeStream (name string, age int, country string);";
+        String query = ("@info(name = 'query1') "
+                + "from inputStream "
+                + "select *  "
+                + "insert into outputStream;");
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(streams + query);
+
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                for (Event event : inEvents) {
+                    eventCount.incrementAndGet();
+                    receivedEventNameList.add(event.getData(0).toString());
+                }
+            }
+        });
+        executionPlanRuntime.start();
+        InputHandler envelopeStream = executionPlanRuntime.getInputHandler("envelopeStream");
+        envelopeStream.send(new Object[]{"John", 22, "US"});
+        envelopeStream.send(new Object[]{"Mike", 24, "US"});
+        envelopeStream.send(new Object[]{"Anna", 35, "IT"});
+        // the last event is sent once the envelope times out
+        envelopeStream.send(new Object[]{"Paul", 41, "FR"});
+        List<String> expected = new ArrayList<>(4);
+        expected.add("John");
+        expected.add("Mike");
+        expected.add("Anna");
+        expected.add("Paul");
+        SiddhiTestHelper.waitForEvents(waitTime, 4, eventCount, timeout);
+        Assert.assertEquals(eventCount.intValue(), 4, "Event count should be equal to four.");
+        AssertJUnit.assertEquals("JMS Source expected input not received", expected, receivedEventNameList);
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Test for configure the JMS source to receive messages in batches, with a final batch completed by the batch
+     * timeout.
+     */
+    @Test(dependsOnMethods = "testJMSEnvelopeSource")
+    public void testJMSBatchedSource() throws InterruptedException {
+        AtomicInteger eventCount = new AtomicInteger(0);
+        receivedEventNameList = new ArrayList<>(5);
+
+        // starting the ActiveMQ broker
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(PROVIDER_URL);
+
+        // deploying the execution plan
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String inStreamDefinition = ""
+                + "@source(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_BATCH_TEST', "
+                + "batch.size='3', "
+                + "batch.timeout='200'"
+                + ")"
+                + "define stream inputStream (name string, age int, country string);";
+        String query = ("@info(name = 'query1') "
+                + "from inputStream "
+                + "select *  "
+                + "insert into outputStream;");
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                for (Event event : inEvents) {
+                    eventCount.incrementAndGet();
+                    receivedEventNameList.add(event.getData(0).toString());
+                }
+            }
+        });
+        executionPlanRuntime.start();
+        List<String> messageList = new ArrayList<>(5);
+        List<String> expected = new ArrayList<>(5);
+        for (String name : new String[]{"John", "Mike", "Anna", "Paul", "Mary"}) {
+            messageList.add("<events><event><name>" + name + "</name><age>30</age><country>US</country></event>"
+                    + "</events>");
+            expected.add(name);
+        }
+        publishEvents(null, "DAS_JMS_BATCH_TEST", "activemq", "text", messageList);
+        SiddhiTestHelper.waitForEvents(waitTime, 5, eventCount, timeout);
+        Assert.assertEquals(eventCount.intValue(), 5, "Event count should be equal to five.");
+        AssertJUnit.assertEquals("JMS Source expected input not received", expected, receivedEventNameList);
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Test for configure the JMS source to acknowledge messages in batches in client acknowledgement mode, where
+     * the messages processed before the source stops are acknowledged and not redelivered.
+     */
+    @Test(dependsOnMethods = "testJMSBatchedSource")
+    public void testJMSClientAcknowledgedSource() throws InterruptedException {
+        AtomicInteger eventCount = new AtomicInteger(0);
+        receivedEventNameList = new ArrayList<>(3);
+
+        // starting the ActiveMQ broker
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(PROVIDER_URL);
+
+        // deploying the execution plan
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String inStreamDefinition = ""
+                + "@source(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_CLIENT_ACK_TEST', "
+                + "acknowledgement.mode='client', "
+                + "ack.batch.size='2', "
+                + "ack.batch.interval='60000'"
+                + ")"
+                + "define stream inputStream (name string, age int, country string);";
+        String query = ("@info(name = 'query1') "
+                + "from inputStream "
+                + "select *  "
+                + "insert into outputStream;");
+        QueryCallback queryCallback = new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                for (Event event : inEvents) {
+                    eventCount.incrementAndGet();
+                    receivedEventNameList.add(event.getData(0).toString());
+                }
+            }
+        };
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        executionPlanRuntime.addCallback("query1", queryCallback);
+        executionPlanRuntime.start();
+        List<String> messageList = new ArrayList<>(3);
+        List<String> expected = new ArrayList<>(3);
+        for (String name : new String[]{"John", "Mike", "Anna"}) {
+            messageList.add("<events><event><name>" + name + "</name><age>30</age><country>US</country></event>"
+                    + "</events>");
+            expected.add(name);
+        }
+        publishEvents(null, "DAS_JMS_CLIENT_ACK_TEST", "activemq", "text", messageList);
+        SiddhiTestHelper.waitForEvents(waitTime, 3, eventCount, timeout);
+        // the last message is only acknowledged when the source stops
+        executionPlanRuntime.shutdown();
+
+        executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+        executionPlanRuntime.addCallback("query1", queryCallback);
+        executionPlanRuntime.start();
+        Thread.sleep(1000);
+        Assert.assertEquals(eventCount.intValue(), 3, "Event count should be equal to three.");
+        AssertJUnit.assertEquals("JMS Source expected input not received", expected, receivedEventNameList);
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Test for configure the JMS source to receive messages in transactions committed per batch.
+     */
+    @Test(dependsOnMethods = "testJMSClientAcknowledgedSource")
+    public void testJMSTransactedSource() throws InterruptedException {
+        AtomicInteger eventCount = new AtomicInteger(0);
+        receivedEventNameList = new ArrayList<>(3);
+
+        // starting the ActiveMQ broker
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(PROVIDER_URL);
+
+        // deploying the execution plan
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String inStreamDefinition = ""
+                + "@source(type='jms', @map(type='xml'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_TRANSACTED_TEST', "
+                + "transacted='true', "
+                + "batch.size='2', "
+                + "batch.timeout='200'"
+                + ")"
+                + "define stream inputStream (name string, age int, country string);";
+        String query = ("@info(name = 'query1') "
+                + "from inputStream "
+                + "select *  "
+                + "insert into outputStream;");
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                for (Event event : inEvents) {
+                    eventCount.incrementAndGet();
+                    receivedEventNameList.add(event.getData(0).toString());
+                }
+            }
+        });
+        executionPlanRuntime.start();
+        List<String> messageList = new ArrayList<>(3);
+        List<String> expected = new ArrayList<>(3);
+        for (String name : new String[]{"John", "Mike", "Anna"}) {
+            messageList.add("<events><event><name>" + name + "</name><age>30</age><country>US</country></event>"
+                    + "</events>");
+            expected.add(name);
+        }
+        publishEvents(null, "DAS_JMS_TRANSACTED_TEST", "activemq", "text", messageList);
+        SiddhiTestHelper.waitForEvents(waitTime, 3, eventCount, timeout);
+        Assert.assertEquals(eventCount.intValue(), 3, "Event count should be equal to three.");
+        AssertJUnit.assertEquals("JMS Source expected input not received", expected, receivedEventNameList);
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Test for configure the JMS source to receive binary events sent as BytesMessages.
+     */
+    @Test(dependsOnMethods = "testJMSTransactedSource")
+    public void testJMSBytesMessageSource() throws InterruptedException {
+        AtomicInteger eventCount = new AtomicInteger(0);
+        receivedEventNameList = new ArrayList<>(3);
+
+        // starting the ActiveMQ broker
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(PROVIDER_URL);
+
+        // deploying the execution plan
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String streams = ""
+                + "@source(type='jms', @map(type='binary'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_BYTES_TEST'"
+                + ")"
+                + "define stream inputStream (name string, age int, country string);"
+                + "@sink(type='jms', @map(type='binary'), "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_BYTES_TEST'"
+                + ")"
+                + "define stream binaryStream (name string, age int, country string);";
+        String query = ("@info(name = 'query1') "
+                + "from inputStream "
+                + "select *  "
+                + "insert into outputStream;");
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(streams + query);
+
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                for (Event event : inEvents) {
+                    eventCount.incrementAndGet();
+                    receivedEventNameList.add(event.getData(0).toString());
+                }
+            }
+        });
+        executionPlanRuntime.start();
+        InputHandler binaryStream = executionPlanRuntime.getInputHandler("binaryStream");
+        binaryStream.send(new Object[]{"John", 22, "US"});
+        // every message body, small or large, is read into a buffer of its own
+        StringBuilder longName = new StringBuilder("Mike");
+        for (int i = 0; i < 500; i++) {
+            longName.append('-').append(i);
+        }
+        binaryStream.send(new Object[]{longName.toString(), 24, "US"});
+        binaryStream.send(new Object[]{"Anna", 35, "IT"});
+        List<String> expected = new ArrayList<>(3);
+        expected.add("John");
+        expected.add(longName.toString());
+        expected.add("Anna");
+        SiddhiTestHelper.waitForEvents(waitTime, 3, eventCount, timeout);
+        Assert.assertEquals(eventCount.intValue(), 3, "Event count should be equal to three.");
+        AssertJUnit.assertEquals("JMS Source expected input not received", expected, receivedEventNameList);
+        siddhiManager.shutdown();
+    }
+
+    /**
+     * Test for configure the JMS source to pass JMS headers, including absent ones, and custom message properties
+     * to the mapper, each at the position it was requested in.
+     */
+    @Test(dependsOnMethods = "testJMSBytesMessageSource")
+    public void testJMSTransportHeaderSource() throws InterruptedException, JMSException {
+        AtomicInteger eventCount = new AtomicInteger(0);
+        List<Object[]> receivedEvents = new ArrayList<>(1);
+
+        // starting the ActiveMQ broker
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(PROVIDER_URL);
+
+        // deploying the execution plan
+        SiddhiManager siddhiManager = new SiddhiManager();
+        String inStreamDefinition = ""
+                + "@source(type='jms', "
+                + "factory.initial='org.apache.activemq.jndi.ActiveMQInitialContextFactory', "
+                + "provider.url='vm://localhost',"
+                + "destination='DAS_JMS_HEADER_TEST', "
+                + "@map(type='xml', @attributes(replyTo='trp:JMS_REPLY_TO', destination='trp:JMS_DESTINATION', "
+                + "tenant='trp:tenant', name='name')))"
+                + "define stream inputStream (replyTo string, destination string, tenant string, name string);";
+        String query = ("@info(name = 'query1') "
+                + "from inputStream "
+                + "select *  "
+                + "insert into outputStream;");
+        SiddhiAppRuntime executionPlanRuntime = siddhiManager.createSiddhiAppRuntime(inStreamDefinition + query);
+
+        executionPlanRuntime.addCallback("query1", new QueryCallback() {
+            @Override
+            public void receive(long timeStamp, Event[] inEvents, Event[] removeEvents) {
+                EventPrinter.print(timeStamp, inEvents, removeEvents);
+                for (Event event : inEvents) {
+                    eventCount.incrementAndGet();
+                    receivedEvents.add(event.getData());
+                }
+            }
+        });
+        executionPlanRuntime.start();
+        Connection connection = connectionFactory.createConnection();
+        try {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(session.createQueue("DAS_JMS_HEADER_TEST"));
+            TextMessage message = session.createTextMessage("<event>\n"
+                    + "        <name>John</name>\n"
+                    + "    </event>\n");
+            message.setStringProperty("tenant", "acme");
+            producer.send(message);
+        } finally {
+            connection.close();
+        }
+        SiddhiTestHelper.waitForEvents(waitTime, 1, eventCount, timeout);
+        Assert.assertEquals(eventCount.intValue(), 1, "Event count should be equal to one.");
+        Assert.assertEquals(receivedEvents.get(0), new Object[]{null, "DAS_JMS_HEADER_TEST", "acme", "John"});
+        siddhiManager.shutdown();
+    }
+
     private void publishEvents(String topicName, String queueName, String broker, String format, String filePath)
             throws InterruptedException {
         JMSClient jmsClient = new JMSClient();
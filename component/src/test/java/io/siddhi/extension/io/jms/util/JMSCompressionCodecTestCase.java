@@ -0,0 +1,110 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Test cases for the compression codecs of JMS message bodies.
+ */
+public class JMSCompressionCodecTestCase {
+
+    @DataProvider(name = "codecs")
+    public Object[][] codecs() {
+        return new Object[][]{{JMSCompressionCodec.NONE}, {JMSCompressionCodec.GZIP}, {JMSCompressionCodec.DEFLATE}};
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testRoundTrip(JMSCompressionCodec codec) throws IOException {
+        byte[] data = new byte[100000];
+        Random random = new Random(42);
+        // half random and half repeated bytes, so that both compressible and incompressible data is covered
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i % 2 == 0 ? (byte) random.nextInt() : (byte) 'a';
+        }
+        byte[] compressed = codec.compress(data, 10, data.length - 20);
+        Assert.assertEquals(codec.decompress(compressed, data.length), Arrays.copyOfRange(data, 10,
+                data.length - 10));
+        Assert.assertEquals(codec.decompress(codec.compress(new byte[0], 0, 0), 1), new byte[0]);
+    }
+
+    @Test(dataProvider = "codecs")
+    public void testDecompressionWithinLimit(JMSCompressionCodec codec) throws IOException {
+        byte[] data = new byte[4096];
+        Assert.assertEquals(codec.decompress(codec.compress(data, 0, data.length), data.length), data);
+    }
+
+    @Test
+    public void testGzipDecompressionLimit() throws IOException {
+        assertLimited(JMSCompressionCodec.GZIP);
+    }
+
+    @Test
+    public void testDeflateDecompressionLimit() throws IOException {
+        assertLimited(JMSCompressionCodec.DEFLATE);
+    }
+
+    @Test
+    public void testNoneIsIdentity() throws IOException {
+        byte[] data = {1, 2, 3, 4, 5};
+        Assert.assertEquals(JMSCompressionCodec.NONE.compress(data, 1, 3), new byte[]{2, 3, 4});
+        Assert.assertSame(JMSCompressionCodec.NONE.decompress(data, 1), data);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncatedDeflateBody() throws IOException {
+        byte[] compressed = JMSCompressionCodec.DEFLATE.compress(new byte[1000], 0, 1000);
+        JMSCompressionCodec.DEFLATE.decompress(Arrays.copyOf(compressed, compressed.length / 2), 1000);
+    }
+
+    @Test
+    public void testFromString() {
+        Assert.assertEquals(JMSCompressionCodec.fromString(" Gzip "), JMSCompressionCodec.GZIP);
+        Assert.assertEquals(JMSCompressionCodec.fromString(JMSCompressionCodec.DEFLATE.getName()),
+                JMSCompressionCodec.DEFLATE);
+    }
+
+    /**
+     * Checks that a small body which expands far beyond the limit is rejected, and accepted with a large enough one.
+     */
+    private static void assertLimited(JMSCompressionCodec codec) throws IOException {
+        byte[] data = new byte[10 * 1024 * 1024];
+        byte[] compressed = codec.compress(data, 0, data.length);
+        Assert.assertTrue(compressed.length < 64 * 1024, "Zeros should compress well: " + compressed.length);
+        try {
+            codec.decompress(compressed, data.length - 1);
+            Assert.fail("Decompressing beyond the limit should fail.");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains(Integer.toString(data.length - 1)), e.getMessage());
+        }
+        try {
+            codec.decompress(compressed, 1000);
+            Assert.fail("Decompressing beyond the limit should fail.");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("1000"), e.getMessage());
+        }
+        Assert.assertEquals(codec.decompress(compressed, data.length).length, data.length);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Test cases for unpacking the envelopes of events sent by the JMS sink.
+ */
+public class JMSEnvelopeUtilTestCase {
+
+    @Test
+    public void testUnpackText() {
+        Assert.assertEquals(JMSEnvelopeUtil.unpackText("a|bc||d", "|", 4), new String[]{"a", "bc", "", "d"});
+        Assert.assertEquals(JMSEnvelopeUtil.unpackText("a<>b", "<>", 2), new String[]{"a", "b"});
+        Assert.assertEquals(JMSEnvelopeUtil.unpackText("a|b", "|", 1), new String[]{"a|b"});
+        Assert.assertEquals(JMSEnvelopeUtil.unpackText("", "|", 1), new String[]{""});
+    }
+
+    @Test
+    public void testUnpackBytes() {
+        ByteBuffer envelope = ByteBuffer.allocate(64);
+        envelope.putInt(3).put("abc".getBytes(StandardCharsets.UTF_8));
+        envelope.putInt(0);
+        envelope.putInt(2).put("de".getBytes(StandardCharsets.UTF_8));
+        envelope.flip();
+        ByteBuffer[] events = JMSEnvelopeUtil.unpackBytes(envelope, 3);
+        Assert.assertEquals(events.length, 3);
+        Assert.assertEquals(events[0], ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(events[1].remaining(), 0);
+        Assert.assertEquals(events[2], ByteBuffer.wrap("de".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(envelope.position(), 0, "The envelope should not be consumed");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroTextEventCount() {
+        JMSEnvelopeUtil.unpackText("a", "|", 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeTextEventCount() {
+        JMSEnvelopeUtil.unpackText("a", "|", -1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTextEventCountAboveMaximum() {
+        JMSEnvelopeUtil.unpackText("a", "|", JMSEnvelopeUtil.MAX_EVENT_COUNT + 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testTextEventCountBeyondEnvelopeSize() {
+        // a count which the envelope cannot hold is rejected before the events are allocated
+        JMSEnvelopeUtil.unpackText("a|b", "|", 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMissingTextEvents() {
+        JMSEnvelopeUtil.unpackText("a;b;c", "|", 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyTextDelimiter() {
+        JMSEnvelopeUtil.unpackText("a", "", 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroBinaryEventCount() {
+        JMSEnvelopeUtil.unpackBytes(ByteBuffer.allocate(8), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeBinaryEventCount() {
+        JMSEnvelopeUtil.unpackBytes(ByteBuffer.allocate(8), Integer.MIN_VALUE);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBinaryEventCountBeyondEnvelopeSize() {
+        JMSEnvelopeUtil.unpackBytes(ByteBuffer.allocate(8), 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBinaryEventLength() {
+        ByteBuffer envelope = ByteBuffer.allocate(8);
+        envelope.putInt(5).putInt(0);
+        envelope.flip();
+        JMSEnvelopeUtil.unpackBytes(envelope, 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeBinaryEventLength() {
+        ByteBuffer envelope = ByteBuffer.allocate(8);
+        envelope.putInt(-1).putInt(0);
+        envelope.flip();
+        JMSEnvelopeUtil.unpackBytes(envelope, 1);
+    }
+}
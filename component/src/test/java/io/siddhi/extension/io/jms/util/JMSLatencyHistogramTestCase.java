@@ -0,0 +1,100 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for the latency histograms of the JMS source and sink metrics.
+ */
+public class JMSLatencyHistogramTestCase {
+
+    @Test
+    public void testEmptyHistogram() {
+        JMSLatencyHistogram histogram = new JMSLatencyHistogram();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMeanMicros(), 0.0);
+        Assert.assertEquals(histogram.getPercentileMicros(99), 0);
+        Assert.assertEquals(histogram.getMaxMicros(), 0);
+    }
+
+    @Test
+    public void testPercentiles() {
+        JMSLatencyHistogram histogram = new JMSLatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        Assert.assertEquals(histogram.getCount(), 1000);
+        Assert.assertEquals(histogram.getMeanMicros(), 500.5, 0.001);
+        Assert.assertEquals(histogram.getMaxMicros(), 1000);
+        assertWithinError(histogram.getPercentileMicros(50), 500);
+        assertWithinError(histogram.getPercentileMicros(99), 990);
+        assertWithinError(histogram.getPercentileMicros(99.9), 999);
+        // the upper bound of the last bucket is capped by the maximum
+        Assert.assertEquals(histogram.getPercentileMicros(100), 1000);
+    }
+
+    @Test
+    public void testNegativeDurationsCountAsZero() {
+        JMSLatencyHistogram histogram = new JMSLatencyHistogram();
+        histogram.record(-5);
+        Assert.assertEquals(histogram.getCount(), 1);
+        Assert.assertEquals(histogram.getMeanMicros(), 0.0);
+        Assert.assertEquals(histogram.getPercentileMicros(50), 0);
+    }
+
+    @Test
+    public void testReset() {
+        JMSLatencyHistogram histogram = new JMSLatencyHistogram();
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+        histogram.reset();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMaxMicros(), 0);
+        Assert.assertEquals(histogram.getPercentileMicros(99), 0);
+
+        // readings after a reset only cover the durations recorded since
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+        Assert.assertEquals(histogram.getCount(), 1);
+        Assert.assertEquals(histogram.getMeanMicros(), 10.0, 0.001);
+        Assert.assertEquals(histogram.getMaxMicros(), 10);
+        Assert.assertEquals(histogram.getPercentileMicros(99), 10);
+    }
+
+    @Test
+    public void testBucketsBoundTheRelativeError() {
+        long[] values = {0, 1, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        int previous = -1;
+        for (long value : values) {
+            int index = JMSLatencyHistogram.indexOf(value);
+            Assert.assertTrue(index >= previous, "Buckets should be ordered by value");
+            previous = index;
+            long upperBound = JMSLatencyHistogram.upperBoundOf(index);
+            Assert.assertTrue(upperBound >= value, value + " is above the bound of its bucket " + upperBound);
+            Assert.assertTrue(upperBound - value <= value / 32, value + " is too far from its bound " + upperBound);
+        }
+    }
+
+    private static void assertWithinError(long actual, long expected) {
+        Assert.assertTrue(actual >= expected && actual <= expected + expected / 32 + 1,
+                "Expected about " + expected + " but found " + actual);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2019 WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package io.siddhi.extension.io.jms.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for mapping partition keys to the shards of a partitioned destination.
+ */
+public class JMSPartitionUtilTestCase {
+
+    @Test
+    public void testHashIsStable() {
+        // FNV-1a of the UTF-16 bytes, fixed so that shards never change across releases
+        Assert.assertEquals(JMSPartitionUtil.hash(""), 0xcbf29ce484222325L);
+        Assert.assertEquals(JMSPartitionUtil.hash("a"), 0x89be207b544f1e4L);
+        Assert.assertEquals(JMSPartitionUtil.hash("USA"), 0x5a64b363f1feb36aL);
+        Assert.assertEquals(JMSPartitionUtil.partitionOf("USA", 16), 14);
+        Assert.assertEquals(JMSPartitionUtil.partitionOf("USA", 1000), 881);
+        Assert.assertEquals(JMSPartitionUtil.partitionOf("customer-42", 16), 5);
+        Assert.assertEquals(JMSPartitionUtil.partitionOf("customer-42", 1), 0);
+    }
+
+    @Test
+    public void testNullKeyMapsToFirstShard() {
+        Assert.assertEquals(JMSPartitionUtil.partitionOf(null, 8), 0);
+    }
+
+    @Test
+    public void testKeysAreEvenlyDistributed() {
+        int partitionCount = 8;
+        int keyCount = 80000;
+        int[] counts = new int[partitionCount];
+        for (int i = 0; i < keyCount; i++) {
+            int partition = JMSPartitionUtil.partitionOf("customer-" + i, partitionCount);
+            Assert.assertTrue(partition >= 0 && partition < partitionCount, "Out of range: " + partition);
+            counts[partition]++;
+        }
+        int expected = keyCount / partitionCount;
+        for (int count : counts) {
+            Assert.assertTrue(Math.abs(count - expected) < expected / 10, "Uneven shard size: " + count);
+        }
+    }
+
+    @Test
+    public void testGrowingShardCountOnlyMovesKeysToNewShard() {
+        int moved = 0;
+        int keyCount = 10000;
+        for (int i = 0; i < keyCount; i++) {
+            String key = "customer-" + i;
+            int before = JMSPartitionUtil.partitionOf(key, 4);
+            int after = JMSPartitionUtil.partitionOf(key, 5);
+            if (before != after) {
+                Assert.assertEquals(after, 4, "Key " + key + " moved between existing shards");
+                moved++;
+            }
+        }
+        // about a fifth of the keys move to the new shard
+        Assert.assertTrue(Math.abs(moved - keyCount / 5) < keyCount / 50, "Moved " + moved + " keys");
+    }
+
+    @Test
+    public void testShardName() {
+        Assert.assertEquals(JMSPartitionUtil.shardName("orders", 3), "orders.3");
+    }
+}